@@ -0,0 +1,218 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import com.quartercode.disconnected.profile.ProfileManager;
+import com.quartercode.disconnected.profile.ProfileSerializer;
+import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.comp.Computer;
+import com.quartercode.disconnected.sim.run.TickSimulator;
+import com.quartercode.disconnected.sim.run.TickTimer;
+import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
+import com.quartercode.disconnected.util.LogExceptionHandler;
+
+/**
+ * The batch runner is a headless entry point which fast-forwards a simulation for a given amount of ticks.
+ * It doesn't start the graphics manager or a real-time ticker, the ticks are executed back to back without sleeping.
+ * After the run, every operating system is shut down and the resulting profile and some throughput statistics are written.
+ * 
+ * Usage: <code>BatchRunner &lt;ticks&gt; &lt;output profile&gt; [&lt;input profile&gt; | &lt;members&gt; &lt;groups&gt;]</code>
+ * If no input profile is given, a new simulation with the given amount of members and groups (by default 10 and 2) is generated.
+ */
+public class BatchRunner {
+
+    /**
+     * The amount of members a generated simulation has if no amount is given.
+     */
+    public static final int     DEFAULT_MEMBERS = 10;
+
+    /**
+     * The amount of member groups a generated simulation has if no amount is given.
+     */
+    public static final int     DEFAULT_GROUPS  = 2;
+
+    private static final Logger LOGGER          = Logger.getLogger(BatchRunner.class.getName());
+    private static final String USAGE           = "Usage: BatchRunner <ticks> <output profile> [<input profile> | <members> <groups>]";
+
+    /**
+     * The main method which runs the batch simulation.
+     * 
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 2 || args.length > 4) {
+            LOGGER.severe(USAGE);
+            return;
+        }
+
+        int ticks = parseCount(args[0], 0);
+        int members = args.length == 4 ? parseCount(args[2], 1) : DEFAULT_MEMBERS;
+        int groups = args.length == 4 ? parseCount(args[3], 1) : DEFAULT_GROUPS;
+        if (ticks < 0 || members < 0 || groups < 0) {
+            LOGGER.severe(USAGE);
+            return;
+        }
+        File output = new File(args[1]);
+
+        // Logging configuration
+        try {
+            LogManager.getLogManager().readConfiguration(BatchRunner.class.getResourceAsStream("/config/logging.properties"));
+        }
+        catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Can't load logging configuration", e);
+            return;
+        }
+
+        // Default exception handler if the vm throws an exception to the entry point of thread (e.g. main() or run())
+        Thread.setDefaultUncaughtExceptionHandler(new LogExceptionHandler());
+
+        // Initalize & fill registry
+        LOGGER.info("Initalizing & filling class registry");
+        Disconnected.setRegistry(new Registry());
+        Main.fillRegistry();
+
+        LOGGER.info("Initalizing profile manager");
+        Disconnected.setProfileManager(new ProfileManager());
+
+        Simulation simulation;
+        try {
+            if (args.length == 3) {
+                LOGGER.info("Loading simulation from " + args[2]);
+                InputStream inputStream = new FileInputStream(args[2]);
+                try {
+                    simulation = ProfileSerializer.deserialize(inputStream);
+                }
+                finally {
+                    inputStream.close();
+                }
+            } else {
+                LOGGER.info("Generating new simulation with " + members + " members and " + groups + " groups");
+                simulation = SimulationGenerator.generateSimulation(members, groups);
+                for (Computer computer : simulation.getComputers()) {
+                    computer.getOperatingSystem().setRunning(true);
+                }
+            }
+        }
+        catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Can't load simulation", e);
+            return;
+        }
+        Disconnected.getProfileManager().addProfile(simulation);
+        Disconnected.setSimulation(simulation);
+
+        LOGGER.info("Running " + ticks + " ticks");
+        long time = run(simulation, new TickTimer(), ticks);
+        LOGGER.info(getStatistics(ticks, time));
+
+        LOGGER.info("Shutting down operating systems");
+        shutdown(simulation);
+
+        try {
+            LOGGER.info("Writing simulation to " + output);
+            OutputStream outputStream = new FileOutputStream(output);
+            try {
+                ProfileSerializer.serialize(outputStream, simulation);
+            }
+            finally {
+                outputStream.close();
+            }
+        }
+        catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Can't write simulation", e);
+        }
+    }
+
+    /**
+     * Executes the given amount of ticks on the given simulation and timer back to back.
+     * The timer is updated before the simulation, just like the real-time ticker does it.
+     * 
+     * @param simulation The simulation to fast-forward.
+     * @param timer The tick timer which should be updated every tick.
+     * @param ticks The amount of ticks to execute.
+     * @return The time the execution took in nanoseconds.
+     */
+    public static long run(Simulation simulation, TickTimer timer, int ticks) {
+
+        TickSimulator simulator = new TickSimulator(simulation);
+
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            timer.update();
+            simulator.update();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Shuts down the operating systems of all computers of the given simulation by stopping all of their processes.
+     * Program executors can't be serialized, so this must be done before the simulation is written into a profile.
+     * 
+     * @param simulation The simulation whose operating systems should be shut down.
+     */
+    public static void shutdown(Simulation simulation) {
+
+        for (Computer computer : simulation.getComputers()) {
+            if (computer.getOperatingSystem().isRunning()) {
+                computer.getOperatingSystem().setRunning(false);
+            }
+            computer.getOperatingSystem().getProcessManager().kill();
+        }
+    }
+
+    /**
+     * Returns a human-readable summary of the throughput of a batch run.
+     * 
+     * @param ticks The amount of executed ticks.
+     * @param time The time the execution took in nanoseconds.
+     * @return A summary containing the ticks per second and the milliseconds per tick.
+     */
+    public static String getStatistics(int ticks, long time) {
+
+        double seconds = time / 1000000000D;
+        double ticksPerSecond = seconds == 0 ? 0 : ticks / seconds;
+        double millisPerTick = ticks == 0 ? 0 : time / 1000000D / ticks;
+        return String.format("Executed %d ticks in %.3f s (%.1f ticks/s, %.4f ms/tick)", ticks, seconds, ticksPerSecond, millisPerTick);
+    }
+
+    private static int parseCount(String argument, int min) {
+
+        // Invalid counts are reported as -1, so the caller can print the usage
+        try {
+            int count = Integer.parseInt(argument);
+            return count < min ? -1 : count;
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private BatchRunner() {
+
+    }
+
+}
@@ -43,6 +43,8 @@ import com.quartercode.disconnected.sim.run.TickAction;
 import com.quartercode.disconnected.sim.run.TickSimulator;
 import com.quartercode.disconnected.sim.run.TickTimer;
 import com.quartercode.disconnected.sim.run.Ticker;
+import com.quartercode.disconnected.sim.run.Ticker.TickMode;
+import com.quartercode.disconnected.sim.run.util.ScriptExecutor;
 import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
 import com.quartercode.disconnected.util.LogExceptionHandler;
 
@@ -95,6 +97,11 @@ public class Main {
         tickActions.add(new TickTimer());
         tickActions.add(new TickSimulator());
         Disconnected.setTicker(new Ticker(tickActions.toArray(new TickAction[tickActions.size()])));
+        Disconnected.getTicker().setMode(TickMode.FIXED_RATE);
+        Disconnected.getTicker().getAction(TickSimulator.class).setStatistics(Disconnected.getTicker().getStatistics());
+        ScriptExecutor.setStatistics(Disconnected.getTicker().getStatistics());
+        Disconnected.getTicker().getStatistics().register();
+        ScriptExecutor.getCacheStatistics().register();
 
         // DEBUG: Generate and set new simulation
         LOGGER.info("DEBUG-ACTION: Generating new simulation");
@@ -24,8 +24,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.lwjgl.LWJGLException;
@@ -56,7 +56,7 @@ public class UpdateThread extends Thread {
     private LWJGLRenderer         renderer;
     private ThemeManager          currentTheme;
 
-    private final Queue<Runnable> toInvoke = new LinkedList<Runnable>();
+    private final Queue<Runnable> toInvoke = new ConcurrentLinkedQueue<Runnable>();
 
     /**
      * Creates a new update thread.
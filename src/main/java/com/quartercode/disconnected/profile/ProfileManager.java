@@ -22,16 +22,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.run.SimulationScheduler;
 
 /**
  * This class manages different stored simulations called "profiles".
  * For loading or saving profiles, you need to use the profile serializer.
+ * If a simulation scheduler is set, every added profile is ticked by that scheduler until it's removed again.
  * 
  * @see ProfileSerializer
  */
 public class ProfileManager {
 
     private final List<Simulation> profiles = new ArrayList<Simulation>();
+    private SimulationScheduler    scheduler;
 
     /**
      * Creates a new profile manager.
@@ -52,22 +55,63 @@ public class ProfileManager {
 
     /**
      * Adds a new profile (which is actually a simulation).
+     * If a simulation scheduler is set, the new profile is hosted by it.
      * 
      * @param simulation The new profile to add.
      */
     public void addProfile(Simulation simulation) {
 
         profiles.add(simulation);
+
+        if (scheduler != null) {
+            scheduler.host(simulation);
+        }
     }
 
     /**
      * Removes a loaded profile (which is actually a simulation).
+     * If a simulation scheduler is set, the profile is no longer ticked.
      * 
      * @param simulation The loaded profile to remove.
      */
     public void removeProfile(Simulation simulation) {
 
         profiles.remove(simulation);
+
+        if (scheduler != null) {
+            scheduler.unhost(simulation);
+        }
+    }
+
+    /**
+     * Returns the simulation scheduler which ticks all loaded profiles concurrently.
+     * If this is null (default), the profiles aren't ticked by the profile manager.
+     * 
+     * @return The simulation scheduler which ticks the loaded profiles.
+     */
+    public SimulationScheduler getScheduler() {
+
+        return scheduler;
+    }
+
+    /**
+     * Sets the simulation scheduler which ticks all loaded profiles concurrently.
+     * All loaded profiles are moved from the old scheduler to the new one.
+     * 
+     * @param scheduler The new simulation scheduler, or null for not ticking the profiles.
+     */
+    public void setScheduler(SimulationScheduler scheduler) {
+
+        for (Simulation simulation : profiles) {
+            if (this.scheduler != null) {
+                this.scheduler.unhost(simulation);
+            }
+            if (scheduler != null) {
+                scheduler.host(simulation);
+            }
+        }
+
+        this.scheduler = scheduler;
     }
 
 }
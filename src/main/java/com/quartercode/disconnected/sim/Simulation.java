@@ -20,21 +20,39 @@ package com.quartercode.disconnected.sim;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import com.quartercode.disconnected.sim.comp.Computer;
+import com.quartercode.disconnected.sim.comp.file.FileSystem;
+import com.quartercode.disconnected.sim.member.BrainData;
 import com.quartercode.disconnected.sim.member.Member;
 import com.quartercode.disconnected.sim.member.MemberGroup;
+import com.quartercode.disconnected.sim.member.ReputationMatrix;
 import com.quartercode.disconnected.sim.member.ai.AIController;
 import com.quartercode.disconnected.sim.member.ai.PlayerController;
+import com.quartercode.disconnected.sim.member.interest.HasTarget;
+import com.quartercode.disconnected.sim.member.interest.Interest;
+import com.quartercode.disconnected.util.EntityStore;
 import com.quartercode.disconnected.util.RandomPool;
 
 /**
  * This clas represents a simulation which stores information about the members, member groups and computers.
  * To actually run the simulation, you need to run a tick simulator.
+ * Members and groups are indexed by their name, computer, controller type and membership, so looking them up doesn't scan every member.
+ * The indexes are built on the first lookup and then updated in place when members and groups change.
+ * While a tick is running, structural changes should be queued (e.g. {@link #queueRemoveMember(Member)}) and are applied in one batch at the end of the tick.
+ * The computers which are awake are kept in a separate queue, so the tick simulator doesn't have to scan all computers for them.
  * 
  * @see Member
  * @see MemberGroup
@@ -46,18 +64,45 @@ public class Simulation {
     /**
      * This is a public random pool you can quickly access if you need random numbers for a specific simulation.
      */
-    public final RandomPool         RANDOM    = new RandomPool(1000);
+    @XmlTransient
+    public final RandomPool                RANDOM      = new RandomPool(1000);
 
     @XmlElementWrapper (name = "members")
     @XmlElement (name = "member")
-    private final List<Member>      members   = new CopyOnWriteArrayList<Member>();
-    private Member                  localPlayerCache;
+    private final List<Member>             members     = new EntityStore<Member>();
+    @XmlTransient
+    private Member                         localPlayerCache;
     @XmlElementWrapper (name = "groups")
     @XmlElement (name = "group")
-    private final List<MemberGroup> groups    = new CopyOnWriteArrayList<MemberGroup>();
+    private final List<MemberGroup>        groups      = new EntityStore<MemberGroup>();
+    @XmlElementWrapper (name = "images")
+    @XmlElement (name = "image")
+    private final List<FileSystem>         images      = new CopyOnWriteArrayList<FileSystem>();
     @XmlElementWrapper (name = "computers")
     @XmlElement (name = "computer")
-    private final List<Computer>    computers = new CopyOnWriteArrayList<Computer>();
+    private final List<Computer>           computers   = new EntityStore<Computer>();
+
+    @XmlTransient
+    private final ReputationMatrix         reputations = new ReputationMatrix();
+
+    @XmlTransient
+    private Map<String, Member>            membersByName;
+    @XmlTransient
+    private Map<Computer, Member>          membersByComputer;
+    @XmlTransient
+    private Map<Member, MemberGroup>       groupsByMember;
+    @XmlTransient
+    private Map<Class<?>, List<Member>>    membersByController;
+    @XmlTransient
+    private Map<Member, List<Member>>      membersByTarget;
+    @XmlTransient
+    private Map<Member, List<MemberGroup>> groupsByTarget;
+
+    @XmlTransient
+    private final List<Runnable>           mutations   = new ArrayList<Runnable>();
+
+    @XmlTransient
+    private final Queue<Computer>          awake       = new ConcurrentLinkedQueue<Computer>();
 
     /**
      * Creates a new empty simulation.
@@ -85,13 +130,8 @@ public class Simulation {
      */
     public Member getMember(String name) {
 
-        for (Member member : members) {
-            if (member.getName().equals(name)) {
-                return member;
-            }
-        }
-
-        return null;
+        checkIndexes();
+        return membersByName.get(name);
     }
 
     /**
@@ -102,10 +142,11 @@ public class Simulation {
      */
     public List<Member> getMembersByController(Class<? extends AIController> controllerType) {
 
+        checkIndexes();
         List<Member> members = new ArrayList<Member>();
-        for (Member member : this.members) {
-            if (controllerType.isAssignableFrom(member.getAiController().getClass())) {
-                members.add(member);
+        for (Entry<Class<?>, List<Member>> entry : membersByController.entrySet()) {
+            if (controllerType.isAssignableFrom(entry.getKey())) {
+                members.addAll(entry.getValue());
             }
         }
         return members;
@@ -120,13 +161,8 @@ public class Simulation {
      */
     public Member getMember(Computer computer) {
 
-        for (Member member : members) {
-            if (member.getComputer().equals(computer)) {
-                return member;
-            }
-        }
-
-        return null;
+        checkIndexes();
+        return membersByComputer.get(computer);
     }
 
     /**
@@ -155,6 +191,11 @@ public class Simulation {
     public void addMember(Member member) {
 
         members.add(member);
+        reputations.addMember(member);
+        member.setSimulation(this);
+        if (membersByName != null) {
+            indexMember(member);
+        }
     }
 
     /**
@@ -164,7 +205,80 @@ public class Simulation {
      */
     public void removeMember(Member member) {
 
+        if (!members.contains(member)) {
+            return;
+        }
+
+        checkIndexes();
+
         members.remove(member);
+        reputations.removeMember(member);
+        unindexMember(member);
+
+        // Cascade the removal: The member leaves its group and every interest which targets it is dropped
+        MemberGroup group = groupsByMember.get(member);
+        if (group != null) {
+            group.removeMember(member);
+        }
+        List<Member> targetingMembers = membersByTarget.remove(member);
+        if (targetingMembers != null) {
+            for (Member targetingMember : targetingMembers) {
+                for (HasTarget data : targetingMember.getBrainData(HasTarget.class)) {
+                    if (data.getTarget() == member) {
+                        targetingMember.removeBrainData((BrainData) data);
+                    }
+                }
+            }
+        }
+        List<MemberGroup> targetingGroups = groupsByTarget.remove(member);
+        if (targetingGroups != null) {
+            for (MemberGroup targetingGroup : targetingGroups) {
+                for (Interest interest : targetingGroup.getInterests()) {
+                    if (interest instanceof HasTarget && ((HasTarget) interest).getTarget() == member) {
+                        targetingGroup.removeInterest(interest);
+                    }
+                }
+            }
+        }
+
+        member.setSimulation(null);
+    }
+
+    /**
+     * Queues the addition of the given member, so it's added when the queued mutations are applied at the end of the current tick.
+     * 
+     * @param member The member to add to the simulation.
+     * @see #applyMutations()
+     */
+    public void queueAddMember(final Member member) {
+
+        queue(new Runnable() {
+
+            @Override
+            public void run() {
+
+                addMember(member);
+            }
+        });
+    }
+
+    /**
+     * Queues the removal of the given member, so it's removed when the queued mutations are applied at the end of the current tick.
+     * This should be used instead of {@link #removeMember(Member)} while a tick is running (e.g. by payload scripts).
+     * 
+     * @param member The member to remove from the simulation.
+     * @see #applyMutations()
+     */
+    public void queueRemoveMember(final Member member) {
+
+        queue(new Runnable() {
+
+            @Override
+            public void run() {
+
+                removeMember(member);
+            }
+        });
     }
 
     /**
@@ -186,13 +300,8 @@ public class Simulation {
      */
     public MemberGroup getGroup(Member member) {
 
-        for (MemberGroup group : groups) {
-            if (group.getMembers().contains(member)) {
-                return group;
-            }
-        }
-
-        return null;
+        checkIndexes();
+        return groupsByMember.get(member);
     }
 
     /**
@@ -203,6 +312,11 @@ public class Simulation {
     public void addGroup(MemberGroup group) {
 
         groups.add(group);
+        group.setReputationMatrix(reputations);
+        group.setSimulation(this);
+        if (membersByName != null) {
+            indexGroup(group);
+        }
     }
 
     /**
@@ -212,7 +326,318 @@ public class Simulation {
      */
     public void removeGroup(MemberGroup group) {
 
-        groups.remove(group);
+        if (!groups.remove(group)) {
+            return;
+        }
+
+        if (membersByName != null) {
+            for (Member member : group.getMembers()) {
+                unindexGroupMember(group, member);
+            }
+            for (Interest interest : group.getInterests()) {
+                unindexTarget(group, interest);
+            }
+        }
+        group.setSimulation(null);
+    }
+
+    /**
+     * Adds the given brain data entry of the given member to the index of interests by target.
+     * This is called by members of the simulation when they get a new brain data entry.
+     * 
+     * @param member The member which got the given brain data entry.
+     * @param data The new brain data entry.
+     */
+    public void indexTarget(Member member, BrainData data) {
+
+        if (membersByTarget != null && data instanceof HasTarget && ((HasTarget) data).getTarget() != null) {
+            Member target = ((HasTarget) data).getTarget();
+            List<Member> targetingMembers = membersByTarget.get(target);
+            if (targetingMembers == null) {
+                targetingMembers = new ArrayList<Member>();
+                membersByTarget.put(target, targetingMembers);
+            }
+            targetingMembers.add(member);
+        }
+    }
+
+    /**
+     * Adds the given global interest of the given member group to the index of interests by target.
+     * This is called by groups of the simulation when they get a new interest.
+     * 
+     * @param group The member group which got the given interest.
+     * @param interest The new interest.
+     */
+    public void indexTarget(MemberGroup group, Interest interest) {
+
+        if (groupsByTarget != null && interest instanceof HasTarget && ((HasTarget) interest).getTarget() != null) {
+            Member target = ((HasTarget) interest).getTarget();
+            List<MemberGroup> targetingGroups = groupsByTarget.get(target);
+            if (targetingGroups == null) {
+                targetingGroups = new ArrayList<MemberGroup>();
+                groupsByTarget.put(target, targetingGroups);
+            }
+            targetingGroups.add(group);
+        }
+    }
+
+    /**
+     * Removes the given brain data entry of the given member from the index of interests by target.
+     * This is called by members of the simulation when they lose a brain data entry.
+     * 
+     * @param member The member which lost the given brain data entry.
+     * @param data The removed brain data entry.
+     */
+    public void unindexTarget(Member member, BrainData data) {
+
+        if (membersByTarget != null && data instanceof HasTarget) {
+            List<Member> targetingMembers = membersByTarget.get( ((HasTarget) data).getTarget());
+            if (targetingMembers != null) {
+                targetingMembers.remove(member);
+                if (targetingMembers.isEmpty()) {
+                    membersByTarget.remove( ((HasTarget) data).getTarget());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the given global interest of the given member group from the index of interests by target.
+     * This is called by groups of the simulation when they lose an interest.
+     * 
+     * @param group The member group which lost the given interest.
+     * @param interest The removed interest.
+     */
+    public void unindexTarget(MemberGroup group, Interest interest) {
+
+        if (groupsByTarget != null && interest instanceof HasTarget) {
+            List<MemberGroup> targetingGroups = groupsByTarget.get( ((HasTarget) interest).getTarget());
+            if (targetingGroups != null) {
+                targetingGroups.remove(group);
+                if (targetingGroups.isEmpty()) {
+                    groupsByTarget.remove( ((HasTarget) interest).getTarget());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the given member of the given group to the membership index.
+     * This is called by groups of the simulation when a member joins them.
+     * 
+     * @param group The member group the given member joined.
+     * @param member The member which joined the given group.
+     */
+    public void indexGroupMember(MemberGroup group, Member member) {
+
+        if (groupsByMember != null && !groupsByMember.containsKey(member)) {
+            groupsByMember.put(member, group);
+        }
+    }
+
+    /**
+     * Removes the given member of the given group from the membership index.
+     * This is called by groups of the simulation when a member leaves them.
+     * 
+     * @param group The member group the given member left.
+     * @param member The member which left the given group.
+     */
+    public void unindexGroupMember(MemberGroup group, Member member) {
+
+        if (groupsByMember != null && groupsByMember.get(member) == group) {
+            groupsByMember.remove(member);
+
+            // If the member is also part of another group, that group takes over
+            for (MemberGroup otherGroup : groups) {
+                if (otherGroup != group && otherGroup.getMembers().contains(member)) {
+                    groupsByMember.put(member, otherGroup);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the given member from its old computer to its current one in the computer index.
+     * This is called by members of the simulation when their computer changes.
+     * 
+     * @param member The member whose computer changed.
+     * @param oldComputer The computer the member had before, or null if it didn't have one.
+     */
+    public void reindexComputer(Member member, Computer oldComputer) {
+
+        if (membersByComputer != null) {
+            if (oldComputer != null && membersByComputer.get(oldComputer) == member) {
+                membersByComputer.remove(oldComputer);
+            }
+            if (member.getComputer() != null && !membersByComputer.containsKey(member.getComputer())) {
+                membersByComputer.put(member.getComputer(), member);
+            }
+        }
+    }
+
+    /**
+     * Moves the given member from the type of its old ai controller to the type of its current one in the controller index.
+     * This is called by members of the simulation when their ai controller changes.
+     * 
+     * @param member The member whose ai controller changed.
+     * @param oldAiController The ai controller the member had before, or null if it didn't have one.
+     */
+    public void reindexAiController(Member member, AIController oldAiController) {
+
+        if (membersByController != null) {
+            if (oldAiController != null) {
+                List<Member> controlled = membersByController.get(oldAiController.getClass());
+                if (controlled != null) {
+                    controlled.remove(member);
+                }
+            }
+            if (member.getAiController() != null) {
+                List<Member> controlled = membersByController.get(member.getAiController().getClass());
+                if (controlled == null) {
+                    controlled = new ArrayList<Member>();
+                    membersByController.put(member.getAiController().getClass(), controlled);
+                }
+                controlled.add(member);
+            }
+        }
+        // The local player might have got or lost its player controller
+        localPlayerCache = null;
+    }
+
+    private void invalidateIndexes() {
+
+        membersByName = null;
+        membersByComputer = null;
+        groupsByMember = null;
+        membersByController = null;
+        membersByTarget = null;
+        groupsByTarget = null;
+        localPlayerCache = null;
+    }
+
+    private void checkIndexes() {
+
+        if (membersByName == null) {
+            membersByName = new HashMap<String, Member>();
+            membersByComputer = new IdentityHashMap<Computer, Member>();
+            groupsByMember = new IdentityHashMap<Member, MemberGroup>();
+            membersByController = new HashMap<Class<?>, List<Member>>();
+            membersByTarget = new IdentityHashMap<Member, List<Member>>();
+            groupsByTarget = new IdentityHashMap<Member, List<MemberGroup>>();
+
+            for (Member member : members) {
+                indexMember(member);
+            }
+            for (MemberGroup group : groups) {
+                indexGroup(group);
+            }
+        }
+    }
+
+    private void indexMember(Member member) {
+
+        // The first member wins, just like the linear search did
+        if (!membersByName.containsKey(member.getName())) {
+            membersByName.put(member.getName(), member);
+        }
+        if (member.getComputer() != null && !membersByComputer.containsKey(member.getComputer())) {
+            membersByComputer.put(member.getComputer(), member);
+        }
+        if (member.getAiController() != null) {
+            List<Member> controlled = membersByController.get(member.getAiController().getClass());
+            if (controlled == null) {
+                controlled = new ArrayList<Member>();
+                membersByController.put(member.getAiController().getClass(), controlled);
+            }
+            controlled.add(member);
+        }
+        for (BrainData data : member.getBrainData()) {
+            indexTarget(member, data);
+        }
+    }
+
+    private void unindexMember(Member member) {
+
+        if (membersByName.get(member.getName()) == member) {
+            membersByName.remove(member.getName());
+        }
+        if (member.getComputer() != null && membersByComputer.get(member.getComputer()) == member) {
+            membersByComputer.remove(member.getComputer());
+        }
+        if (member.getAiController() != null) {
+            List<Member> controlled = membersByController.get(member.getAiController().getClass());
+            if (controlled != null) {
+                controlled.remove(member);
+            }
+        }
+        if (member == localPlayerCache) {
+            localPlayerCache = null;
+        }
+        for (BrainData data : member.getBrainData()) {
+            unindexTarget(member, data);
+        }
+    }
+
+    private void indexGroup(MemberGroup group) {
+
+        for (Member member : group.getMembers()) {
+            if (!groupsByMember.containsKey(member)) {
+                groupsByMember.put(member, group);
+            }
+        }
+        for (Interest interest : group.getInterests()) {
+            indexTarget(group, interest);
+        }
+    }
+
+    /**
+     * Returns all file system images of the simulation.
+     * The file systems of the computers can be layered over those read-only images.
+     * 
+     * @return All file system images of the simulation.
+     */
+    public List<FileSystem> getImages() {
+
+        return Collections.unmodifiableList(images);
+    }
+
+    /**
+     * Returns the file system image of this simulation which has the given name.
+     * Returns null if there's no image with the given name.
+     * 
+     * @param name The name of the image to return.
+     * @return The file system image of this simulation which has the given name.
+     */
+    public FileSystem getImage(String name) {
+
+        for (FileSystem image : images) {
+            if (image.getName().equals(name)) {
+                return image;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a file system image to the simulation.
+     * 
+     * @param image The file system image to add to the simulation.
+     */
+    public void addImage(FileSystem image) {
+
+        images.add(image);
+    }
+
+    /**
+     * Removes a file system image from the simulation.
+     * 
+     * @param image The file system image to remove from the simulation.
+     */
+    public void removeImage(FileSystem image) {
+
+        images.remove(image);
     }
 
     /**
@@ -233,6 +658,10 @@ public class Simulation {
     public void addComputer(Computer computer) {
 
         computers.add(computer);
+        computer.setSimulation(this);
+        if (computer.isAwake()) {
+            awake.add(computer);
+        }
     }
 
     /**
@@ -242,39 +671,134 @@ public class Simulation {
      */
     public void removeComputer(Computer computer) {
 
-        computers.remove(computer);
+        if (!computers.remove(computer)) {
+            return;
+        }
+        computer.setSimulation(null);
+        computer.sleep();
+        awake.remove(computer);
+
+        // The member which controlled the computer can't be found through it anymore
+        if (membersByComputer != null) {
+            membersByComputer.remove(computer);
+        }
     }
 
-    @Override
-    public int hashCode() {
+    /**
+     * Queues the given computer for the next tick because it was woken up.
+     * This should only be used by {@link Computer#wake()} and the tick simulator, which queues computers again if they stay awake.
+     * Every awake computer must only be queued once.
+     * 
+     * @param computer The computer which is awake.
+     */
+    public void notifyAwake(Computer computer) {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (computers == null ? 0 : computers.hashCode());
-        return result;
+        awake.add(computer);
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    /**
+     * Removes all queued awake computers and adds them to the given list in the order they were queued.
+     * The caller is responsible for queueing the computers which are still awake after the tick again.
+     * 
+     * @param computers The list the queued awake computers are added to.
+     * @see #notifyAwake(Computer)
+     */
+    public void drainAwakeComputers(List<Computer> computers) {
+
+        Computer computer = null;
+        while ( (computer = awake.poll()) != null) {
+            computers.add(computer);
+        }
+    }
+
+    /**
+     * Queues the addition of the given computer, so it's added when the queued mutations are applied at the end of the current tick.
+     * 
+     * @param computer The computer to add to the simulation.
+     * @see #applyMutations()
+     */
+    public void queueAddComputer(final Computer computer) {
+
+        queue(new Runnable() {
+
+            @Override
+            public void run() {
+
+                addComputer(computer);
+            }
+        });
+    }
+
+    /**
+     * Queues the removal of the given computer, so it's removed when the queued mutations are applied at the end of the current tick.
+     * This should be used instead of {@link #removeComputer(Computer)} while a tick is running (e.g. by payload scripts).
+     * 
+     * @param computer The computer to remove from the simulation.
+     * @see #applyMutations()
+     */
+    public void queueRemoveComputer(final Computer computer) {
+
+        queue(new Runnable() {
+
+            @Override
+            public void run() {
+
+                removeComputer(computer);
+            }
+        });
+    }
+
+    /**
+     * Applies all queued structural mutations in the order they were queued.
+     * This is called by the tick simulator at the end of every tick, so nothing changes the structure of the simulation while it's iterated.
+     * Mutations which are queued while applying the queued ones are applied in the same batch.
+     */
+    public void applyMutations() {
 
-        if (this == obj) {
-            return true;
+        while (true) {
+            List<Runnable> batch;
+            synchronized (mutations) {
+                if (mutations.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<Runnable>(mutations);
+                mutations.clear();
+            }
+
+            for (Runnable mutation : batch) {
+                mutation.run();
+            }
+        }
+    }
+
+    private void queue(Runnable mutation) {
+
+        // Mutations can be queued by several worker threads of the parallel process phase at the same time
+        synchronized (mutations) {
+            mutations.add(mutation);
         }
-        if (obj == null) {
-            return false;
+    }
+
+    public void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+
+        // All groups of the simulation share one reputation matrix
+        for (Member member : members) {
+            reputations.addMember(member);
+            member.setSimulation(this);
         }
-        if (getClass() != obj.getClass()) {
-            return false;
+        for (MemberGroup group : groups) {
+            group.setReputationMatrix(reputations);
+            group.setSimulation(this);
         }
-        Simulation other = (Simulation) obj;
-        if (computers == null) {
-            if (other.computers != null) {
-                return false;
+        for (Computer computer : computers) {
+            computer.setSimulation(this);
+            if (computer.isAwake()) {
+                awake.add(computer);
             }
-        } else if (!computers.equals(other.computers)) {
-            return false;
         }
-        return true;
+
+        // The references of members and groups are resolved at the end of unmarshalling, so the indexes are built on the first lookup
+        invalidateIndexes();
     }
 
     @Override
@@ -21,15 +21,20 @@ package com.quartercode.disconnected.sim.comp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
+import javax.xml.bind.annotation.XmlTransient;
 import com.quartercode.disconnected.sim.Location;
+import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.comp.hardware.Hardware;
 import com.quartercode.disconnected.sim.comp.hardware.Mainboard;
+import com.quartercode.disconnected.sim.comp.hardware.NetworkInterface;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
 import com.quartercode.disconnected.sim.comp.program.Program;
+import com.quartercode.disconnected.util.EntityStore;
 
 /**
  * This class stores information about a computer, like the mainboard, other hardware, programs etc.
@@ -50,9 +55,16 @@ public class Computer {
 
     private Location             location;
     @XmlElement (name = "hardware")
-    private final List<Hardware> hardware = new CopyOnWriteArrayList<Hardware>();
+    private final List<Hardware> hardware = new EntityStore<Hardware>();
     private OperatingSystem      operatingSystem;
 
+    @XmlTransient
+    private Simulation           simulation;
+    @XmlTransient
+    private final AtomicBoolean  awake    = new AtomicBoolean(true);
+    @XmlTransient
+    private final AtomicLong     wakeups  = new AtomicLong();
+
     /**
      * Creates a new empty computer.
      * This is only recommended for direct field access (e.g. for serialization).
@@ -184,60 +196,104 @@ public class Computer {
         return parts;
     }
 
-    @Override
-    public int hashCode() {
+    /**
+     * Sets the simulation the computer was added to last, so the simulation can be notified if the computer wakes up.
+     * This is called by the simulation when the computer is added or removed.
+     * 
+     * @param simulation The simulation the computer was added to, or null if it was removed.
+     */
+    public void setSimulation(Simulation simulation) {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (hardware == null ? 0 : hardware.hashCode());
-        result = prime * result + (id == null ? 0 : id.hashCode());
-        result = prime * result + (location == null ? 0 : location.hashCode());
-        result = prime * result + (operatingSystem == null ? 0 : operatingSystem.hashCode());
-        return result;
+        this.simulation = simulation;
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    /**
+     * Returns if the computer is awake and gets ticked by the simulator.
+     * Computers without pending work are put to sleep until something wakes them up again.
+     * 
+     * @return If the computer is awake.
+     */
+    public boolean isAwake() {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (! (obj instanceof Computer)) {
-            return false;
-        }
-        Computer other = (Computer) obj;
-        if (hardware == null) {
-            if (other.hardware != null) {
-                return false;
-            }
-        } else if (!hardware.equals(other.hardware)) {
-            return false;
+        return awake.get();
+    }
+
+    /**
+     * Returns how often the computer was woken up.
+     * The simulator reads this before it checks for pending work, so it can detect wakeups which happen while it puts the computer to sleep.
+     * 
+     * @return The amount of wakeups.
+     * @see #sleep(long)
+     */
+    public long getWakeups() {
+
+        return wakeups.get();
+    }
+
+    /**
+     * Wakes the computer up so it gets ticked in the next tick.
+     * This is called when a process changes its state or a packet arrives.
+     * Other code which changes the computer from the outside should call this as well.
+     */
+    public void wake() {
+
+        // The counter is always incremented, so a concurrent sleep(long) notices the wakeup even if the computer is still awake
+        wakeups.incrementAndGet();
+        if (awake.compareAndSet(false, true) && simulation != null) {
+            simulation.notifyAwake(this);
         }
-        if (id == null) {
-            if (other.id != null) {
-                return false;
-            }
-        } else if (!id.equals(other.id)) {
+    }
+
+    /**
+     * Puts the computer to sleep so it doesn't get ticked until it is woken up.
+     * 
+     * @see #sleep(long)
+     */
+    public void sleep() {
+
+        awake.set(false);
+    }
+
+    /**
+     * Puts the computer to sleep unless it was woken up after the given amount of wakeups was read.
+     * This should only be used by the simulator if the computer hasn't got any pending work.
+     * The wakeups must be read before checking for pending work, so a wakeup from another thread can't get lost in between.
+     * 
+     * @param wakeups The amount of wakeups which was read before checking for pending work.
+     * @return If the computer is still asleep after this call.
+     * @see #getWakeups()
+     * @see #hasPendingWork()
+     */
+    public boolean sleep(long wakeups) {
+
+        awake.set(false);
+        if (this.wakeups.get() != wakeups) {
+            wake();
             return false;
         }
-        if (location == null) {
-            if (other.location != null) {
-                return false;
-            }
-        } else if (!location.equals(other.location)) {
-            return false;
+
+        return true;
+    }
+
+    /**
+     * Returns if the computer has got work which needs ticks to complete.
+     * That are non-idle runnable processes, stopped processes which must be reaped, or packets which wait for delivery.
+     * 
+     * @return If the computer has got pending work.
+     */
+    public boolean hasPendingWork() {
+
+        if (operatingSystem != null && operatingSystem.isRunning() && operatingSystem.getProcessManager().hasPendingWork()) {
+            return true;
         }
-        if (operatingSystem == null) {
-            if (other.operatingSystem != null) {
-                return false;
+
+        for (Hardware hardwarePart : hardware) {
+            if (hardwarePart instanceof NetworkInterface && ((NetworkInterface) hardwarePart).nextDeliveryPacket(false) != null) {
+                return true;
             }
-        } else if (!operatingSystem.equals(other.operatingSystem)) {
-            return false;
         }
-        return true;
+
+        return false;
     }
 
     @Override
@@ -20,20 +20,35 @@ package com.quartercode.disconnected.sim.comp.file;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
+import javax.xml.bind.annotation.XmlIDREF;
 import javax.xml.bind.annotation.XmlTransient;
 import org.apache.commons.lang.Validate;
+import com.quartercode.disconnected.sim.comp.file.FileRights.FileAccessor;
+import com.quartercode.disconnected.sim.comp.file.FileRights.FileRight;
+import com.quartercode.disconnected.sim.comp.os.Group;
+import com.quartercode.disconnected.sim.comp.os.Group.RightOverride;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
+import com.quartercode.disconnected.sim.comp.os.User;
 import com.quartercode.disconnected.util.size.SizeObject;
 import com.quartercode.disconnected.util.size.SizeUtil;
 
 /**
  * This class represents a file on a media.
  * Every file knows his path and has a content string. Every directory has a list of child files.
+ * Every file also references its parent directory, and every directory indexes its child files by name, so path operations only take as long as the path is deep.
+ * 
+ * If the host file system is layered over a base image, files can have an origin file on that image.
+ * A content file without own content uses the content of its origin, a directory also contains the children of its origin.
+ * Reading those children returns views on the original files, which are only copied into the directory when they are changed (copy-on-write), so unchanged files only exist in the image.
  * 
  * @see FileSystem
  */
@@ -55,15 +70,40 @@ public class File implements SizeObject {
 
     }
 
-    private FileSystem       host;
-    private String           name;
+    private FileSystem              host;
+    @XmlAttribute
+    private long                    inode;
+    private String                  name;
+    @XmlAttribute
+    private FileType                type;
+    @XmlAttribute
+    private FileRights              rights;
+    @XmlIDREF
     @XmlAttribute
-    private FileType         type;
-    private FileRights       rights;
+    private User                    owner;
+    @XmlIDREF
+    @XmlAttribute
+    private Group                   group;
     @XmlElement
-    private Object           content;
+    private Object                  content;
     @XmlElement (name = "file")
-    private final List<File> children = new ArrayList<File>();
+    private final List<File>        children   = new ArrayList<File>();
+    @XmlTransient
+    private final Map<String, File> childIndex = new HashMap<String, File>();
+    @XmlIDREF
+    @XmlAttribute
+    private File                    origin;
+    @XmlElement (name = "hidden")
+    private final Set<String>       hidden     = new LinkedHashSet<String>();
+    @XmlTransient
+    private final Map<String, File> views      = new HashMap<String, File>();
+    @XmlTransient
+    private boolean                 view;
+
+    @XmlTransient
+    private File                    parent;
+    @XmlTransient
+    private long                    size;
 
     /**
      * Creates a new empty file.
@@ -81,8 +121,10 @@ public class File implements SizeObject {
     protected File(FileSystem host) {
 
         this.host = host;
+        inode = host.allocateInode();
         name = "root";
         type = FileType.DIRECTORY;
+        rights = FileRights.DEFAULT;
     }
 
     /**
@@ -96,6 +138,7 @@ public class File implements SizeObject {
     protected File(FileSystem host, String name, FileType type, FileRights rights) {
 
         this.host = host;
+        inode = host.allocateInode();
         this.name = name;
         this.type = type;
         this.rights = rights;
@@ -111,6 +154,18 @@ public class File implements SizeObject {
         return host;
     }
 
+    /**
+     * Returns the inode number which identifies the file on its host file system.
+     * The inode is allocated by the file system when the file is created and doesn't change if the file is moved or renamed.
+     * It only changes if the file is moved to another file system.
+     * 
+     * @return The inode number which identifies the file on its host file system.
+     */
+    public long getInode() {
+
+        return inode;
+    }
+
     /**
      * Returns the name the file has.
      * 
@@ -129,7 +184,27 @@ public class File implements SizeObject {
     @XmlAttribute
     protected void setName(String name) {
 
-        this.name = name;
+        if (parent != null && (view || parent.childIndex.get(this.name) == this) && !name.equals(this.name)) {
+            checkWritable();
+            if (parent.getChildFile(name) != null) {
+                throw new IllegalStateException("Can't rename file: Directory '" + parent.getLocalPath() + "' already contains a file named '" + name + "'");
+            }
+
+            store();
+            invalidatePaths();
+            parent.childIndex.remove(this.name);
+            parent.hide(this.name);
+            parent.childIndex.put(name, this);
+
+            String oldName = this.name;
+            this.name = name;
+            FileIndex index = getIndex();
+            if (index != null) {
+                index.rename(this, oldName);
+            }
+        } else {
+            this.name = name;
+        }
     }
 
     /**
@@ -162,38 +237,32 @@ public class File implements SizeObject {
      * Returns the local the path the file has.
      * A path is a collection of files seperated by a seperator.
      * The local path can be used on the hardware level to look up a file on a given hard drive.
+     * If the file isn't stored in the directory tree of its host, this will return null.
      * 
      * @return The path the file has.
      */
     public String getLocalPath() {
 
-        if (equals(host.getRootFile())) {
+        if (this == host.getRootFile()) {
             return host.getSeperator();
         } else {
-            List<File> path = new ArrayList<File>();
-            host.getRootFile().generatePathSections(this, path);
-
-            String pathString = "";
-            for (File pathEntry : path) {
-                pathString += host.getSeperator() + pathEntry.getName();
+            List<String> sections = new ArrayList<String>();
+            File current = this;
+            while (current.parent != null) {
+                sections.add(current.name);
+                current = current.parent;
             }
 
-            return pathString.isEmpty() ? null : pathString;
-        }
-    }
-
-    private boolean generatePathSections(File target, List<File> path) {
+            if (current != host.getRootFile()) {
+                return null;
+            }
 
-        for (File child : children) {
-            path.add(child);
-            if (target.equals(child) || child.generatePathSections(target, path)) {
-                return true;
-            } else {
-                path.remove(child);
+            StringBuilder path = new StringBuilder();
+            for (int index = sections.size() - 1; index >= 0; index--) {
+                path.append(host.getSeperator()).append(sections.get(index));
             }
+            return path.toString();
         }
-
-        return false;
     }
 
     /**
@@ -210,6 +279,7 @@ public class File implements SizeObject {
     /**
      * Returns the file rights object which stores the UNIX-like file right attributes.
      * For more documentation on how it works, see the {@link FileRights}-class.
+     * The returned storage might be a shared immutable preset, so single rights should be changed with {@link #setRight(FileAccessor, FileRight, boolean)}.
      * 
      * @return The file rights storage.
      */
@@ -219,6 +289,30 @@ public class File implements SizeObject {
         return rights;
     }
 
+    /**
+     * Changes the given right of the given accessor.
+     * If the file uses a shared preset, it gets its own copy of the preset first, but only if the right actually changes.
+     * 
+     * @param accessor The accessor whose right should be changed.
+     * @param right The right to change.
+     * @param set True if the right should be set, false if not.
+     * @throws IllegalStateException The host file system is read-only.
+     */
+    public void setRight(FileAccessor accessor, FileRight right, boolean set) {
+
+        // The execute rights share one slot, so unsetting one of them can change the rights although it isn't set
+        if (!rights.isChangedBy(accessor, right, set)) {
+            return;
+        }
+
+        checkWritable();
+        store();
+        if (rights.isPreset()) {
+            rights = new FileRights(rights);
+        }
+        rights.setRight(accessor, right, set);
+    }
+
     /**
      * Changes the file rights storage which stores the UNIX-like file right attributes to a new one.
      * For more documentation on how it works, see the {@link FileRights}-class.
@@ -227,9 +321,92 @@ public class File implements SizeObject {
      */
     public void setRights(FileRights rights) {
 
+        store();
         this.rights = rights;
     }
 
+    /**
+     * Returns the user who owns the file.
+     * The owner gets the {@link FileAccessor#OWNER} rights of the file.
+     * 
+     * @return The user who owns the file.
+     */
+    @XmlTransient
+    public User getOwner() {
+
+        return owner;
+    }
+
+    /**
+     * Changes the user who owns the file to a new one.
+     * 
+     * @param owner The new user who owns the file.
+     */
+    public void setOwner(User owner) {
+
+        store();
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the group the file is assigned to.
+     * All members of the group get the {@link FileAccessor#GROUP} rights of the file.
+     * 
+     * @return The group the file is assigned to.
+     */
+    @XmlTransient
+    public Group getGroup() {
+
+        return group;
+    }
+
+    /**
+     * Changes the group the file is assigned to to a new one.
+     * 
+     * @param group The new group the file is assigned to.
+     */
+    public void setGroup(Group group) {
+
+        store();
+        this.group = group;
+    }
+
+    /**
+     * Returns the file accessor the given user is in the context of this file.
+     * The owner is checked first, then the membership in the group of the file.
+     * 
+     * @param user The user who wants to access the file.
+     * @return The file accessor the given user is in the context of this file.
+     */
+    public FileAccessor getAccessor(User user) {
+
+        if (user == owner) {
+            return FileAccessor.OWNER;
+        } else if (group != null && user.isMember(group)) {
+            return FileAccessor.GROUP;
+        } else {
+            return FileAccessor.OTHERS;
+        }
+    }
+
+    /**
+     * Returns if the given user has the given right on this file.
+     * Users who are member of a group with the {@link RightOverride#ROOT} override have every right.
+     * This doesn't allocate anything, so it can be used for checking every file access.
+     * 
+     * @param user The user who wants to access the file.
+     * @param right The file right to check.
+     * @return If the given user has the given right on this file.
+     */
+    public boolean hasRight(User user, FileRight right) {
+
+        if (user.isRoot()) {
+            return true;
+        } else {
+            return rights != null && rights.getRight(getAccessor(user), right);
+        }
+    }
+
     /**
      * Returns the content the file has (if this file is a content one).
      * If this file isn't a content one, this will return null.
@@ -239,84 +416,288 @@ public class File implements SizeObject {
     @XmlTransient
     public Object getContent() {
 
-        return type == FileType.FILE ? content : null;
+        if (type != FileType.FILE) {
+            return null;
+        } else if (content == null && origin != null) {
+            return origin.getContent();
+        } else {
+            return content;
+        }
     }
 
     /**
      * Changes the content to new one (if this file is a content one).
+     * If the file used the content of its origin file from a base image, it gets its own content from now on.
      * This throws an OutOfSpaceException if there isn't enough space on the host drive for the new content.
      * 
      * @param content The new content to write into the file.
      * @throws IllegalArgumentException Can't derive size type from given content.
+     * @throws IllegalStateException The host file system is read-only.
      * @throws OutOfSpaceException If there isn't enough space on the host drive for the new content.
      */
     public void setContent(Object content) {
 
         if (type == FileType.FILE) {
             Validate.isTrue(SizeUtil.accept(content), "Size of type " + content.getClass().getName() + " can't be derived");
+            checkWritable();
+
+            long oldSize = getSize();
+            long newSize = content == null ? 0 : SizeUtil.getSize(content);
+            if (newSize - oldSize > host.getFree() && isAttached()) {
+                throw new OutOfSpaceException(host, newSize);
+            }
 
-            Object oldContent = this.content;
+            store();
+            Object oldContent = getContent();
             this.content = content;
+            origin = null;
+            addSize(newSize - oldSize);
 
-            if (host.getRootFile() != null && host.getFilled() > host.getFree()) {
-                long size = getSize();
-                this.content = oldContent;
-                throw new OutOfSpaceException(host, size);
+            FileIndex index = getIndex();
+            if (index != null) {
+                index.changeContent(this, oldContent);
             }
         }
     }
 
     /**
-     * Returns the size this file has in bytes (if this file is a content one).
-     * Directories have the size of all their children.
+     * Returns the size this file has in bytes.
+     * Content files have the size of their content, directories have the size of all their children.
+     * The size is cached and updated incrementally when the content or the children change, so this takes constant time.
      * 
-     * @return The size this file has in bytes (if this file is a content one).
+     * @return The size this file has in bytes.
      */
     @Override
     public long getSize() {
 
-        if (type == FileType.FILE && content != null) {
-            return SizeUtil.getSize(content);
-        } else if (type == FileType.DIRECTORY && !children.isEmpty()) {
+        // The size is unknown after unmarshalling because the origin files aren't available at that time
+        if (size < 0) {
+            size = calculateSize();
+        }
+
+        return size;
+    }
+
+    private long calculateSize() {
+
+        if (type == FileType.FILE) {
+            Object content = getContent();
+            return content == null ? 0 : SizeUtil.getSize(content);
+        } else {
             long size = 0;
             for (File child : children) {
                 size += child.getSize();
             }
+            if (origin != null) {
+                for (File original : origin.getChildFiles()) {
+                    if (!childIndex.containsKey(original.getName()) && !hidden.contains(original.getName())) {
+                        size += original.getSize();
+                    }
+                }
+            }
             return size;
-        } else {
-            return 0;
+        }
+    }
+
+    private void addSize(long delta) {
+
+        if (delta != 0) {
+            // If a parent size is unknown, the sizes of all further parents are also unknown
+            for (File file = this; file != null && file.size >= 0; file = file.parent) {
+                file.size += delta;
+            }
+        }
+    }
+
+    private void checkWritable() {
+
+        if (host.isReadOnly()) {
+            throw new IllegalStateException("Can't modify file: File system is read-only");
+        }
+    }
+
+    private void invalidatePaths() {
+
+        // The operating system caches resolved paths, which are no longer valid if this file is moved, renamed or removed
+        if (host.getHost() != null && host.getHost().getOperatingSystem() != null && host.getHost().getOperatingSystem().getFileSystemManager() != null) {
+            host.getHost().getOperatingSystem().getFileSystemManager().invalidate(this);
+        }
+    }
+
+    private FileIndex getIndex() {
+
+        return host.getIndex() != null && isAttached() ? host.getIndex() : null;
+    }
+
+    /**
+     * Returns if this file is stored in the directory tree of its host file system.
+     * 
+     * @return True if this file can be reached from the root file of its host, false if not.
+     */
+    protected boolean isAttached() {
+
+        File root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root == host.getRootFile();
+    }
+
+    /**
+     * Returns if this file is only a view on a file of the base image which isn't stored in its host file system yet.
+     * A view is stored as soon as it's changed.
+     * 
+     * @return True if this file is a view on a file of the base image, false if not.
+     */
+    public boolean isView() {
+
+        return view;
+    }
+
+    /**
+     * Stores this file and all its parent directories in the host file system if they are only views on files of the base image.
+     * This is done automatically when the file is changed, but it must also be done before other stored objects reference the file, since views aren't stored.
+     */
+    public void store() {
+
+        if (view) {
+            // The sizes of the parent directories already contain the size of the original file
+            parent.store();
+            view = false;
+            parent.views.remove(name);
+            parent.children.add(this);
+            parent.childIndex.put(name, this);
+
+            host.addCopy(this);
+            FileIndex index = getIndex();
+            if (index != null) {
+                index.add(this);
+            }
         }
     }
 
     /**
      * Returns the child files the directory contains (if this file is a directory).
      * If this file isn't a directory, this will return null.
+     * Child files of the origin directory which weren't changed yet are returned as views.
      * 
      * @return The child files the directory contains (if this file is a directory).
      */
     public List<File> getChildFiles() {
 
-        return type == FileType.DIRECTORY ? Collections.unmodifiableList(children) : null;
+        if (type != FileType.DIRECTORY) {
+            return null;
+        } else if (origin == null) {
+            return Collections.unmodifiableList(children);
+        }
+
+        List<File> childFiles = new ArrayList<File>(children);
+        for (File original : origin.getChildFiles()) {
+            if (!isShadowed(original.getName())) {
+                childFiles.add(getChildFile(original.getName()));
+            }
+        }
+        return Collections.unmodifiableList(childFiles);
+    }
+
+    /**
+     * Returns the child files which are actually stored in this directory.
+     * Unlike {@link #getChildFiles()}, this doesn't contain the views on the child files of the origin directory.
+     * 
+     * @return The child files which are actually stored in this directory.
+     */
+    protected List<File> getStoredChildFiles() {
+
+        return Collections.unmodifiableList(children);
     }
 
     /**
      * Looks up the child file with the given name (if this file is a directory).
      * If this file isn't a directory, this will return null.
+     * If the child file only exists in the origin directory, a view on it is returned without copying it.
      * 
      * @param name The name to look for.
      * @return The child file with the given name (if this file is a directory).
      */
     public File getChildFile(String name) {
 
-        if (children != null) {
-            for (File child : children) {
-                if (child.getName().equals(name)) {
-                    return child;
+        if (type != FileType.DIRECTORY) {
+            return null;
+        }
+
+        File child = childIndex.get(name);
+        if (child == null && origin != null && !hidden.contains(name)) {
+            child = views.get(name);
+            if (child == null) {
+                File original = origin.getChildFile(name);
+                if (original != null) {
+                    child = createView(original);
                 }
             }
         }
+        return child;
+    }
+
+    private File createView(File original) {
+
+        // The view is cached, so every lookup returns the same file until the original is shadowed
+        // Presets can be shared, every other rights storage must be copied
+        FileRights childRights = original.rights;
+        if (childRights != null && !childRights.isPreset()) {
+            childRights = new FileRights(childRights);
+        }
+        File child = new File(host, original.getName(), original.getType(), childRights);
+        child.owner = original.owner;
+        child.group = original.group;
+        child.origin = original;
+        child.size = original.getSize();
+        child.parent = this;
+        child.view = true;
+        views.put(child.getName(), child);
+        return child;
+    }
 
-        return null;
+    private void hide(String name) {
+
+        if (origin != null && !hidden.contains(name) && origin.getChildFile(name) != null) {
+            hidden.add(name);
+        }
+    }
+
+    /**
+     * Returns if the child file of the origin directory with the given name is shadowed in this directory.
+     * That's the case if this directory stores a child file with the same name or the child file was removed from it.
+     * 
+     * @param name The name of the child file of the origin directory.
+     * @return True if the child file with the given name is shadowed, false if not.
+     */
+    protected boolean isShadowed(String name) {
+
+        return childIndex.containsKey(name) || hidden.contains(name);
+    }
+
+    /**
+     * Returns the origin file on the base image this file was copied from.
+     * If this file doesn't have an origin, this will return null.
+     * 
+     * @return The origin file on the base image this file was copied from.
+     */
+    protected File getOrigin() {
+
+        return origin;
+    }
+
+    /**
+     * Changes the origin file on the base image this file was copied from.
+     * This is used for layering a file system over a base image.
+     * 
+     * @param origin The new origin file on the base image.
+     */
+    protected void setOrigin(File origin) {
+
+        this.origin = origin;
+        views.clear();
+        size = -1;
     }
 
     /**
@@ -325,17 +706,29 @@ public class File implements SizeObject {
      * This throws an OutOfSpaceException if there isn't enough space on the host drive for the new file.
      * 
      * @param file The file to add to this directory.
+     * @throws IllegalStateException There's already another file with the same name in this directory or the file system is read-only.
      * @throws OutOfSpaceException If there isn't enough space on the host drive for the new file.
      */
     protected void addChildFile(File file) {
 
-        if (children != null) {
-            if (!children.contains(file)) {
-                if (file.getSize() > host.getFree()) {
-                    throw new OutOfSpaceException(host, file.getSize());
-                } else {
-                    children.add(file);
+        if (type == FileType.DIRECTORY && file.parent != this) {
+            checkWritable();
+            if (getChildFile(file.getName()) != null) {
+                throw new IllegalStateException("Can't add file: Directory '" + getLocalPath() + "' already contains a file named '" + file.getName() + "'");
+            } else if (file.getSize() > host.getFree() && isAttached()) {
+                throw new OutOfSpaceException(host, file.getSize());
+            } else {
+                store();
+                children.add(file);
+                childIndex.put(file.getName(), file);
+                file.parent = this;
+                addSize(file.getSize());
+
+                FileIndex index = getIndex();
+                if (index != null) {
+                    index.add(file);
                 }
+                host.addCopies(file);
             }
         }
     }
@@ -348,20 +741,45 @@ public class File implements SizeObject {
      */
     protected void removeChildFile(File file) {
 
-        if (children != null) {
-            children.remove(file);
+        if (file.parent == this && file.view) {
+            // Views aren't stored, so they only have to be hidden
+            checkWritable();
+            store();
+            file.invalidatePaths();
+            views.remove(file.getName());
+            hide(file.getName());
+            file.parent = null;
+            file.view = false;
+            addSize(-file.getSize());
+        } else if (file.parent == this) {
+            checkWritable();
+            file.invalidatePaths();
+            FileIndex index = getIndex();
+
+            if (childIndex.get(file.getName()) == file) {
+                childIndex.remove(file.getName());
+                children.remove(file);
+            }
+            hide(file.getName());
+            file.parent = null;
+            addSize(-file.getSize());
+
+            if (index != null) {
+                index.remove(file);
+            }
+            host.removeCopies(file);
         }
     }
 
     /**
      * Returns the parent directory which contains this file.
+     * If this file is the root file or isn't stored in a directory, this will return null.
      * 
      * @return The parent directory which contains this file.
      */
     public File getParent() {
 
-        String path = getLocalPath();
-        return host.getFile(path.substring(0, path.lastIndexOf(host.getSeperator())));
+        return parent;
     }
 
     /**
@@ -388,7 +806,10 @@ public class File implements SizeObject {
         remove();
 
         if (path.contains(":")) {
-            host = host.getHost().getOperatingSystem().getFileSystemManager().getMounted(path);
+            FileSystem newHost = host.getHost().getOperatingSystem().getFileSystemManager().getMounted(path);
+            if (newHost != host) {
+                changeHost(newHost);
+            }
             host.addFile(this, path.split(":")[1]);
         } else {
             host.addFile(this, path);
@@ -401,17 +822,21 @@ public class File implements SizeObject {
      */
     public void remove() {
 
-        getParent().removeChildFile(this);
+        if (parent != null) {
+            parent.removeChildFile(this);
+        }
     }
 
     /**
      * Changes the current hosting media of this file to a new one.
+     * The file and all its child files get new inodes from the new media.
      * 
      * @param host The new media which will host this file.
      */
     protected void changeHost(FileSystem host) {
 
         this.host = host;
+        inode = host.allocateInode();
 
         if (children != null) {
             for (File child : children) {
@@ -422,7 +847,7 @@ public class File implements SizeObject {
 
     /**
      * Returns the unique serialization id for the file.
-     * The id is a combination of the host computer's id and the global path of the file.
+     * The id is a combination of the host file system's id and the inode of the file.
      * It should only be used by a serialization algorithm.
      * 
      * @return The unique serialization id for the file.
@@ -431,7 +856,7 @@ public class File implements SizeObject {
     @XmlID
     protected String getId() {
 
-        return host.getHost().getId() + "-" + getGlobalHostPath();
+        return host.getId() + "-" + inode;
     }
 
     public void beforeUnmarshal(Unmarshaller unmarshaller, Object parent) {
@@ -440,59 +865,19 @@ public class File implements SizeObject {
             host = (FileSystem) parent;
         } else {
             host = ((File) parent).getHost();
+            this.parent = (File) parent;
         }
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (children == null ? 0 : children.hashCode());
-        result = prime * result + (content == null ? 0 : content.hashCode());
-        result = prime * result + (name == null ? 0 : name.hashCode());
-        result = prime * result + (type == null ? 0 : type.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
+    public void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        File other = (File) obj;
-        if (children == null) {
-            if (other.children != null) {
-                return false;
-            }
-        } else if (!children.equals(other.children)) {
-            return false;
-        }
-        if (content == null) {
-            if (other.content != null) {
-                return false;
-            }
-        } else if (!content.equals(other.content)) {
-            return false;
-        }
-        if (name == null) {
-            if (other.name != null) {
-                return false;
-            }
-        } else if (!name.equals(other.name)) {
-            return false;
-        }
-        if (type != other.type) {
-            return false;
+        childIndex.clear();
+        for (File child : children) {
+            childIndex.put(child.getName(), child);
         }
-        return true;
+
+        // The origin references are resolved at the end of unmarshalling, so the size is calculated lazily
+        size = -1;
     }
 
     @Override
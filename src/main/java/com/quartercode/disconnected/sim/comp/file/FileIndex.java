@@ -0,0 +1,170 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.comp.file;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * A file index stores the files of a {@link FileSystem} by their name and by the type of their content.
+ * Searches with an exact name or a content type can use the index instead of walking the whole file tree.
+ * The index only contains the files which are actually stored in the file system, not the ones which are only available through a base image.
+ * It's updated incrementally by the files when they are added, removed, renamed or get new content.
+ * 
+ * @see FileSystem#setIndexed(boolean)
+ */
+public class FileIndex {
+
+    private final Map<String, Set<File>>   names    = new HashMap<String, Set<File>>();
+    private final Map<Class<?>, Set<File>> contents = new HashMap<Class<?>, Set<File>>();
+
+    /**
+     * Creates a new empty file index.
+     */
+    public FileIndex() {
+
+    }
+
+    /**
+     * Returns all indexed files which have the given name.
+     * The returned set is backed by the index, so it must not be used while files are modified.
+     * 
+     * @param name The name of the files to return.
+     * @return All indexed files which have the given name.
+     */
+    public Set<File> getByName(String name) {
+
+        Set<File> files = names.get(name);
+        return files == null ? Collections.<File> emptySet() : Collections.unmodifiableSet(files);
+    }
+
+    /**
+     * Returns all indexed files whose content is an instance of the given type.
+     * 
+     * @param contentType The type the contents of the returned files have to be an instance of.
+     * @return All indexed files whose content is an instance of the given type.
+     */
+    public List<File> getByContentType(Class<?> contentType) {
+
+        List<File> files = new ArrayList<File>();
+        for (Entry<Class<?>, Set<File>> entry : contents.entrySet()) {
+            if (contentType.isAssignableFrom(entry.getKey())) {
+                files.addAll(entry.getValue());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Adds the given file and all child files which are stored in it to the index.
+     * 
+     * @param file The file to add to the index.
+     */
+    protected void add(File file) {
+
+        put(names, file.getName(), file);
+        if (file.getContent() != null) {
+            put(contents, file.getContent().getClass(), file);
+        }
+
+        for (File child : file.getStoredChildFiles()) {
+            add(child);
+        }
+    }
+
+    /**
+     * Removes the given file and all child files which are stored in it from the index.
+     * 
+     * @param file The file to remove from the index.
+     */
+    protected void remove(File file) {
+
+        remove(names, file.getName(), file);
+        if (file.getContent() != null) {
+            remove(contents, file.getContent().getClass(), file);
+        }
+
+        for (File child : file.getStoredChildFiles()) {
+            remove(child);
+        }
+    }
+
+    /**
+     * Updates the name the given file is indexed with.
+     * 
+     * @param file The renamed file.
+     * @param oldName The name the file had before.
+     */
+    protected void rename(File file, String oldName) {
+
+        remove(names, oldName, file);
+        put(names, file.getName(), file);
+    }
+
+    /**
+     * Updates the content type the given file is indexed with.
+     * 
+     * @param file The file which got a new content.
+     * @param oldContent The content the file had before.
+     */
+    protected void changeContent(File file, Object oldContent) {
+
+        if (oldContent != null) {
+            remove(contents, oldContent.getClass(), file);
+        }
+        if (file.getContent() != null) {
+            put(contents, file.getContent().getClass(), file);
+        }
+    }
+
+    private <K> void put(Map<K, Set<File>> map, K key, File file) {
+
+        Set<File> files = map.get(key);
+        if (files == null) {
+            // Files need to be compared by identity, different files can be equal
+            files = Collections.newSetFromMap(new IdentityHashMap<File, Boolean>());
+            map.put(key, files);
+        }
+        files.add(file);
+    }
+
+    private <K> void remove(Map<K, Set<File>> map, K key, File file) {
+
+        Set<File> files = map.get(key);
+        if (files != null) {
+            files.remove(file);
+            if (files.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [names=" + names.size() + ", contentTypes=" + contents.size() + "]";
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.comp.file;
+
+import java.util.regex.Pattern;
+import com.quartercode.disconnected.sim.comp.file.File.FileType;
+
+/**
+ * A file query describes the files a search on a {@link FileSystem} should find.
+ * A query can filter the file name using a glob pattern, the file type and the type of the file content.
+ * Every filter which is null matches all files.
+ * 
+ * The glob pattern only matches the name of a file, not the whole path.
+ * A "*" matches any amount of characters, a "?" matches exactly one character.
+ * 
+ * @see FileSystem#find(FileQuery)
+ */
+public class FileQuery {
+
+    private final String   pattern;
+    private final Pattern  regex;
+    private final FileType type;
+    private final Class<?> contentType;
+
+    /**
+     * Creates a new file query and sets the name pattern, the file type and the content type.
+     * Every filter which is null matches all files.
+     * 
+     * @param pattern The glob pattern the names of the files have to match.
+     * @param type The type the files have to have.
+     * @param contentType The type the contents of the files have to be an instance of.
+     */
+    public FileQuery(String pattern, FileType type, Class<?> contentType) {
+
+        this.pattern = pattern;
+        regex = pattern == null || isExact(pattern) ? null : compile(pattern);
+        this.type = type;
+        this.contentType = contentType;
+    }
+
+    private static boolean isExact(String pattern) {
+
+        return pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0;
+    }
+
+    private static Pattern compile(String pattern) {
+
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int index = 0; index < pattern.length(); index++) {
+            char character = pattern.charAt(index);
+            if (character == '*' || character == '?') {
+                if (index > literalStart) {
+                    regex.append(Pattern.quote(pattern.substring(literalStart, index)));
+                }
+                regex.append(character == '*' ? ".*" : ".");
+                literalStart = index + 1;
+            }
+        }
+        if (literalStart < pattern.length()) {
+            regex.append(Pattern.quote(pattern.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Returns the glob pattern the names of the files have to match.
+     * If this is null, files with every name match the query.
+     * 
+     * @return The glob pattern the names of the files have to match.
+     */
+    public String getPattern() {
+
+        return pattern;
+    }
+
+    /**
+     * Returns the name every matching file has if the pattern doesn't contain any wildcards.
+     * If the pattern contains wildcards or there is no pattern, this will return null.
+     * 
+     * @return The exact name every matching file has.
+     */
+    public String getExactName() {
+
+        return pattern != null && regex == null ? pattern : null;
+    }
+
+    /**
+     * Returns the type the files have to have.
+     * If this is null, files of every type match the query.
+     * 
+     * @return The type the files have to have.
+     */
+    public FileType getType() {
+
+        return type;
+    }
+
+    /**
+     * Returns the type the contents of the files have to be an instance of.
+     * If this is null, files with every content match the query.
+     * 
+     * @return The type the contents of the files have to be an instance of.
+     */
+    public Class<?> getContentType() {
+
+        return contentType;
+    }
+
+    /**
+     * Returns if the given file matches all filters of this query.
+     * 
+     * @param file The file to check.
+     * @return True if the given file matches this query, false if not.
+     */
+    public boolean matches(File file) {
+
+        if (type != null && file.getType() != type) {
+            return false;
+        } else if (contentType != null && !contentType.isInstance(file.getContent())) {
+            return false;
+        } else if (pattern != null) {
+            return regex == null ? pattern.equals(file.getName()) : regex.matcher(file.getName()).matches();
+        } else {
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [pattern=" + pattern + ", type=" + type + ", contentType=" + (contentType == null ? null : contentType.getName()) + "]";
+    }
+
+}
@@ -18,7 +18,8 @@
 
 package com.quartercode.disconnected.sim.comp.file;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import org.apache.commons.lang.Validate;
@@ -26,6 +27,8 @@ import org.apache.commons.lang.Validate;
 /**
  * File rights control the access to files by users.
  * You can set if a given user/group is allowed to read, write, execute or delete.
+ * All rights are packed into a single bitmask, so checking a right doesn't need to allocate or iterate anything.
+ * Common right combinations are available as shared presets (like {@link #DEFAULT}) which can't be changed.
  */
 @XmlJavaTypeAdapter (FileRights.FileRightsAdapter.class)
 public class FileRights {
@@ -98,9 +101,57 @@ public class FileRights {
 
     }
 
-    private FileRight[] ownerRights;
-    private FileRight[] groupRights;
-    private FileRight[] othersRights;
+    private static final int              ACCESSOR_BITS = FileRight.values().length;
+    private static final int              EXECUTE_SLOT  = 1 << FileRight.EXECUTE.ordinal() | 1 << FileRight.EXECUTE_EXTENDED.ordinal();
+
+    private static final List<FileRights> PRESETS       = new ArrayList<FileRights>();
+
+    /**
+     * The default rights for new files: The owner can read, write and delete the file, everyone else can only read it.
+     */
+    public static final FileRights        DEFAULT       = createPreset("rwd-r---r---");
+    /**
+     * Only the owner can read, write and delete the file.
+     */
+    public static final FileRights        PRIVATE       = createPreset("rwd---------");
+    /**
+     * The owner can read, write, delete and execute the file, everyone else can read and execute it.
+     */
+    public static final FileRights        EXECUTABLE    = createPreset("rwdxr--xr--x");
+
+    private static FileRights createPreset(String rights) {
+
+        FileRights preset = new FileRights(rights);
+        preset.preset = true;
+        PRESETS.add(preset);
+        return preset;
+    }
+
+    /**
+     * Returns a file rights storage for the given file right string (see {@link #FileRights(String)} for the format).
+     * If the string matches one of the shared presets (like {@link #DEFAULT}), the preset object is returned instead of a new one.
+     * 
+     * @param rights The right information to parse.
+     * @return A file rights storage (possibly a shared preset) which represents the given right string.
+     */
+    public static FileRights valueOf(String rights) {
+
+        FileRights parsed = new FileRights(rights);
+        for (FileRights preset : PRESETS) {
+            if (preset.mask == parsed.mask) {
+                return preset;
+            }
+        }
+        return parsed;
+    }
+
+    private static int getBit(FileAccessor accessor, FileRight right) {
+
+        return 1 << accessor.ordinal() * ACCESSOR_BITS + right.ordinal();
+    }
+
+    private int     mask;
+    private boolean preset;
 
     /**
      * Creates a new empty file rights storage.
@@ -110,15 +161,23 @@ public class FileRights {
 
     }
 
+    /**
+     * Creates a new file rights storage using the given right arrays.
+     * Every array contains the rights for the read, write, delete and execute slot, unset slots are null.
+     * 
+     * @param ownerRights The rights of the owner of the file.
+     * @param groupRights The rights of the group of the file.
+     * @param othersRights The rights of everyone else.
+     */
     public FileRights(FileRight[] ownerRights, FileRight[] groupRights, FileRight[] othersRights) {
 
         Validate.isTrue(ownerRights.length == 4, "Owner right array must contain 4 elements");
         Validate.isTrue(groupRights.length == 4, "Group right array must contain 4 elements");
         Validate.isTrue(othersRights.length == 4, "Others right array must contain 4 elements");
 
-        this.ownerRights = othersRights;
-        this.groupRights = groupRights;
-        this.othersRights = othersRights;
+        setRights(FileAccessor.OWNER, ownerRights);
+        setRights(FileAccessor.GROUP, groupRights);
+        setRights(FileAccessor.OTHERS, othersRights);
     }
 
     /**
@@ -151,37 +210,73 @@ public class FileRights {
 
         Validate.isTrue(rights.length() == 4 * 3, "The right string must contain 4 * 3 = 12 characters");
 
-        ownerRights = parseCharRights(rights.substring(0, 4).toCharArray());
-        groupRights = parseCharRights(rights.substring(4, 8).toCharArray());
-        othersRights = parseCharRights(rights.substring(8, 12).toCharArray());
+        for (int index = 0; index < rights.length(); index++) {
+            FileRight right = getRight(rights.charAt(index));
+            if (right != null) {
+                mask |= getBit(FileAccessor.values()[index / 4], right);
+            }
+        }
     }
 
-    private FileRight[] parseCharRights(char[] rights) {
+    /**
+     * Creates a new modifiable file rights storage which has the same rights as the given one.
+     * This can be used for changing the rights of a file which uses a shared preset.
+     * 
+     * @param rights The file rights storage to copy the rights from.
+     */
+    public FileRights(FileRights rights) {
 
-        FileRight[] enumRights = new FileRight[4];
-        for (int index = 0; index < rights.length; index++) {
-            for (FileRight enumRight : FileRight.values()) {
-                if (enumRight.getLetter() == rights[index]) {
-                    enumRights[index] = enumRight;
-                }
-            }
+        mask = rights.mask;
+    }
+
+    private FileRight getRight(char letter) {
+
+        switch (letter) {
+            case 'r':
+                return FileRight.READ;
+            case 'w':
+                return FileRight.WRITE;
+            case 'd':
+                return FileRight.DELETE;
+            case 'x':
+                return FileRight.EXECUTE;
+            case 's':
+                return FileRight.EXECUTE_EXTENDED;
+            default:
+                return null;
         }
-        return enumRights;
     }
 
-    private FileRight[] getRightArray(FileAccessor accessor) {
+    private void setRights(FileAccessor accessor, FileRight[] rights) {
 
-        if (accessor == FileAccessor.OWNER) {
-            return ownerRights;
-        } else if (accessor == FileAccessor.GROUP) {
-            return groupRights;
-        } else if (accessor == FileAccessor.OTHERS) {
-            return othersRights;
-        } else {
-            return null;
+        for (FileRight right : rights) {
+            if (right != null) {
+                mask |= getBit(accessor, right);
+            }
         }
     }
 
+    /**
+     * Returns if this file rights storage is a shared preset (like {@link #DEFAULT}) which can't be changed.
+     * 
+     * @return If this file rights storage is a shared preset.
+     */
+    public boolean isPreset() {
+
+        return preset;
+    }
+
+    /**
+     * Returns the bitmask which stores all rights of this storage.
+     * Every accessor uses one bit for every {@link FileRight}, starting with the owner at the lowest bits.
+     * 
+     * @return The bitmask which stores all rights of this storage.
+     */
+    public int getMask() {
+
+        return mask;
+    }
+
     /**
      * Returns if the given right is set for the given file accessor.
      * 
@@ -191,38 +286,50 @@ public class FileRights {
      */
     public boolean getRight(FileAccessor accessor, FileRight right) {
 
-        for (FileRight setRight : getRightArray(accessor)) {
-            if (setRight != null && setRight == right) {
-                return true;
-            }
-        }
-        return false;
+        return (mask & getBit(accessor, right)) != 0;
     }
 
     /**
      * Sets or unsets the given right for the given file accessor.
      * If a right is set, the given file accessor use functions related to the right.
+     * The execute and the execute-extended right share one slot, so setting or unsetting one of them also unsets the other one.
      * 
      * @param accessor The accessor who wants to access the file.
      * @param right The file right to set or unset.
      * @param set If the given right should be set (true) or unset (false).
+     * @throws UnsupportedOperationException This file rights storage is a shared preset.
      */
     public void setRight(FileAccessor accessor, FileRight right, boolean set) {
 
-        int index = 0;
-        if (right == FileRight.READ) {
-            index = 0;
-        } else if (right == FileRight.WRITE) {
-            index = 1;
-        } else if (right == FileRight.DELETE) {
-            index = 2;
-        } else if (right == FileRight.EXECUTE) {
-            index = 3;
-        } else if (right == FileRight.EXECUTE_EXTENDED) {
-            index = 3;
+        if (preset) {
+            throw new UnsupportedOperationException("Can't change shared preset file rights " + this);
         }
 
-        getRightArray(accessor)[index] = set ? right : null;
+        mask = getMask(accessor, right, set);
+    }
+
+    /**
+     * Returns if setting or unsetting the given right for the given file accessor would change the rights.
+     * This follows the shared slot of the execute rights, so it can be checked before a shared preset is copied.
+     * 
+     * @param accessor The accessor who wants to access the file.
+     * @param right The file right to set or unset.
+     * @param set If the given right should be set (true) or unset (false).
+     * @return If {@link #setRight(FileAccessor, FileRight, boolean)} would change the rights.
+     */
+    public boolean isChangedBy(FileAccessor accessor, FileRight right, boolean set) {
+
+        return getMask(accessor, right, set) != mask;
+    }
+
+    private int getMask(FileAccessor accessor, FileRight right, boolean set) {
+
+        int slot = right == FileRight.EXECUTE || right == FileRight.EXECUTE_EXTENDED ? EXECUTE_SLOT : 1 << right.ordinal();
+        int mask = this.mask & ~(slot << accessor.ordinal() * ACCESSOR_BITS);
+        if (set) {
+            mask |= getBit(accessor, right);
+        }
+        return mask;
     }
 
     @Override
@@ -230,9 +337,7 @@ public class FileRights {
 
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.hashCode(groupRights);
-        result = prime * result + Arrays.hashCode(othersRights);
-        result = prime * result + Arrays.hashCode(ownerRights);
+        result = prime * result + mask;
         return result;
     }
 
@@ -249,13 +354,7 @@ public class FileRights {
             return false;
         }
         FileRights other = (FileRights) obj;
-        if (!Arrays.equals(groupRights, other.groupRights)) {
-            return false;
-        }
-        if (!Arrays.equals(othersRights, other.othersRights)) {
-            return false;
-        }
-        if (!Arrays.equals(ownerRights, other.ownerRights)) {
+        if (mask != other.mask) {
             return false;
         }
         return true;
@@ -264,16 +363,18 @@ public class FileRights {
     @Override
     public String toString() {
 
-        return generateRightString(ownerRights) + generateRightString(groupRights) + generateRightString(othersRights);
-    }
-
-    private String generateRightString(FileRight[] rights) {
-
-        String rightString = "";
-        for (FileRight right : rights) {
-            rightString += right.getLetter();
+        StringBuilder rightString = new StringBuilder(4 * 3);
+        for (FileAccessor accessor : FileAccessor.values()) {
+            rightString.append(getRight(accessor, FileRight.READ) ? FileRight.READ.getLetter() : '-');
+            rightString.append(getRight(accessor, FileRight.WRITE) ? FileRight.WRITE.getLetter() : '-');
+            rightString.append(getRight(accessor, FileRight.DELETE) ? FileRight.DELETE.getLetter() : '-');
+            if (getRight(accessor, FileRight.EXECUTE_EXTENDED)) {
+                rightString.append(FileRight.EXECUTE_EXTENDED.getLetter());
+            } else {
+                rightString.append(getRight(accessor, FileRight.EXECUTE) ? FileRight.EXECUTE.getLetter() : '-');
+            }
         }
-        return rightString;
+        return rightString.toString();
     }
 
     /**
@@ -312,7 +413,7 @@ public class FileRights {
         @Override
         public FileRights unmarshal(String v) {
 
-            return new FileRights(v);
+            return valueOf(v);
         }
 
         @Override
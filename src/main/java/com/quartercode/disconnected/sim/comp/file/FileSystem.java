@@ -18,13 +18,23 @@
 
 package com.quartercode.disconnected.sim.comp.file;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
+import org.apache.commons.lang.Validate;
 import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.comp.file.File.FileType;
+import com.quartercode.disconnected.sim.comp.hardware.Hardware;
 import com.quartercode.disconnected.util.InfoString;
+import com.quartercode.disconnected.util.LookaheadIterator;
 import com.quartercode.disconnected.util.size.SizeObject;
 
 /**
@@ -32,20 +42,34 @@ import com.quartercode.disconnected.util.size.SizeObject;
  * The system stores files which can be accessed like regular file objects.
  * A file system can be virtual or physical.
  * 
+ * A file system can also be an image which isn't hosted on a computer.
+ * Other file systems can be layered over such a read-only image. They share the files of the image and only store copies of the files which were changed.
+ * 
  * @see File
  */
 public class FileSystem implements SizeObject, InfoString {
 
-    private final String seperator = "/";
+    private final String    seperator = "/";
 
     @XmlIDREF
     @XmlAttribute
-    private Computer     host;
+    private Computer        host;
+    @XmlAttribute
+    private String          name;
     @XmlElement
-    private long         size;
+    private long            size;
+    @XmlAttribute
+    private long            nextInode;
+    private boolean         readOnly;
+    private boolean         indexed;
 
     @XmlElement (name = "file")
-    private File         rootFile;
+    private File            rootFile;
+
+    @XmlTransient
+    private FileIndex       index;
+    @XmlTransient
+    private Map<File, File> copies;
 
     /**
      * Creates a new empty file system.
@@ -69,6 +93,21 @@ public class FileSystem implements SizeObject, InfoString {
         rootFile = new File(this);
     }
 
+    /**
+     * Creates a new file system image which isn't hosted on a computer and sets the name and the size in bytes.
+     * After filling the image, it should be made read-only, so other file systems can be layered over it.
+     * 
+     * @param name The name of the image.
+     * @param size The size of the image, given in bytes.
+     */
+    public FileSystem(String name, long size) {
+
+        this.name = name;
+        this.size = size;
+
+        rootFile = new File(this);
+    }
+
     /**
      * Returns the path seperator which seperates different files in a path string.
      * 
@@ -90,6 +129,156 @@ public class FileSystem implements SizeObject, InfoString {
         return host;
     }
 
+    /**
+     * Returns the name of the file system if it's an image which isn't hosted on a computer.
+     * 
+     * @return The name of the file system image.
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Returns if the files on the file system can't be modified.
+     * 
+     * @return True if the file system is read-only, false if not.
+     */
+    @XmlAttribute
+    public boolean isReadOnly() {
+
+        return readOnly;
+    }
+
+    /**
+     * Changes if the files on the file system can't be modified.
+     * A file system needs to be read-only before other file systems can be layered over it.
+     * 
+     * @param readOnly True if the file system should be read-only, false if not.
+     */
+    public void setReadOnly(boolean readOnly) {
+
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Returns if the file system keeps an index of its files for speeding up searches.
+     * 
+     * @return True if the file system keeps a file index, false if not.
+     * @see FileIndex
+     */
+    @XmlAttribute
+    public boolean isIndexed() {
+
+        return indexed;
+    }
+
+    /**
+     * Changes if the file system keeps an index of its files for speeding up searches.
+     * The index is built when it's used for the first time and is updated incrementally from then on.
+     * 
+     * @param indexed True if the file system should keep a file index, false if not.
+     * @see FileIndex
+     */
+    public void setIndexed(boolean indexed) {
+
+        this.indexed = indexed;
+        if (!indexed) {
+            index = null;
+        }
+    }
+
+    /**
+     * Returns the file index of the file system if it was already built.
+     * If the file system isn't indexed or the index wasn't used yet, this will return null.
+     * 
+     * @return The file index of the file system.
+     */
+    protected FileIndex getIndex() {
+
+        return index;
+    }
+
+    /**
+     * Registers a file which was copied from the base image into this file system.
+     * 
+     * @param copy The file which was copied from its origin file.
+     */
+    protected void addCopy(File copy) {
+
+        if (copies != null) {
+            copies.put(copy.getOrigin(), copy);
+        }
+    }
+
+    /**
+     * Registers all copies in the given file tree which was added to this file system.
+     * Detached file trees aren't registered until they are added to the directory tree.
+     * If a copy was moved, the views on the children of its origin are resolved under its new location.
+     * 
+     * @param file The root of the file tree which was added.
+     */
+    protected void addCopies(File file) {
+
+        if (copies != null && file.isAttached()) {
+            collectCopies(file);
+        }
+    }
+
+    /**
+     * Unregisters all copies in the given file tree which was removed from this file system.
+     * 
+     * @param file The root of the file tree which was removed.
+     */
+    protected void removeCopies(File file) {
+
+        if (copies != null) {
+            if (file.getOrigin() != null && copies.get(file.getOrigin()) == file) {
+                copies.remove(file.getOrigin());
+            }
+            for (File child : file.getStoredChildFiles()) {
+                removeCopies(child);
+            }
+        }
+    }
+
+    /**
+     * Returns the read-only base image this file system is layered over.
+     * If this file system isn't layered over an image, this will return null.
+     * 
+     * @return The base image this file system is layered over.
+     */
+    @XmlTransient
+    public FileSystem getBase() {
+
+        return rootFile.getOrigin() == null ? null : rootFile.getOrigin().getHost();
+    }
+
+    /**
+     * Layers this file system over the given read-only base image.
+     * All files of the image become available on this file system, but only changed files are copied into it.
+     * The files of the image count into the filled bytes of this file system.
+     * This is only possible as long as this file system doesn't contain any files.
+     * 
+     * @param base The read-only base image to layer this file system over.
+     * @throws IllegalArgumentException The base isn't a read-only image or is layered over another image itself.
+     * @throws IllegalStateException This file system already contains files.
+     * @throws OutOfSpaceException There isn't enough space on this file system for the files of the image.
+     */
+    public void setBase(FileSystem base) {
+
+        Validate.isTrue(base.isReadOnly(), "Base file system must be read-only");
+        Validate.isTrue(base.getBase() == null, "Base file system can't be layered over another file system");
+        if (!rootFile.getChildFiles().isEmpty()) {
+            throw new IllegalStateException("Can't layer file system over base: File system already contains files");
+        } else if (base.getFilled() > size) {
+            throw new OutOfSpaceException(this, base.getFilled());
+        }
+
+        rootFile.setOrigin(base.getRootFile());
+        copies = null;
+    }
+
     /**
      * Returns the size of the media, given in bytes.
      * 
@@ -101,6 +290,17 @@ public class FileSystem implements SizeObject, InfoString {
         return size;
     }
 
+    /**
+     * Allocates a new inode number which identifies a file on this file system.
+     * Inodes are never reused, so they stay unique even after files were removed.
+     * 
+     * @return A new inode number which isn't used by any other file on this file system.
+     */
+    protected long allocateInode() {
+
+        return nextInode++;
+    }
+
     /**
      * Returns the root file which every other file path branches of.
      * 
@@ -136,6 +336,93 @@ public class FileSystem implements SizeObject, InfoString {
         return current;
     }
 
+    /**
+     * Searches all files on the media which match the given query.
+     * The files are searched lazily while iterating over the result, so a search which is stopped early doesn't look at every file.
+     * If the file system is indexed and the query has an exact name or a content type, the search uses the index instead of walking the file tree.
+     * If the file system is layered over a base image, matching files of the image which weren't changed are returned as views without copying them (see {@link File#isView()}).
+     * The file system must not be modified while iterating over the result.
+     * 
+     * @param query The query the returned files have to match.
+     * @return All files on the media which match the given query.
+     */
+    public Iterable<File> find(final FileQuery query) {
+
+        return new Iterable<File>() {
+
+            @Override
+            public Iterator<File> iterator() {
+
+                return search(query);
+            }
+        };
+    }
+
+    private Iterator<File> search(FileQuery query) {
+
+        Iterator<File> stored;
+        if (indexed && (query.getExactName() != null || query.getContentType() != null)) {
+            if (index == null) {
+                index = new FileIndex();
+                for (File child : rootFile.getStoredChildFiles()) {
+                    index.add(child);
+                }
+            }
+
+            Collection<File> candidates = query.getExactName() != null ? index.getByName(query.getExactName()) : index.getByContentType(query.getContentType());
+            stored = new QueryIterator(candidates.iterator(), query);
+        } else {
+            stored = new QueryIterator(new TreeIterator(rootFile), query);
+        }
+
+        FileSystem base = getBase();
+        if (base == null) {
+            return stored;
+        } else {
+            return new LayerIterator(stored, base.search(query));
+        }
+    }
+
+    private File getCopy(File original) {
+
+        // Returns null if the original was already copied (then the copy is found directly), removed or replaced
+        // The copies are unregistered when they are removed, so every registered copy is attached to this file system
+        if (copies == null) {
+            copies = new IdentityHashMap<File, File>();
+            collectCopies(rootFile);
+        }
+
+        // Go up to the next directory which was copied, then look up the views on the way down again
+        List<String> names = new ArrayList<String>();
+        for (File current = original; current != null; current = current.getParent()) {
+            File copy = copies.get(current);
+            if (copy != null) {
+                if (names.isEmpty() || copy.getHost() != this || copy.isShadowed(names.get(names.size() - 1))) {
+                    return null;
+                }
+
+                File file = copy;
+                for (int index = names.size() - 1; index >= 0 && file != null; index--) {
+                    file = file.getChildFile(names.get(index));
+                }
+                return file;
+            }
+            names.add(current.getName());
+        }
+
+        return null;
+    }
+
+    private void collectCopies(File file) {
+
+        if (file.getOrigin() != null) {
+            copies.put(file.getOrigin(), file);
+        }
+        for (File child : file.getStoredChildFiles()) {
+            collectCopies(child);
+        }
+    }
+
     /**
      * Creates a new file using the given path and type on this media and returns it.
      * If the file already exists, the existing file will be returned.
@@ -149,7 +436,7 @@ public class FileSystem implements SizeObject, InfoString {
     public File addFile(String path, FileType type) {
 
         String[] parts = path.split(seperator);
-        File file = new File(this, parts[parts.length - 1], type, new FileRights("rwd-r---r---"));
+        File file = new File(this, parts[parts.length - 1], type, FileRights.DEFAULT);
         addFile(file, path);
         return file;
     }
@@ -172,10 +459,10 @@ public class FileSystem implements SizeObject, InfoString {
             if (!part.isEmpty()) {
                 if (current.getChildFile(part) == null) {
                     if (counter == parts.length - 1) {
-                        current.addChildFile(file);
                         file.setName(part);
+                        current.addChildFile(file);
                     } else {
-                        File dir = new File(this, part, FileType.DIRECTORY, new FileRights("rwd-r---r---"));
+                        File dir = new File(this, part, FileType.DIRECTORY, FileRights.DEFAULT);
                         current.addChildFile(dir);
                     }
                 } else if (current.getChildFile(part).getType() != FileType.DIRECTORY) {
@@ -188,23 +475,13 @@ public class FileSystem implements SizeObject, InfoString {
 
     /**
      * Returns the total amount of bytes which are occupied by files.
+     * This is the cached size of the root directory, so it takes constant time.
      * 
      * @return The total amount of bytes which are occupied by files.
      */
     public long getFilled() {
 
-        return getFilled(rootFile);
-    }
-
-    private long getFilled(File file) {
-
-        long filled = file.getSize();
-        if (file.getChildFiles() != null) {
-            for (File childFile : file.getChildFiles()) {
-                filled += getFilled(childFile);
-            }
-        }
-        return filled;
+        return rootFile.getSize();
     }
 
     /**
@@ -219,8 +496,8 @@ public class FileSystem implements SizeObject, InfoString {
 
     /**
      * Returns the unique serialization id for the file system.
-     * The id is a combination of the host computer's id and the mountpoint of the file system.
-     * You can only generate an id if the file system has been mounted.
+     * The id is a combination of the host computer's id and the position of the providing hardware among the file system providers of the computer.
+     * It doesn't depend on the mountpoint, so it stays the same if the file system is unmounted or mounted somewhere else. Images use their name instead.
      * 
      * @return The unique serialization id for the file system.
      */
@@ -228,67 +505,128 @@ public class FileSystem implements SizeObject, InfoString {
     @XmlID
     protected String getId() {
 
-        if (host.getOperatingSystem().getFileSystemManager().getMounted().contains(this)) {
-            return host.getId() + "-" + host.getOperatingSystem().getFileSystemManager().getMountpoint(this);
-        } else {
-            return null;
+        if (host == null) {
+            return "image-" + name;
+        }
+
+        List<Hardware> hardware = host.getHardware();
+        int provider = 0;
+        for (int index = 0; index < hardware.size(); index++) {
+            if (hardware.get(index) instanceof FileSystemProvider) {
+                if ( ((FileSystemProvider) hardware.get(index)).getFileSystem() == this) {
+                    return host.getId() + "-fs" + provider;
+                }
+                provider++;
+            }
         }
+        return null;
     }
 
     @Override
-    public int hashCode() {
+    public String toInfoString() {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (rootFile == null ? 0 : rootFile.hashCode());
-        result = prime * result + (seperator == null ? 0 : seperator.hashCode());
-        result = prime * result + (int) (size ^ size >>> 32);
-        return result;
+        return getFilled() + "/" + size + "b filled, " + (host == null ? "image " + name : "host computer " + host.getId());
     }
 
     @Override
-    public boolean equals(Object obj) {
+    public String toString() {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
+        return getClass().getName() + " [" + toInfoString() + "]";
+    }
+
+    /**
+     * The query iterator only returns the files of another iterator which match a file query.
+     */
+    private static class QueryIterator extends LookaheadIterator<File> {
+
+        private final Iterator<File> files;
+        private final FileQuery      query;
+
+        private QueryIterator(Iterator<File> files, FileQuery query) {
+
+            this.files = files;
+            this.query = query;
         }
-        FileSystem other = (FileSystem) obj;
-        if (rootFile == null) {
-            if (other.rootFile != null) {
-                return false;
+
+        @Override
+        protected File computeNext() {
+
+            while (files.hasNext()) {
+                File file = files.next();
+                if (query.matches(file)) {
+                    return file;
+                }
             }
-        } else if (!rootFile.equals(other.rootFile)) {
-            return false;
+            return null;
         }
-        if (seperator == null) {
-            if (other.seperator != null) {
-                return false;
-            }
-        } else if (!seperator.equals(other.seperator)) {
-            return false;
+
+    }
+
+    /**
+     * The tree iterator walks all files which are stored below a directory in depth-first order.
+     */
+    private static class TreeIterator extends LookaheadIterator<File> {
+
+        private final List<Iterator<File>> stack = new ArrayList<Iterator<File>>();
+
+        private TreeIterator(File directory) {
+
+            stack.add(directory.getStoredChildFiles().iterator());
         }
-        if (size != other.size) {
-            return false;
+
+        @Override
+        protected File computeNext() {
+
+            while (!stack.isEmpty()) {
+                Iterator<File> files = stack.get(stack.size() - 1);
+                if (files.hasNext()) {
+                    File file = files.next();
+                    stack.add(file.getStoredChildFiles().iterator());
+                    return file;
+                } else {
+                    stack.remove(stack.size() - 1);
+                }
+            }
+            return null;
         }
-        return true;
+
     }
 
-    @Override
-    public String toInfoString() {
+    /**
+     * The layer iterator first returns the files found on the file system and then the views on the files found on the base image.
+     * Files of the base image which were already copied aren't returned twice because their copies were already found on the file system.
+     */
+    private class LayerIterator extends LookaheadIterator<File> {
 
-        return getFilled() + "/" + size + "b filled, host computer " + host.getId();
-    }
+        private final Iterator<File> stored;
+        private final Iterator<File> originals;
+        private boolean              storedDone;
 
-    @Override
-    public String toString() {
+        private LayerIterator(Iterator<File> stored, Iterator<File> originals) {
+
+            this.stored = stored;
+            this.originals = originals;
+        }
+
+        @Override
+        protected File computeNext() {
+
+            if (!storedDone) {
+                if (stored.hasNext()) {
+                    return stored.next();
+                }
+                storedDone = true;
+            }
+
+            while (originals.hasNext()) {
+                File copy = getCopy(originals.next());
+                if (copy != null) {
+                    return copy;
+                }
+            }
+            return null;
+        }
 
-        return getClass().getName() + " [" + toInfoString() + "]";
     }
 
 }
@@ -38,7 +38,7 @@ public class OutOfSpaceException extends RuntimeException {
      */
     public OutOfSpaceException(FileSystem fileSystem, long size) {
 
-        super("Out of space on file system for computer " + fileSystem.getHost().getId() + ": " + fileSystem.getFilled() + "b/" + fileSystem.getSize() + "b filled, can't store " + size + "b");
+        super("Out of space on file system " + (fileSystem.getHost() == null ? "image " + fileSystem.getName() : "for computer " + fileSystem.getHost().getId()) + ": " + fileSystem.getFilled() + "b/" + fileSystem.getSize() + "b filled, can't store " + size + "b");
         this.fileSystem = fileSystem;
         this.size = size;
     }
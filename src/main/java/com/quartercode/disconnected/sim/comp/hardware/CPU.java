@@ -85,38 +85,6 @@ public class CPU extends Hardware {
         return frequency;
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (int) (frequency ^ frequency >>> 32);
-        result = prime * result + threads;
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        CPU other = (CPU) obj;
-        if (frequency != other.frequency) {
-            return false;
-        }
-        if (threads != other.threads) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
 
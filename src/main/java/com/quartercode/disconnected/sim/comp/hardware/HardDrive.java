@@ -73,38 +73,6 @@ public class HardDrive extends Hardware implements FileSystemProvider {
         return fileSystem;
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (fileSystem == null ? 0 : fileSystem.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        HardDrive other = (HardDrive) obj;
-        if (fileSystem == null) {
-            if (other.fileSystem != null) {
-                return false;
-            }
-        } else if (!fileSystem.equals(other.fileSystem)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
 
@@ -69,38 +69,6 @@ public class Hardware extends HostedComputerPart implements Vulnerable {
         return Collections.unmodifiableList(vulnerabilities);
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (vulnerabilities == null ? 0 : vulnerabilities.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Hardware other = (Hardware) obj;
-        if (vulnerabilities == null) {
-            if (other.vulnerabilities != null) {
-                return false;
-            }
-        } else if (!vulnerabilities.equals(other.vulnerabilities)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
@@ -82,38 +82,6 @@ public class Mainboard extends Hardware {
         return Collections.unmodifiableList(slots);
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (slots == null ? 0 : slots.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (! (obj instanceof Mainboard)) {
-            return false;
-        }
-        Mainboard other = (Mainboard) obj;
-        if (slots == null) {
-            if (other.slots != null) {
-                return false;
-            }
-        } else if (!slots.equals(other.slots)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
 
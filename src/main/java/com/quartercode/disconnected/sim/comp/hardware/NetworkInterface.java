@@ -98,6 +98,7 @@ public class NetworkInterface extends Hardware {
     public void sendPacket(Packet packet) {
 
         remainingPackets.offer(packet);
+        getHost().wake();
     }
 
     /**
@@ -125,38 +126,6 @@ public class NetworkInterface extends Hardware {
         getHost().getOperatingSystem().getNetworkManager().handlePacket(packet);
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (ip == null ? 0 : ip.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        NetworkInterface other = (NetworkInterface) obj;
-        if (ip == null) {
-            if (other.ip != null) {
-                return false;
-            }
-        } else if (!ip.equals(other.ip)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
 
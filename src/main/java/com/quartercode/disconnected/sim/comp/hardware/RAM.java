@@ -85,38 +85,6 @@ public class RAM extends Hardware {
         return frequency;
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (int) (frequency ^ frequency >>> 32);
-        result = prime * result + (int) (size ^ size >>> 32);
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (! (obj instanceof RAM)) {
-            return false;
-        }
-        RAM other = (RAM) obj;
-        if (frequency != other.frequency) {
-            return false;
-        }
-        if (size != other.size) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
 
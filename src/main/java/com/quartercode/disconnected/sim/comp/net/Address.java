@@ -56,7 +56,7 @@ public class Address implements InfoString {
      */
     public Address(IP ip, int port) {
 
-        Validate.isTrue(port >= 0 || port <= 65535, "The port must be in range 0 <= port <= 65535 (e.g. 8080): ", port);
+        Validate.isTrue(port >= 0 && port <= 65535, "The port must be in range 0 <= port <= 65535 (e.g. 8080): ", port);
 
         this.ip = ip;
         this.port = port;
@@ -82,6 +82,17 @@ public class Address implements InfoString {
         return port;
     }
 
+    /**
+     * Returns the ip and the port packed into one long (e.g. for using the address as a key).
+     * The upper bits contain the ip, the lowest 16 bits contain the port.
+     * 
+     * @return The address packed into one long.
+     */
+    public long toLong() {
+
+        return (ip == null ? 0 : ip.toInt() & 0xFFFFFFFFL) << 16 | (port & 0xFFFF);
+    }
+
     @Override
     public int hashCode() {
 
@@ -135,6 +135,16 @@ public class IP {
         return parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[3];
     }
 
+    /**
+     * Returns the four parts of the ip packed into one int (e.g. for using the ip as a key).
+     * 
+     * @return The ip packed into one int.
+     */
+    public int toInt() {
+
+        return parts[0] << 24 | parts[1] << 16 | parts[2] << 8 | parts[3];
+    }
+
     public void beforeUnmarshal(Unmarshaller unmarshaller, Object parent) {
 
         host = (NetworkInterface) parent;
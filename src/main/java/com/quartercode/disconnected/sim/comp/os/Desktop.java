@@ -93,7 +93,7 @@ public class Desktop {
             window.desktop = this;
             windows.add(window);
 
-            Disconnected.getGraphicsManager().invoke(new Runnable() {
+            invokeGraphics(new Runnable() {
 
                 @Override
                 public void run() {
@@ -147,6 +147,14 @@ public class Desktop {
         pushReceivers.remove(pushReceiver);
     }
 
+    private static void invokeGraphics(Runnable runnable) {
+
+        // Graphical changes are dropped if there is no graphics manager (e.g. in a headless batch run)
+        if (Disconnected.getGraphicsManager() != null) {
+            Disconnected.getGraphicsManager().invoke(runnable);
+        }
+    }
+
     /**
      * A window represents a frame widget as a lightweight wrapper.
      * Classes on the outside can change visible parameters of the window, like the name in the taskbar or the frame title.
@@ -273,7 +281,7 @@ public class Desktop {
          */
         public void setVisible(final boolean visible) {
 
-            Disconnected.getGraphicsManager().invoke(new Runnable() {
+            invokeGraphics(new Runnable() {
 
                 @Override
                 public void run() {
@@ -300,6 +308,12 @@ public class Desktop {
          */
         public void close() {
 
+            // Without graphics, there's no render thread which could still use the window
+            if (Disconnected.getGraphicsManager() == null) {
+                desktop.removeWindow(this);
+                return;
+            }
+
             Disconnected.getGraphicsManager().invoke(new Runnable() {
 
                 @Override
@@ -19,36 +19,58 @@
 package com.quartercode.disconnected.sim.comp.os;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
 import org.apache.commons.lang.Validate;
 import com.quartercode.disconnected.sim.comp.file.File;
 import com.quartercode.disconnected.sim.comp.file.File.FileType;
+import com.quartercode.disconnected.sim.comp.file.FileQuery;
 import com.quartercode.disconnected.sim.comp.file.FileSystem;
 import com.quartercode.disconnected.sim.comp.file.FileSystemProvider;
 import com.quartercode.disconnected.sim.comp.file.MountException;
 import com.quartercode.disconnected.util.InfoString;
+import com.quartercode.disconnected.util.LookaheadIterator;
 
 /**
  * The file system manager is a subclass the {@link OperatingSystem} uses for holding and modifing file systems.
  * This class only gets used by the {@link OperatingSystem}.
+ * Resolved global paths are stored in a bounded cache, so repeated lookups of the same file don't need to walk the file tree again.
+ * The mounted file systems are indexed by their drive letter and by identity, so mount queries take constant time and never compare file trees.
  * 
  * @see FileSystem
  * @see OperatingSystem
  */
 public class FileSystemManager implements InfoString {
 
-    private OperatingSystem         host;
+    private static final int           CACHE_SIZE       = 128;
+    private static final char          FIRST_MOUNTPOINT = 'A';
+    private static final char          LAST_MOUNTPOINT  = 'Z';
+
+    private OperatingSystem            host;
 
     @XmlElementWrapper (name = "mountedFileSystems")
     @XmlElement (name = "fileSystem")
-    private List<MountedFileSystem> mountedFileSystems;
+    private List<MountedFileSystem>    mountedFileSystems;
+
+    @XmlTransient
+    private FileSystem[]               mountTable;
+    @XmlTransient
+    private Map<FileSystem, Character> mountpoints;
+    @XmlTransient
+    private List<FileSystem>           mounted;
+
+    @XmlTransient
+    private final FileCache            fileCache        = new FileCache(CACHE_SIZE);
 
     /**
      * Creates a new empty file system manager.
@@ -104,11 +126,30 @@ public class FileSystemManager implements InfoString {
      */
     public List<FileSystem> getMounted() {
 
-        Map<Character, FileSystem> bindings = new TreeMap<Character, FileSystem>();
-        for (MountedFileSystem mountedFileSystem : mountedFileSystems) {
-            bindings.put(mountedFileSystem.getMountpoint(), mountedFileSystem.getFileSystem());
+        if (mounted == null) {
+            List<FileSystem> fileSystems = new ArrayList<FileSystem>();
+            for (FileSystem fileSystem : getMountTable()) {
+                if (fileSystem != null) {
+                    fileSystems.add(fileSystem);
+                }
+            }
+            mounted = Collections.unmodifiableList(fileSystems);
+        }
+        return mounted;
+    }
+
+    private FileSystem[] getMountTable() {
+
+        // The tables are built lazily because the file system references are resolved at the end of unmarshalling
+        if (mountTable == null) {
+            mountTable = new FileSystem[LAST_MOUNTPOINT - FIRST_MOUNTPOINT + 1];
+            mountpoints = new IdentityHashMap<FileSystem, Character>();
+            for (MountedFileSystem mountedFileSystem : mountedFileSystems) {
+                mountTable[mountedFileSystem.getMountpoint() - FIRST_MOUNTPOINT] = mountedFileSystem.getFileSystem();
+                mountpoints.put(mountedFileSystem.getFileSystem(), mountedFileSystem.getMountpoint());
+            }
         }
-        return new ArrayList<FileSystem>(bindings.values());
+        return mountTable;
     }
 
     /**
@@ -120,13 +161,11 @@ public class FileSystemManager implements InfoString {
      */
     public FileSystem getMounted(char mountpoint) {
 
-        for (MountedFileSystem mountedFileSystem : mountedFileSystems) {
-            if (mountedFileSystem.getMountpoint() == mountpoint) {
-                return mountedFileSystem.getFileSystem();
-            }
+        if (mountpoint < FIRST_MOUNTPOINT || mountpoint > LAST_MOUNTPOINT) {
+            return null;
+        } else {
+            return getMountTable()[mountpoint - FIRST_MOUNTPOINT];
         }
-
-        return null;
     }
 
     /**
@@ -140,8 +179,8 @@ public class FileSystemManager implements InfoString {
      */
     public FileSystem getMounted(String path) {
 
-        if (path.contains(":")) {
-            return getMounted(path.split(":")[0].charAt(0));
+        if (path.indexOf(':') > 0) {
+            return getMounted(path.charAt(0));
         } else {
             return null;
         }
@@ -151,22 +190,21 @@ public class FileSystemManager implements InfoString {
      * Returns the mountpoint of the given file system.
      * A file system can be mounted and associated with a mountpoint (e.g. "C").
      * Only mounted file systems can be used.
+     * If the given file system isn't mounted, this will return '-'.
      * 
      * @param fileSystem The file system which is associated with the returned mountpoint.
      * @return The mountpoint of the given file system.
      */
     public char getMountpoint(FileSystem fileSystem) {
 
-        for (MountedFileSystem mountedFileSystem : mountedFileSystems) {
-            if (mountedFileSystem.getFileSystem().equals(fileSystem)) {
-                return mountedFileSystem.getMountpoint();
-            }
-        }
-        return '-';
+        getMountTable();
+        Character mountpoint = mountpoints.get(fileSystem);
+        return mountpoint == null ? '-' : mountpoint;
     }
 
     /**
      * Tries to mount the given file system and binding it to the given mountpoint.
+     * A mountpoint is a drive letter from A to Z.
      * 
      * @param fileSystem The file system to mount to the os.
      * @param mountpoint The mountpoint to bind the file system to.
@@ -174,11 +212,17 @@ public class FileSystemManager implements InfoString {
      */
     public void mount(FileSystem fileSystem, char mountpoint) {
 
-        Validate.notNull(mountpoint, "Mountpoint can't be null");
-        if (getMounted().contains(fileSystem)) {
+        Validate.isTrue(mountpoint >= FIRST_MOUNTPOINT && mountpoint <= LAST_MOUNTPOINT, "Mountpoint must be a drive letter from A to Z: " + mountpoint);
+        if (getMountpoint(fileSystem) != '-') {
             throw new MountException(fileSystem, true, "File system already mounted");
+        } else if (getMounted(mountpoint) != null) {
+            throw new MountException(fileSystem, true, "Mountpoint " + mountpoint + " already used");
         } else {
+            invalidate(mountpoint);
             mountedFileSystems.add(new MountedFileSystem(fileSystem, mountpoint));
+            mountTable[mountpoint - FIRST_MOUNTPOINT] = fileSystem;
+            mountpoints.put(fileSystem, mountpoint);
+            mounted = null;
         }
     }
 
@@ -190,10 +234,19 @@ public class FileSystemManager implements InfoString {
      */
     public void unmount(FileSystem fileSystem) {
 
-        if (!getMounted().contains(fileSystem)) {
+        char mountpoint = getMountpoint(fileSystem);
+        if (mountpoint == '-') {
             throw new MountException(fileSystem, false, "File system not mounted");
         } else {
-            mountedFileSystems.remove(fileSystem);
+            invalidate(mountpoint);
+            for (Iterator<MountedFileSystem> iterator = mountedFileSystems.iterator(); iterator.hasNext();) {
+                if (iterator.next().getFileSystem() == fileSystem) {
+                    iterator.remove();
+                }
+            }
+            mountTable[mountpoint - FIRST_MOUNTPOINT] = null;
+            mountpoints.remove(fileSystem);
+            mounted = null;
         }
     }
 
@@ -201,20 +254,103 @@ public class FileSystemManager implements InfoString {
      * Returns the file which is stored on a mounted file system under the given path.
      * A path is a collection of files seperated by a seperator.
      * This will look up the file using a global os path.
+     * Found files are cached, so looking up the same path again doesn't walk the file tree.
      * 
      * @param path The path the returned file is stored under.
      * @return The file which is stored on a mounted file system under the given path.
      */
     public File getFile(String path) {
 
+        synchronized (fileCache) {
+            File file = fileCache.get(path);
+            if (file != null) {
+                return file;
+            }
+        }
+
         FileSystem fileSystem = getMounted(path);
         if (fileSystem != null) {
-            return fileSystem.getFile(path.split(":")[1]);
+            File file = fileSystem.getFile(path.split(":")[1]);
+            if (file != null) {
+                synchronized (fileCache) {
+                    fileCache.put(path, file);
+                }
+            }
+            return file;
         } else {
             return null;
         }
     }
 
+    /**
+     * Searches all files on the mounted file systems which match the given query.
+     * The file systems are searched lazily in the order of their mountpoints while iterating over the result.
+     * Files of base images are returned as views, so searching doesn't copy them into the mounted file systems.
+     * 
+     * @param query The query the returned files have to match.
+     * @return All files on the mounted file systems which match the given query.
+     * @see FileSystem#find(FileQuery)
+     */
+    public Iterable<File> find(final FileQuery query) {
+
+        return new Iterable<File>() {
+
+            @Override
+            public Iterator<File> iterator() {
+
+                final Iterator<FileSystem> fileSystems = getMounted().iterator();
+                return new LookaheadIterator<File>() {
+
+                    private Iterator<File> files;
+
+                    @Override
+                    protected File computeNext() {
+
+                        while (files == null || !files.hasNext()) {
+                            if (!fileSystems.hasNext()) {
+                                return null;
+                            }
+                            files = fileSystems.next().find(query).iterator();
+                        }
+                        return files.next();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Removes all cached paths which resolve to the given file or to one of its child files.
+     * This is called by files whose path changes, e.g. because they are moved, renamed or removed.
+     * 
+     * @param file The file whose cached paths are no longer valid.
+     */
+    public void invalidate(File file) {
+
+        synchronized (fileCache) {
+            for (Iterator<File> iterator = fileCache.values().iterator(); iterator.hasNext();) {
+                for (File current = iterator.next(); current != null; current = current.getParent()) {
+                    if (current == file) {
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void invalidate(char mountpoint) {
+
+        String prefix = mountpoint + ":";
+        synchronized (fileCache) {
+            for (Iterator<String> iterator = fileCache.keySet().iterator(); iterator.hasNext();) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
     /**
      * Creates a new file using the given path and type on the associated file system mounted on this computer and returns it.
      * If the file already exists, the existing file will be returned.
@@ -249,6 +385,11 @@ public class FileSystemManager implements InfoString {
             }
         } else {
             mountedFileSystems.clear();
+            mountTable = null;
+            mounted = null;
+            synchronized (fileCache) {
+                fileCache.clear();
+            }
         }
     }
 
@@ -258,47 +399,38 @@ public class FileSystemManager implements InfoString {
     }
 
     @Override
-    public int hashCode() {
+    public String toInfoString() {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (mountedFileSystems == null ? 0 : mountedFileSystems.hashCode());
-        return result;
+        return getMounted().size() + " mounted";
     }
 
     @Override
-    public boolean equals(Object obj) {
+    public String toString() {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        FileSystemManager other = (FileSystemManager) obj;
-        if (mountedFileSystems == null) {
-            if (other.mountedFileSystems != null) {
-                return false;
-            }
-        } else if (!mountedFileSystems.equals(other.mountedFileSystems)) {
-            return false;
-        }
-        return true;
+        return getClass().getName() + " [" + toInfoString() + "]";
     }
 
-    @Override
-    public String toInfoString() {
+    /**
+     * The file cache maps global paths to the files they resolve to and evicts the least recently used path if it's full.
+     */
+    private static class FileCache extends LinkedHashMap<String, File> {
 
-        return getMounted().size() + " mounted";
-    }
+        private static final long serialVersionUID = -3106264788734541623L;
 
-    @Override
-    public String toString() {
+        private final int         capacity;
+
+        private FileCache(int capacity) {
+
+            super(16, 0.75F, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+
+            return size() > capacity;
+        }
 
-        return getClass().getName() + " [" + toInfoString() + "]";
     }
 
     /**
@@ -355,42 +487,6 @@ public class FileSystemManager implements InfoString {
             return mountpoint;
         }
 
-        @Override
-        public int hashCode() {
-
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + (fileSystem == null ? 0 : fileSystem.hashCode());
-            result = prime * result + mountpoint;
-            return result;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            MountedFileSystem other = (MountedFileSystem) obj;
-            if (fileSystem == null) {
-                if (other.fileSystem != null) {
-                    return false;
-                }
-            } else if (!fileSystem.equals(other.fileSystem)) {
-                return false;
-            }
-            if (mountpoint != other.mountpoint) {
-                return false;
-            }
-            return true;
-        }
-
         @Override
         public String toInfoString() {
 
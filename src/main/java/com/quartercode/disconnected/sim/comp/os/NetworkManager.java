@@ -20,6 +20,8 @@ package com.quartercode.disconnected.sim.comp.os;
 
 import javax.xml.bind.Unmarshaller;
 import com.quartercode.disconnected.sim.comp.net.Packet;
+import com.quartercode.disconnected.sim.comp.program.Process;
+import com.quartercode.disconnected.sim.run.TickSimulator;
 
 /**
  * The network manager is a subclass the {@link OperatingSystem} uses for storing and delivering packets.
@@ -62,12 +64,21 @@ public class NetworkManager {
 
     /**
      * Sends a new packet from the sender to the receiver address of the given packet.
+     * The sender address might belong to another computer, so the actual sending is deferred during a parallel process phase.
      * 
      * @param packet The packet to send.
+     * @see TickSimulator#defer(Runnable)
      */
-    public void sendPacket(Packet packet) {
+    public void sendPacket(final Packet packet) {
 
-        packet.getSender().getIp().getHost().sendPacket(packet);
+        TickSimulator.defer(new Runnable() {
+
+            @Override
+            public void run() {
+
+                packet.getSender().getIp().getHost().sendPacket(packet);
+            }
+        });
     }
 
     /**
@@ -77,8 +88,9 @@ public class NetworkManager {
      */
     public void handlePacket(Packet packet) {
 
-        if (host.getProcessManager().getProcess(packet.getReceiver()) != null) {
-            host.getProcessManager().getProcess(packet.getReceiver()).getExecutor().receivePacket(packet);
+        Process receiver = host.getProcessManager().getProcess(packet.getReceiver());
+        if (receiver != null) {
+            receiver.getExecutor().receivePacket(packet);
         }
     }
 
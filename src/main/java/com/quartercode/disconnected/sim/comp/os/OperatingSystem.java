@@ -53,8 +53,10 @@ public class OperatingSystem extends HostedComputerPart implements Vulnerable {
     private UserManager         userManager;
     @XmlElement
     private FileSystemManager   fileSystemManager;
+    @XmlTransient
     private NetworkManager      networkManager;
 
+    @XmlTransient
     private Desktop             desktop;
 
     /**
@@ -169,62 +171,6 @@ public class OperatingSystem extends HostedComputerPart implements Vulnerable {
         }
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (fileSystemManager == null ? 0 : fileSystemManager.hashCode());
-        result = prime * result + (processManager == null ? 0 : processManager.hashCode());
-        result = prime * result + (userManager == null ? 0 : userManager.hashCode());
-        result = prime * result + (vulnerabilities == null ? 0 : vulnerabilities.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        OperatingSystem other = (OperatingSystem) obj;
-        if (fileSystemManager == null) {
-            if (other.fileSystemManager != null) {
-                return false;
-            }
-        } else if (!fileSystemManager.equals(other.fileSystemManager)) {
-            return false;
-        }
-        if (processManager == null) {
-            if (other.processManager != null) {
-                return false;
-            }
-        } else if (!processManager.equals(other.processManager)) {
-            return false;
-        }
-        if (userManager == null) {
-            if (other.userManager != null) {
-                return false;
-            }
-        } else if (!userManager.equals(other.userManager)) {
-            return false;
-        }
-        if (vulnerabilities == null) {
-            if (other.vulnerabilities != null) {
-                return false;
-            }
-        } else if (!vulnerabilities.equals(other.vulnerabilities)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
@@ -19,26 +19,52 @@
 package com.quartercode.disconnected.sim.comp.os;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 import com.quartercode.disconnected.sim.comp.net.Address;
+import com.quartercode.disconnected.sim.comp.net.PacketListener;
 import com.quartercode.disconnected.sim.comp.program.Process;
+import com.quartercode.disconnected.sim.comp.program.Process.ProcessState;
+import com.quartercode.disconnected.sim.comp.program.ProgramExecutor;
 import com.quartercode.disconnected.util.InfoString;
 
 /**
  * The process manager is a subclass the {@link OperatingSystem} uses for holding and modifing processes.
  * This class only gets used by the {@link OperatingSystem}.
+ * It keeps a run queue of all runnable processes and a queue of stopped processes which have to be reaped, so a tick doesn't need to walk the whole process tree.
+ * Every process stores its slot in the run queue and if it's queued for being reaped, so both queues can be updated in constant time.
  * 
  * @see Process
  * @see OperatingSystem
  */
 public class ProcessManager implements InfoString {
 
-    private OperatingSystem host;
+    private OperatingSystem          host;
 
     @XmlElement (name = "process")
-    private Process         rootProcess;
+    private Process                  rootProcess;
+
+    @XmlTransient
+    private final List<Process>      runQueue  = new ArrayList<Process>();
+    @XmlTransient
+    private final List<Process>      reapQueue = new ArrayList<Process>();
+
+    @XmlTransient
+    private final BitSet             pids      = new BitSet();
+    @XmlTransient
+    private final List<Process>      pidIndex  = new ArrayList<Process>();
+    private int                      nextPid;
+
+    @XmlTransient
+    private final Map<Long, Process> bindings  = new HashMap<Long, Process>();
+    @XmlTransient
+    private boolean                  bindingsDirty;
 
     /**
      * Creates a new empty process manager.
@@ -81,14 +107,17 @@ public class ProcessManager implements InfoString {
 
     /**
      * Returns a list of all current running processes.
+     * The list is empty if the process manager was killed.
      * 
      * @return A list of all current running processes.
      */
     public List<Process> getAllProcesses() {
 
         List<Process> processes = new ArrayList<Process>();
-        processes.add(rootProcess);
-        processes.addAll(rootProcess.getAllChildren());
+        if (rootProcess != null) {
+            processes.add(rootProcess);
+            processes.addAll(rootProcess.getAllChildren());
+        }
         return processes;
     }
 
@@ -101,31 +130,329 @@ public class ProcessManager implements InfoString {
      */
     public Process getProcess(Address binding) {
 
-        for (Process process : getAllProcesses()) {
-            if (process.getExecutor().getPacketListener(binding) != null) {
-                return process;
+        buildBindings();
+        return bindings.get(binding.toLong());
+    }
+
+    /**
+     * Binds the given process to the given address, so it receives the packets which are sent to that address.
+     * This should only be used by the program executor when it adds a packet listener.
+     * 
+     * @param binding The address to bind the process to.
+     * @param process The process which listens on the address.
+     * @throws IllegalStateException There's already another process bound to the given address.
+     */
+    public void bind(Address binding, Process process) {
+
+        buildBindings();
+        Process bound = bindings.get(binding.toLong());
+        if (bound != null && bound != process) {
+            throw new IllegalStateException("There's already a packet listener bound to " + binding.toInfoString());
+        }
+
+        bindings.put(binding.toLong(), process);
+    }
+
+    /**
+     * Releases the given address if it's bound to the given process.
+     * This should only be used by the program executor when it removes a packet listener.
+     * 
+     * @param binding The address to release.
+     * @param process The process which listened on the address.
+     */
+    public void unbind(Address binding, Process process) {
+
+        buildBindings();
+        if (bindings.get(binding.toLong()) == process) {
+            bindings.remove(binding.toLong());
+        }
+    }
+
+    private void bindAll(Process process) {
+
+        for (PacketListener packetListener : process.getExecutor().getPacketListeners()) {
+            if (!bindings.containsKey(packetListener.getBinding().toLong())) {
+                bindings.put(packetListener.getBinding().toLong(), process);
+            }
+        }
+    }
+
+    private void unbindAll(Process process) {
+
+        for (PacketListener packetListener : process.getExecutor().getPacketListeners()) {
+            unbind(packetListener.getBinding(), process);
+        }
+    }
+
+    private void buildBindings() {
+
+        // The addresses reference ips which are only resolved after the whole profile was unmarshalled
+        if (bindingsDirty) {
+            bindingsDirty = false;
+            bindings.clear();
+            for (Process process : getAllProcesses()) {
+                if (process.getState() != ProcessState.STOPPED) {
+                    bindAll(process);
+                }
             }
         }
+    }
+
+    /**
+     * Returns the registered process which has the given pid.
+     * This returns null if there isn't any process with the given pid.
+     * 
+     * @param pid The pid of the process to return.
+     * @return The process with the given pid.
+     */
+    public Process getProcess(int pid) {
 
-        return null;
+        return pid >= 0 && pid < pidIndex.size() ? pidIndex.get(pid) : null;
     }
 
     /**
      * Calculates and returns a new pid for a new process.
+     * This returns the lowest pid which isn't used by any process.
+     * The pid is reserved as soon as the new process is registered.
      * 
      * @return The calculated pid.
      */
     public synchronized int requestPid() {
 
-        List<Integer> pids = new ArrayList<Integer>();
-        for (Process process : getAllProcesses()) {
-            pids.add(process.getPid());
+        return pids.nextClearBit(nextPid);
+    }
+
+    /**
+     * Calls the executor update on every runnable (running or interrupted) process in the run queue.
+     * Processes which are created during the update are executed in the next call.
+     * This doesn't allocate any objects and only touches the processes which are in the run queue.
+     */
+    public void update() {
+
+        update(false, 0, false);
+    }
+
+    /**
+     * Calls the executor update on every runnable (running or interrupted) process in the run queue until the given deadline is reached.
+     * The processes which weren't updated because of the deadline are moved to the front of the queue, so they are updated first in the next call.
+     * Processes which are created during the update are executed in the next call.
+     * 
+     * @param deadline The {@link System#nanoTime()} value after which no more executors are updated.
+     * @return The amount of runnable processes which were deferred because the deadline was reached.
+     */
+    public int update(long deadline) {
+
+        return update(true, deadline, false);
+    }
+
+    /**
+     * Calls the executor update on every runnable (running or interrupted) process in the run queue until the given deadline is reached.
+     * If progress is guaranteed, the first runnable process is always updated, even if the deadline already passed.
+     * That way, a tight budget can't defer the same processes forever.
+     * 
+     * @param deadline The {@link System#nanoTime()} value after which no more executors are updated.
+     * @param progress True if at least one executor should be updated regardless of the deadline.
+     * @return The amount of runnable processes which were deferred because the deadline was reached.
+     * @see #update(long)
+     */
+    public int update(long deadline, boolean progress) {
+
+        return update(true, deadline, progress);
+    }
+
+    private int update(boolean limited, long deadline, boolean progress) {
+
+        int size = runQueue.size();
+        int kept = 0;
+        int deferredFrom = -1;
+        int deferred = 0;
+        int updated = 0;
+        // The queue is compacted in place: every kept process is moved to the front
+        for (int index = 0; index < runQueue.size(); index++) {
+            Process process = runQueue.get(index);
+            if (process == null) {
+                continue;
+            }
+
+            if (index < size && isRunnable(process)) {
+                if (deferredFrom < 0 && limited && (!progress || updated > 0) && System.nanoTime() - deadline >= 0) {
+                    deferredFrom = kept;
+                }
+
+                if (deferredFrom < 0) {
+                    process.getExecutor().update();
+                    updated++;
+                } else {
+                    deferred++;
+                }
+            }
+
+            // The update might have unregistered the process or changed its state
+            if (runQueue.get(index) == null) {
+                continue;
+            } else if (isRunnable(process)) {
+                runQueue.set(kept, process);
+                process.setRunQueueSlot(kept++);
+            } else {
+                process.setRunQueueSlot(-1);
+            }
+        }
+
+        while (runQueue.size() > kept) {
+            runQueue.remove(runQueue.size() - 1);
+        }
+
+        // Rotate the queue, so the deferred processes are updated first next time
+        if (deferredFrom > 0) {
+            Collections.rotate(runQueue, -deferredFrom);
+            for (int index = 0; index < runQueue.size(); index++) {
+                if (runQueue.get(index) != null) {
+                    runQueue.get(index).setRunQueueSlot(index);
+                }
+            }
         }
-        int pid = 0;
-        while (pids.contains(pid)) {
-            pid++;
+
+        return deferred;
+    }
+
+    /**
+     * Unregisters all stopped processes whose children are completely stopped as well from their parents.
+     * This only touches the processes which were stopped since the last call.
+     * A stopped process which still has running children leaves the queue; it is queued again when its last child was reaped.
+     */
+    public void reap() {
+
+        // The list can grow while it is processed because parents are queued again
+        for (int index = 0; index < reapQueue.size(); index++) {
+            Process process = reapQueue.get(index);
+            process.setReapQueued(false);
+            if (process.getState() == ProcessState.STOPPED && process.isCompletelyStopped()) {
+                Process parent = process.getParent();
+                if (parent != null) {
+                    parent.unregisterChild(process);
+                    if (parent.getState() == ProcessState.STOPPED && !parent.isReapQueued()) {
+                        parent.setReapQueued(true);
+                        reapQueue.add(parent);
+                    }
+                }
+            }
         }
-        return pid;
+
+        reapQueue.clear();
+    }
+
+    /**
+     * Returns if there are runnable processes which aren't idle or have received packets, or stopped processes which have to be reaped.
+     * The packets are checked separately, so an executor which overrides {@link ProgramExecutor#isIdle()} can't strand them.
+     * 
+     * @return If the process manager has got work for the next tick.
+     */
+    public boolean hasPendingWork() {
+
+        if (!reapQueue.isEmpty()) {
+            return true;
+        }
+
+        for (int index = 0; index < runQueue.size(); index++) {
+            Process process = runQueue.get(index);
+            if (process != null && isRunnable(process) && (!process.getExecutor().isIdle() || process.getExecutor().hasReceivedPackets())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Registers a new process: Reserves its pid and puts it into the queue which fits its current state.
+     * This should only be used by the process object when it was created.
+     * 
+     * @param process The process which was created.
+     * @throws IllegalStateException The pid of the new process is already used by another process.
+     */
+    public synchronized void register(Process process) {
+
+        int pid = process.getPid();
+        if (pids.get(pid)) {
+            throw new IllegalStateException("Pid " + pid + " is already used by another process");
+        }
+
+        pids.set(pid);
+        while (pidIndex.size() <= pid) {
+            pidIndex.add(null);
+        }
+        pidIndex.set(pid, process);
+        if (pid == nextPid) {
+            nextPid = pids.nextClearBit(pid);
+        }
+
+        notifyStateChange(process);
+    }
+
+    /**
+     * Puts the given process into the queue which fits its current state.
+     * This should only be used by the process object when its state changed.
+     * 
+     * @param process The process which changed its state.
+     */
+    public void notifyStateChange(Process process) {
+
+        if (isRunnable(process)) {
+            if (process.getRunQueueSlot() < 0) {
+                process.setRunQueueSlot(runQueue.size());
+                runQueue.add(process);
+            }
+        } else if (process.getState() == ProcessState.STOPPED && !process.isReapQueued()) {
+            // A process can be notified about being stopped several times, but it must only be reaped once
+            process.setReapQueued(true);
+            reapQueue.add(process);
+        }
+
+        // Stopped processes don't receive packets anymore
+        if (!bindingsDirty) {
+            if (process.getState() == ProcessState.STOPPED) {
+                unbindAll(process);
+            } else {
+                bindAll(process);
+            }
+        }
+
+        host.getHost().wake();
+    }
+
+    /**
+     * Removes the given process and all of its children from the run queue and releases their pids.
+     * This should only be used by the process object when it was unregistered from its parent.
+     * 
+     * @param process The process which was unregistered.
+     */
+    public synchronized void unregister(Process process) {
+
+        int pid = process.getPid();
+        if (getProcess(pid) == process) {
+            pids.clear(pid);
+            pidIndex.set(pid, null);
+            nextPid = Math.min(nextPid, pid);
+        }
+
+        if (!bindingsDirty) {
+            unbindAll(process);
+        }
+
+        if (process.getRunQueueSlot() >= 0) {
+            // Null the slot instead of removing it, so a running update can keep its position
+            runQueue.set(process.getRunQueueSlot(), null);
+            process.setRunQueueSlot(-1);
+        }
+
+        for (Process child : process.getChildren()) {
+            unregister(child);
+        }
+    }
+
+    private boolean isRunnable(Process process) {
+
+        return process.getState() == ProcessState.RUNNING || process.getState() == ProcessState.INTERRUPTED;
     }
 
     /**
@@ -136,47 +463,66 @@ public class ProcessManager implements InfoString {
     public void setRunning(boolean running) {
 
         if (running) {
+            clear();
             rootProcess = new Process(host, null, 0, host.getFileSystemManager().getFile("C:/system/boot/kernel"), null);
+            register(rootProcess);
         } else {
             rootProcess.interrupt(true);
         }
     }
 
+    /**
+     * Forces every process to stop immediately and releases the whole process tree.
+     * Unlike {@link #setRunning(boolean)}, the processes don't get the chance to finish their work.
+     * Afterwards, the process manager doesn't have a root process until it's started again, so it can be stored without any program executors.
+     */
+    public void kill() {
+
+        if (rootProcess != null) {
+            rootProcess.stop(true);
+            rootProcess = null;
+            clear();
+        }
+    }
+
+    private void clear() {
+
+        for (Process process : runQueue) {
+            if (process != null) {
+                process.setRunQueueSlot(-1);
+            }
+        }
+        for (Process process : reapQueue) {
+            process.setReapQueued(false);
+        }
+        runQueue.clear();
+        reapQueue.clear();
+        pids.clear();
+        pidIndex.clear();
+        nextPid = 0;
+        bindings.clear();
+        bindingsDirty = false;
+    }
+
     public void beforeUnmarshal(Unmarshaller unmarshaller, Object parent) {
 
         host = (OperatingSystem) parent;
     }
 
-    @Override
-    public int hashCode() {
+    public void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (rootProcess == null ? 0 : rootProcess.hashCode());
-        return result;
+        bindingsDirty = true;
+        if (rootProcess != null) {
+            registerTree(rootProcess);
+        }
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    private void registerTree(Process process) {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        ProcessManager other = (ProcessManager) obj;
-        if (rootProcess == null) {
-            if (other.rootProcess != null) {
-                return false;
-            }
-        } else if (!rootProcess.equals(other.rootProcess)) {
-            return false;
+        register(process);
+        for (Process child : process.getChildren()) {
+            registerTree(child);
         }
-        return true;
     }
 
     @Override
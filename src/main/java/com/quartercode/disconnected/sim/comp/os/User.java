@@ -27,6 +27,8 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
+import com.quartercode.disconnected.sim.comp.os.Group.RightOverride;
 import com.quartercode.disconnected.util.InfoString;
 
 /**
@@ -46,6 +48,9 @@ public class User implements Comparable<User>, InfoString {
     @XmlElement (name = "group")
     private List<Group>     groups;
 
+    @XmlTransient
+    private Boolean         root;
+
     /**
      * Creates a new empty user object.
      * This is only recommended for direct field access (e.g. for serialization).
@@ -111,6 +116,7 @@ public class User implements Comparable<User>, InfoString {
 
         if (!groups.contains(group)) {
             groups.add(group);
+            root = null;
 
             if (primary) {
                 setPrimaryGroup(group);
@@ -128,11 +134,50 @@ public class User implements Comparable<User>, InfoString {
 
         if (!getPrimaryGroup().equals(group)) {
             groups.remove(group);
+            root = null;
         } else {
             throw new IllegalStateException("Can't remove group " + group.getName() + ": group is primary");
         }
     }
 
+    /**
+     * Returns if the user is a member of the given group.
+     * This compares the groups by identity and doesn't allocate anything, so it can be used for file access checks.
+     * 
+     * @param group The group to check the membership for.
+     * @return If the user is a member of the given group.
+     */
+    public boolean isMember(Group group) {
+
+        for (int index = 0; index < groups.size(); index++) {
+            if (groups.get(index) == group) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns if the user is a member of a group with the {@link RightOverride#ROOT} override.
+     * Such users have every right on every file.
+     * The result is cached until the group memberships of the user change.
+     * 
+     * @return If the user is a member of a group with the root override.
+     */
+    public boolean isRoot() {
+
+        if (root == null) {
+            root = false;
+            for (Group group : groups) {
+                if (group.getRightOverride() == RightOverride.ROOT) {
+                    root = true;
+                    break;
+                }
+            }
+        }
+        return root;
+    }
+
     /**
      * Returns the primary group of the user.
      * The primary group is the first group in the groups list and is used when rights are applied.
@@ -183,46 +228,6 @@ public class User implements Comparable<User>, InfoString {
         return name.compareTo(o.getName());
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (groups == null ? 0 : groups.hashCode());
-        result = prime * result + (name == null ? 0 : name.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        User other = (User) obj;
-        if (groups == null) {
-            if (other.groups != null) {
-                return false;
-            }
-        } else if (!groups.equals(other.groups)) {
-            return false;
-        }
-        if (name == null) {
-            if (other.name != null) {
-                return false;
-            }
-        } else if (!name.equals(other.name)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
@@ -144,46 +144,6 @@ public class UserManager implements InfoString {
         host = (OperatingSystem) parent;
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (groups == null ? 0 : groups.hashCode());
-        result = prime * result + (users == null ? 0 : users.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        UserManager other = (UserManager) obj;
-        if (groups == null) {
-            if (other.groups != null) {
-                return false;
-            }
-        } else if (!groups.equals(other.groups)) {
-            return false;
-        }
-        if (users == null) {
-            if (other.users != null) {
-                return false;
-            }
-        } else if (!users.equals(other.users)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
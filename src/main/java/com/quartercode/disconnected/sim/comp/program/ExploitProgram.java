@@ -20,7 +20,6 @@ package com.quartercode.disconnected.sim.comp.program;
 
 import java.util.List;
 import java.util.Map;
-import com.quartercode.disconnected.Disconnected;
 import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.comp.Version;
 import com.quartercode.disconnected.sim.comp.Vulnerability;
@@ -28,6 +27,7 @@ import com.quartercode.disconnected.sim.comp.attack.Exploit;
 import com.quartercode.disconnected.sim.comp.attack.Payload;
 import com.quartercode.disconnected.sim.comp.program.Process.ProcessState;
 import com.quartercode.disconnected.sim.member.Member;
+import com.quartercode.disconnected.sim.run.TickSimulator;
 import com.quartercode.disconnected.sim.run.util.ScriptExecutor;
 import com.quartercode.disconnected.util.ProbabilityUtil;
 import com.quartercode.disconnected.util.size.ByteUnit;
@@ -90,19 +90,27 @@ public class ExploitProgram extends Program {
                 // The removal of members etc. is only temp and programmed using a workaround.
                 // This executes the consequences of the attack because it isn't implemented yet!
 
-                Simulation simulation = Disconnected.getSimulation();
-                Member attacker = simulation.getMember(getHost().getHost().getHost());
+                // The attack changes reputations and other computers, so it must be deferred
+                TickSimulator.defer(new Runnable() {
 
-                // Execute the exploit (TEMP)
-                simulation.getGroup(attacker).getReputation(attacker).addValue(5);
-                ScriptExecutor.execute(exploit.getVulnerability().getScripts(), simulation, target, attacker);
+                    @Override
+                    public void run() {
 
-                // Calculate the success (of course, this is not final)
-                if (ProbabilityUtil.gen(0.2F, simulation.RANDOM)) {
-                    // Execute the payload (TEMP)
-                    simulation.getGroup(target).getReputation(attacker).subtractValue(10);
-                    ScriptExecutor.execute(payload.getScripts(), simulation, target, attacker);
-                }
+                        Simulation simulation = TickSimulator.getCurrentSimulation();
+                        Member attacker = simulation.getMember(getHost().getHost().getHost());
+
+                        // Execute the exploit (TEMP)
+                        simulation.getGroup(attacker).addReputationValue(attacker, 5);
+                        ScriptExecutor.execute(exploit.getVulnerability().getScripts(), simulation, target, attacker);
+
+                        // Calculate the success (of course, this is not final)
+                        if (ProbabilityUtil.gen(0.2F, simulation.RANDOM)) {
+                            // Execute the payload (TEMP)
+                            simulation.getGroup(target).addReputationValue(attacker, -10);
+                            ScriptExecutor.execute(payload.getScripts(), simulation, target, attacker);
+                        }
+                    }
+                });
 
                 // End the program (because there's no payload yet)
                 getHost().interrupt(true);
@@ -85,6 +85,13 @@ public class KernelProgram extends Program {
                     elapsedSinceInterrupt = -1;
                 }
             }
+
+            @Override
+            public boolean isIdle() {
+
+                // The kernel only has to count ticks after it was interrupted
+                return getHost().getState() == ProcessState.RUNNING && elapsedSinceInterrupt < 0;
+            }
         };
     }
 
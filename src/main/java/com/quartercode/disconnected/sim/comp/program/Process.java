@@ -27,6 +27,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
 import org.apache.commons.lang.Validate;
 import com.quartercode.disconnected.sim.comp.file.File;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
@@ -82,9 +83,14 @@ public class Process implements InfoString {
     private ProgramExecutor     executor;
 
     @XmlElement
-    private ProcessState        state    = ProcessState.RUNNING;
+    private ProcessState        state        = ProcessState.RUNNING;
     @XmlElement (name = "process")
-    private final List<Process> children = new ArrayList<Process>();
+    private final List<Process> children     = new ArrayList<Process>();
+
+    @XmlTransient
+    private int                 runQueueSlot = -1;
+    @XmlTransient
+    private boolean             reapQueued;
 
     /**
      * Creates a new empty process.
@@ -113,6 +119,8 @@ public class Process implements InfoString {
         this.parent = parent;
         this.pid = pid;
         this.file = file;
+        // The launch file is referenced by the process, so it can't be a view which isn't stored
+        file.store();
 
         Program program = (Program) file.getContent();
         executor = program.createExecutor(this, arguments);
@@ -179,6 +187,53 @@ public class Process implements InfoString {
         return state;
     }
 
+    /**
+     * Returns the index of the process in the run queue of the process manager.
+     * If the process isn't in the run queue, this returns -1.
+     * This should only be used by the process manager.
+     * 
+     * @return The index of the process in the run queue.
+     */
+    @XmlTransient
+    public int getRunQueueSlot() {
+
+        return runQueueSlot;
+    }
+
+    /**
+     * Changes the index of the process in the run queue of the process manager.
+     * This should only be used by the process manager when it moves the process in its run queue.
+     * 
+     * @param runQueueSlot The new index of the process in the run queue, or -1 if it was removed from the queue.
+     */
+    public void setRunQueueSlot(int runQueueSlot) {
+
+        this.runQueueSlot = runQueueSlot;
+    }
+
+    /**
+     * Returns if the process is in the queue of stopped processes which have to be reaped by the process manager.
+     * This should only be used by the process manager.
+     * 
+     * @return True if the process is queued for being reaped, false if not.
+     */
+    @XmlTransient
+    public boolean isReapQueued() {
+
+        return reapQueued;
+    }
+
+    /**
+     * Changes if the process is in the queue of stopped processes which have to be reaped by the process manager.
+     * This should only be used by the process manager when it adds the process to its reap queue or removes it.
+     * 
+     * @param reapQueued True if the process is queued for being reaped, false if not.
+     */
+    public void setReapQueued(boolean reapQueued) {
+
+        this.reapQueued = reapQueued;
+    }
+
     /**
      * Returns if this process and every child is stopped.
      * This acts recursively and checks every child and their childs etc.
@@ -208,7 +263,10 @@ public class Process implements InfoString {
      */
     protected void setState(ProcessState state, boolean recursive) {
 
-        this.state = state;
+        if (this.state != state) {
+            this.state = state;
+            host.getProcessManager().notifyStateChange(this);
+        }
 
         if (recursive) {
             for (Process child : children) {
@@ -317,10 +375,12 @@ public class Process implements InfoString {
      * @param arguments The argument map which contains values for the defined parameters.
      * @param pid A unique process id the process has This is used to identify the process.
      * @throws IllegalArgumentException No or wrong argument type for a specific parameter.
+     * @throws IllegalStateException The given pid is already used by another process.
      */
     public Process createChild(File file, Map<String, Object> arguments, int pid) {
 
         Process process = new Process(host, this, pid, file, arguments);
+        host.getProcessManager().register(process);
         children.add(process);
         return process;
     }
@@ -334,6 +394,7 @@ public class Process implements InfoString {
     public void unregisterChild(Process process) {
 
         children.remove(process);
+        host.getProcessManager().unregister(process);
     }
 
     /**
@@ -355,58 +416,6 @@ public class Process implements InfoString {
         }
     }
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (children == null ? 0 : children.hashCode());
-        result = prime * result + (executor == null ? 0 : executor.hashCode());
-        result = prime * result + (file == null ? 0 : file.hashCode());
-        result = prime * result + pid;
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Process other = (Process) obj;
-        if (children == null) {
-            if (other.children != null) {
-                return false;
-            }
-        } else if (!children.equals(other.children)) {
-            return false;
-        }
-        if (executor == null) {
-            if (other.executor != null) {
-                return false;
-            }
-        } else if (!executor.equals(other.executor)) {
-            return false;
-        }
-        if (file == null) {
-            if (other.file != null) {
-                return false;
-            }
-        } else if (!file.equals(other.file)) {
-            return false;
-        }
-        if (pid != other.pid) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
@@ -143,46 +143,6 @@ public abstract class Program extends ComputerPart implements SizeObject, Vulner
      */
     protected abstract ProgramExecutor createExecutorInstance(Process host, Map<String, Object> arguments);
 
-    @Override
-    public int hashCode() {
-
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + (parameters == null ? 0 : parameters.hashCode());
-        result = prime * result + (vulnerabilities == null ? 0 : vulnerabilities.hashCode());
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-
-        if (this == obj) {
-            return true;
-        }
-        if (!super.equals(obj)) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Program other = (Program) obj;
-        if (parameters == null) {
-            if (other.parameters != null) {
-                return false;
-            }
-        } else if (!parameters.equals(other.parameters)) {
-            return false;
-        }
-        if (vulnerabilities == null) {
-            if (other.vulnerabilities != null) {
-                return false;
-            }
-        } else if (!vulnerabilities.equals(other.vulnerabilities)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toInfoString() {
 
@@ -129,14 +129,11 @@ public abstract class ProgramExecutor {
      * Registers a new packet listener to the executor.
      * 
      * @param packetListener The new packet listener to register to the executor.
-     * @throws There's already a packet listener bound to the given binding.
+     * @throws IllegalStateException There's already a packet listener bound to the given binding.
      */
     public void addPacketListener(PacketListener packetListener) {
 
-        if (host.getHost().getProcessManager().getProcess(packetListener.getBinding()) != null) {
-            throw new IllegalStateException("There's already a packet listener bound to " + packetListener.getBinding().toInfoString());
-        }
-
+        host.getHost().getProcessManager().bind(packetListener.getBinding(), host);
         packetListeners.add(packetListener);
     }
 
@@ -148,7 +145,9 @@ public abstract class ProgramExecutor {
      */
     public void removePacketListener(PacketListener packetListener) {
 
-        packetListeners.remove(packetListener);
+        if (packetListeners.remove(packetListener)) {
+            host.getHost().getProcessManager().unbind(packetListener.getBinding(), host);
+        }
     }
 
     /**
@@ -182,6 +181,7 @@ public abstract class ProgramExecutor {
     public void receivePacket(Packet packet) {
 
         remainingPackets.offer(packet);
+        host.getHost().getHost().wake();
     }
 
     /**
@@ -199,6 +199,16 @@ public abstract class ProgramExecutor {
         }
     }
 
+    /**
+     * Returns if there are received packets which weren't processed yet.
+     * 
+     * @return True if there are remaining packets which should be processed soon, false if not.
+     */
+    public boolean hasReceivedPackets() {
+
+        return !remainingPackets.isEmpty();
+    }
+
     /**
      * Executes a tick update in the program executor.
      * Every program is written using the tick system.
@@ -207,4 +217,16 @@ public abstract class ProgramExecutor {
      */
     public abstract void update();
 
+    /**
+     * Returns if the executor hasn't got anything to do in the next update.
+     * If every runnable process of a computer is idle, the computer is put to sleep and wont be updated until it is woken up.
+     * By default, an executor is never idle, so it's updated every tick.
+     * 
+     * @return If the executor hasn't got anything to do in the next update.
+     */
+    public boolean isIdle() {
+
+        return false;
+    }
+
 }
@@ -24,13 +24,16 @@ import java.util.List;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlID;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
+import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.member.ai.AIController;
 import com.quartercode.disconnected.util.InfoString;
 
 /**
  * This class represents a member of a simulation (someone who has a brain containing specific interests and knowledge entries).
- * The member doesn't know his simulation, so you could use one member in multiple simulations.
+ * The member doesn't own his simulation, so you could use one member in multiple simulations.
+ * It only remembers the simulation it was added to last, which is notified if indexed properties (like the computer) change.
  * A member also holds brain data like interest or knowledge chunks.
  * An AIController controls the behavior of the member (if no controller is set, the member is a human player).
  * 
@@ -47,6 +50,13 @@ public class Member implements InfoString {
     @XmlElement
     private final List<BrainData> brainData = new ArrayList<BrainData>();
 
+    @XmlTransient
+    private ReputationMatrix      reputationMatrix;
+    @XmlTransient
+    private int                   reputationOrdinal;
+    @XmlTransient
+    private Simulation            simulation;
+
     /**
      * Creates a new empty member.
      * This is only recommended for direct field access (e.g. for serialization).
@@ -93,7 +103,11 @@ public class Member implements InfoString {
      */
     public void setComputer(Computer computer) {
 
+        Computer oldComputer = this.computer;
         this.computer = computer;
+        if (simulation != null) {
+            simulation.reindexComputer(this, oldComputer);
+        }
     }
 
     /**
@@ -114,7 +128,22 @@ public class Member implements InfoString {
      */
     public void setAiController(AIController aiController) {
 
+        AIController oldAiController = this.aiController;
         this.aiController = aiController;
+        if (simulation != null) {
+            simulation.reindexAiController(this, oldAiController);
+        }
+    }
+
+    /**
+     * Sets the simulation the member was added to last, so the simulation can be notified if indexed properties of the member change.
+     * This is called by the simulation when the member is added or removed.
+     * 
+     * @param simulation The simulation the member was added to, or null if it was removed.
+     */
+    public void setSimulation(Simulation simulation) {
+
+        this.simulation = simulation;
     }
 
     /**
@@ -152,6 +181,9 @@ public class Member implements InfoString {
     public void addBrainData(BrainData brainData) {
 
         this.brainData.add(brainData);
+        if (simulation != null) {
+            simulation.indexTarget(this, brainData);
+        }
     }
 
     /**
@@ -161,55 +193,41 @@ public class Member implements InfoString {
      */
     public void removeBrainData(BrainData brainData) {
 
-        this.brainData.remove(brainData);
+        if (this.brainData.remove(brainData) && simulation != null) {
+            simulation.unindexTarget(this, brainData);
+        }
     }
 
-    @Override
-    public int hashCode() {
+    /**
+     * Returns the reputation matrix the member was registered in last.
+     * 
+     * @return The reputation matrix the member was registered in last.
+     */
+    protected ReputationMatrix getReputationMatrix() {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (brainData == null ? 0 : brainData.hashCode());
-        result = prime * result + (computer == null ? 0 : computer.hashCode());
-        result = prime * result + (name == null ? 0 : name.hashCode());
-        return result;
+        return reputationMatrix;
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    /**
+     * Returns the column ordinal of the member in the reputation matrix it was registered in last.
+     * 
+     * @return The column ordinal of the member in its reputation matrix.
+     */
+    protected int getReputationOrdinal() {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (! (obj instanceof Member)) {
-            return false;
-        }
-        Member other = (Member) obj;
-        if (brainData == null) {
-            if (other.brainData != null) {
-                return false;
-            }
-        } else if (!brainData.equals(other.brainData)) {
-            return false;
-        }
-        if (computer == null) {
-            if (other.computer != null) {
-                return false;
-            }
-        } else if (!computer.equals(other.computer)) {
-            return false;
-        }
-        if (name == null) {
-            if (other.name != null) {
-                return false;
-            }
-        } else if (!name.equals(other.name)) {
-            return false;
-        }
-        return true;
+        return reputationOrdinal;
+    }
+
+    /**
+     * Remembers the reputation matrix the member was registered in last and its column ordinal in it.
+     * 
+     * @param reputationMatrix The reputation matrix the member was registered in.
+     * @param reputationOrdinal The column ordinal of the member in the given matrix.
+     */
+    protected void setReputationOrdinal(ReputationMatrix reputationMatrix, int reputationOrdinal) {
+
+        this.reputationMatrix = reputationMatrix;
+        this.reputationOrdinal = reputationOrdinal;
     }
 
     @Override
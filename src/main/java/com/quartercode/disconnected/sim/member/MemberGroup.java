@@ -18,16 +18,22 @@
 
 package com.quartercode.disconnected.sim.member;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
+import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.member.interest.Interest;
 
 /**
  * This class represents a group of members which may have interests of the same type.
- * A group also has a reputation on a member which is stored in the member's object. One member can't have an own reputation on another member.
+ * A group also has a reputation on a member which is stored in a {@link ReputationMatrix}. One member can't have an own reputation on another member.
+ * If the group isn't part of a simulation, it uses its own matrix.
  * Global interests which every member cares of are also defined in this class.
  * 
  * @see Member
@@ -40,10 +46,19 @@ public class MemberGroup {
     @XmlElement (name = "member")
     private final List<Member>     members     = new CopyOnWriteArrayList<Member>();
     @XmlElement (name = "reputation")
-    private final List<Reputation> reputations = new CopyOnWriteArrayList<Reputation>();
+    private final List<Reputation> reputations = new ArrayList<Reputation>();
     @XmlElement (name = "interest")
     private final List<Interest>   interests   = new CopyOnWriteArrayList<Interest>();
 
+    @XmlTransient
+    private ReputationMatrix       reputationMatrix;
+    @XmlTransient
+    private int                    ordinal;
+    @XmlTransient
+    private boolean                unmarshalled;
+    @XmlTransient
+    private Simulation             simulation;
+
     /**
      * Creates a new empty member group
      */
@@ -87,6 +102,9 @@ public class MemberGroup {
     public void addMember(Member member) {
 
         members.add(member);
+        if (simulation != null) {
+            simulation.indexGroupMember(this, member);
+        }
     }
 
     /**
@@ -97,26 +115,115 @@ public class MemberGroup {
     public void removeMember(Member member) {
 
         members.remove(member);
+        if (simulation != null) {
+            simulation.unindexGroupMember(this, member);
+        }
+    }
+
+    /**
+     * Sets the simulation the group is part of, so the simulation can be notified if the members of the group change.
+     * This is called by the simulation when the group is added or removed.
+     * 
+     * @param simulation The simulation the group is part of, or null if it was removed.
+     */
+    public void setSimulation(Simulation simulation) {
+
+        this.simulation = simulation;
     }
 
     /**
      * Returns the reputation the given member has from the perspective of this.
-     * If no reputation is set, an empty one will be created.
+     * The returned object reads and writes the reputation value of this group, so changes to it are applied directly.
      * 
      * @param member The member whose reputation should be returned.
      * @return The reputation the given member has from the perspective of this.
      */
     public Reputation getReputation(Member member) {
 
-        for (Reputation reputation : reputations) {
-            if (reputation.getMember().equals(member)) {
-                return reputation;
+        return new Reputation(this, member);
+    }
+
+    /**
+     * Returns the reputation value the given member has from the perspective of this.
+     * A member without a reputation has the value 0.
+     * 
+     * @param member The member whose reputation value should be returned.
+     * @return The reputation value the given member has from the perspective of this.
+     */
+    public int getReputationValue(Member member) {
+
+        return getReputationMatrix().get(ordinal, member);
+    }
+
+    /**
+     * Sets the reputation value the given member has from the perspective of this.
+     * 
+     * @param member The member whose reputation value should be set.
+     * @param value The new reputation value.
+     */
+    public void setReputationValue(Member member, int value) {
+
+        getReputationMatrix().set(ordinal, member, value);
+    }
+
+    /**
+     * Adds a delta to the reputation value the given member has from the perspective of this.
+     * 
+     * @param member The member whose reputation value should be changed.
+     * @param delta The delta to add to the reputation value (may be negative).
+     */
+    public void addReputationValue(Member member, int delta) {
+
+        getReputationMatrix().add(ordinal, member, delta);
+    }
+
+    /**
+     * Returns the reputation matrix which stores the reputations of this group.
+     * If the group doesn't use a matrix yet, it creates its own one.
+     * 
+     * @return The reputation matrix which stores the reputations of this group.
+     */
+    public ReputationMatrix getReputationMatrix() {
+
+        if (reputationMatrix == null) {
+            setReputationMatrix(new ReputationMatrix());
+        }
+
+        // The members of unmarshalled reputations are only resolved at the end of unmarshalling, so they're imported on the first access
+        if (unmarshalled) {
+            unmarshalled = false;
+            for (Reputation reputation : reputations) {
+                reputationMatrix.set(ordinal, reputation.getMember(), reputation.getValue());
             }
         }
 
-        Reputation reputation = new Reputation(member);
-        reputations.add(reputation);
-        return reputation;
+        return reputationMatrix;
+    }
+
+    /**
+     * Moves the reputations of this group into a new row of the given reputation matrix.
+     * This is used by the simulation for sharing one matrix between all of its groups.
+     * 
+     * @param reputationMatrix The reputation matrix which should store the reputations of this group.
+     */
+    public void setReputationMatrix(ReputationMatrix reputationMatrix) {
+
+        if (reputationMatrix == this.reputationMatrix) {
+            return;
+        }
+
+        ReputationMatrix oldMatrix = this.reputationMatrix;
+        int oldOrdinal = ordinal;
+        this.reputationMatrix = reputationMatrix;
+        ordinal = reputationMatrix.addGroup();
+
+        if (oldMatrix != null) {
+            for (Member member : oldMatrix.getMembers()) {
+                if (member != null && oldMatrix.get(oldOrdinal, member) != 0) {
+                    reputationMatrix.set(ordinal, member, oldMatrix.get(oldOrdinal, member));
+                }
+            }
+        }
     }
 
     /**
@@ -138,6 +245,9 @@ public class MemberGroup {
     public void addInterest(Interest interest) {
 
         interests.add(interest);
+        if (simulation != null) {
+            simulation.indexTarget(this, interest);
+        }
     }
 
     /**
@@ -147,55 +257,26 @@ public class MemberGroup {
      */
     public void removeInterest(Interest interest) {
 
-        interests.remove(interest);
+        if (interests.remove(interest) && simulation != null) {
+            simulation.unindexTarget(this, interest);
+        }
     }
 
-    @Override
-    public int hashCode() {
+    public void beforeMarshal(Marshaller marshaller) {
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (interests == null ? 0 : interests.hashCode());
-        result = prime * result + (members == null ? 0 : members.hashCode());
-        result = prime * result + (reputations == null ? 0 : reputations.hashCode());
-        return result;
+        // Only the reputations of the members of the matrix which aren't 0 are stored
+        ReputationMatrix matrix = getReputationMatrix();
+        reputations.clear();
+        for (Member member : matrix.getMembers()) {
+            if (member != null && matrix.get(ordinal, member) != 0) {
+                reputations.add(new Reputation(member, matrix.get(ordinal, member)));
+            }
+        }
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    public void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        MemberGroup other = (MemberGroup) obj;
-        if (interests == null) {
-            if (other.interests != null) {
-                return false;
-            }
-        } else if (!interests.equals(other.interests)) {
-            return false;
-        }
-        if (members == null) {
-            if (other.members != null) {
-                return false;
-            }
-        } else if (!members.equals(other.members)) {
-            return false;
-        }
-        if (reputations == null) {
-            if (other.reputations != null) {
-                return false;
-            }
-        } else if (!reputations.equals(other.reputations)) {
-            return false;
-        }
-        return true;
+        unmarshalled = true;
     }
 
     @Override
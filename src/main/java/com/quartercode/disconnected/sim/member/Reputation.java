@@ -20,20 +20,25 @@ package com.quartercode.disconnected.sim.member;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlValue;
 
 /**
  * This class represents the reputation of a member of the simulation as an integer.
  * A positive integer means a good reputation, a negative integer a bad one.
+ * Reputations which are returned by a {@link MemberGroup} read and write the value directly in the reputation matrix of the group.
  * 
  * @see Member
+ * @see MemberGroup
  */
 public class Reputation {
 
     @XmlIDREF
     @XmlAttribute
-    private Member member;
-    private int    value;
+    private Member      member;
+    private int         value;
+    @XmlTransient
+    private MemberGroup group;
 
     /**
      * Creates a new empty reputation object.
@@ -65,6 +70,18 @@ public class Reputation {
         this.value = value;
     }
 
+    /**
+     * Creates a new reputation object which reads and writes the reputation the given member has from the perspective of the given group.
+     * 
+     * @param group The group whose reputation values are used.
+     * @param member The member to set.
+     */
+    protected Reputation(MemberGroup group, Member member) {
+
+        this.group = group;
+        this.member = member;
+    }
+
     /**
      * Returns the member whose reputation is stored.
      * 
@@ -83,7 +100,7 @@ public class Reputation {
     @XmlValue
     public int getValue() {
 
-        return value;
+        return group == null ? value : group.getReputationValue(member);
     }
 
     /**
@@ -93,7 +110,11 @@ public class Reputation {
      */
     public void setValue(int value) {
 
-        this.value = value;
+        if (group == null) {
+            this.value = value;
+        } else {
+            group.setReputationValue(member, value);
+        }
     }
 
     /**
@@ -103,7 +124,11 @@ public class Reputation {
      */
     public void addValue(int delta) {
 
-        value += delta;
+        if (group == null) {
+            value += delta;
+        } else {
+            group.addReputationValue(member, delta);
+        }
     }
 
     /**
@@ -113,7 +138,7 @@ public class Reputation {
      */
     public void subtractValue(int delta) {
 
-        value -= delta;
+        addValue(-delta);
     }
 
     @Override
@@ -122,7 +147,7 @@ public class Reputation {
         final int prime = 31;
         int result = 1;
         result = prime * result + (member == null ? 0 : member.hashCode());
-        result = prime * result + value;
+        result = prime * result + getValue();
         return result;
     }
 
@@ -146,7 +171,7 @@ public class Reputation {
         } else if (!member.equals(other.member)) {
             return false;
         }
-        if (value != other.value) {
+        if (getValue() != other.getValue()) {
             return false;
         }
         return true;
@@ -155,7 +180,7 @@ public class Reputation {
     @Override
     public String toString() {
 
-        return getClass().getName() + " [member=" + member.toInfoString() + ", value=" + value + "]";
+        return getClass().getName() + " [member=" + member.toInfoString() + ", value=" + getValue() + "]";
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.member;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reputation matrix stores the reputations of all members from the perspective of all member groups in a dense int matrix.
+ * Every group gets a row and every member a column when they are registered, so reading or changing a reputation only indexes an array.
+ * Usually, a simulation owns one matrix which is shared by all of its groups.
+ * 
+ * @see MemberGroup
+ * @see Member
+ */
+public class ReputationMatrix {
+
+    private final List<Member>         members  = new ArrayList<Member>();
+    private final Map<Member, Integer> ordinals = new IdentityHashMap<Member, Integer>();
+    private int[][]                    values   = new int[0][];
+    private int                        groups;
+
+    /**
+     * Creates a new empty reputation matrix.
+     */
+    public ReputationMatrix() {
+
+    }
+
+    /**
+     * Returns all members which have a column in the matrix.
+     * Removed members are null.
+     * 
+     * @return All members which have a column in the matrix, the index in the list is the ordinal of the member.
+     */
+    public List<Member> getMembers() {
+
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Registers the given member and returns its column ordinal.
+     * If the member is already registered, the existing ordinal is returned.
+     * 
+     * @param member The member to register.
+     * @return The column ordinal of the given member.
+     */
+    public int addMember(Member member) {
+
+        // Members remember their ordinal in the last matrix they were registered in
+        if (member.getReputationMatrix() == this) {
+            return member.getReputationOrdinal();
+        }
+
+        Integer ordinal = ordinals.get(member);
+        if (ordinal == null) {
+            ordinal = members.size();
+            members.add(member);
+            ordinals.put(member, ordinal);
+        }
+        member.setReputationOrdinal(this, ordinal);
+        return ordinal;
+    }
+
+    /**
+     * Unregisters the given member and resets all of its reputations.
+     * The column ordinal of the member isn't reused.
+     * 
+     * @param member The member to unregister.
+     */
+    public void removeMember(Member member) {
+
+        Integer ordinal = ordinals.remove(member);
+        if (ordinal != null) {
+            members.set(ordinal, null);
+            for (int group = 0; group < groups; group++) {
+                if (ordinal < values[group].length) {
+                    values[group][ordinal] = 0;
+                }
+            }
+            if (member.getReputationMatrix() == this) {
+                member.setReputationOrdinal(null, 0);
+            }
+        }
+    }
+
+    /**
+     * Adds a new row for a group and returns the row ordinal.
+     * 
+     * @return The row ordinal of the new group.
+     */
+    protected int addGroup() {
+
+        if (groups == values.length) {
+            int[][] newValues = new int[Math.max(groups * 2, 4)][];
+            System.arraycopy(values, 0, newValues, 0, groups);
+            values = newValues;
+        }
+        values[groups] = new int[members.size()];
+        return groups++;
+    }
+
+    /**
+     * Returns the reputation the given member has from the perspective of the group with the given row ordinal.
+     * 
+     * @param group The row ordinal of the group.
+     * @param member The member whose reputation should be returned.
+     * @return The reputation the given member has from the perspective of the group.
+     */
+    public int get(int group, Member member) {
+
+        int ordinal = addMember(member);
+        int[] row = values[group];
+        return ordinal < row.length ? row[ordinal] : 0;
+    }
+
+    /**
+     * Sets the reputation the given member has from the perspective of the group with the given row ordinal.
+     * 
+     * @param group The row ordinal of the group.
+     * @param member The member whose reputation should be set.
+     * @param value The new reputation value.
+     */
+    public void set(int group, Member member, int value) {
+
+        int ordinal = addMember(member);
+        getRow(group, ordinal)[ordinal] = value;
+    }
+
+    /**
+     * Adds a delta to the reputation the given member has from the perspective of the group with the given row ordinal.
+     * 
+     * @param group The row ordinal of the group.
+     * @param member The member whose reputation should be changed.
+     * @param delta The delta to add to the reputation value.
+     */
+    public void add(int group, Member member, int delta) {
+
+        int ordinal = addMember(member);
+        getRow(group, ordinal)[ordinal] += delta;
+    }
+
+    private int[] getRow(int group, int ordinal) {
+
+        // Rows only grow when they're written, so members which are added later don't touch every row
+        int[] row = values[group];
+        if (ordinal >= row.length) {
+            int[] newRow = new int[Math.max(ordinal + 1, members.size())];
+            System.arraycopy(row, 0, newRow, 0, row.length);
+            values[group] = newRow;
+            row = newRow;
+        }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [groups=" + groups + ", members=" + ordinals.size() + "]";
+    }
+
+}
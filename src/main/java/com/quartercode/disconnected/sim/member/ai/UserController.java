@@ -18,7 +18,6 @@
 
 package com.quartercode.disconnected.sim.member.ai;
 
-import java.util.ArrayList;
 import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.member.Member;
 import com.quartercode.disconnected.sim.member.MemberGroup;
@@ -70,8 +69,8 @@ public class UserController extends AIController {
                             }
                         }
 
-                        if (ProbabilityUtil.genPseudo(simulation.RANDOM.nextFloat() + -group.getReputation(target).getValue() / 100F, simulation.RANDOM)) {
-                            float priority = simulation.RANDOM.nextFloat() - group.getReputation(target).getValue() / 40F;
+                        if (ProbabilityUtil.genPseudo(simulation.RANDOM.nextFloat() + -group.getReputationValue(target) / 100F, simulation.RANDOM)) {
+                            float priority = simulation.RANDOM.nextFloat() - group.getReputationValue(target) / 40F;
                             if (priority > 1) {
                                 priority = 1;
                             }
@@ -83,19 +82,15 @@ public class UserController extends AIController {
             }
         }
 
-        // Execute member interests
-        for (Interest interest : new ArrayList<Interest>(getMember().getBrainData(Interest.class))) {
-            if (interest instanceof HasTarget && !simulation.getMembers().contains( ((HasTarget) interest).getTarget())) {
-                continue;
-            } else {
-                Action action = interest.getAction(simulation, getMember());
-                if (action != null) {
-                    if (action.execute(simulation, getMember())) {
-                        getMember().removeBrainData(interest);
-                    }
-
-                    break;
+        // Execute member interests (interests with removed targets are dropped when the target is removed)
+        for (Interest interest : getMember().getBrainData(Interest.class)) {
+            Action action = interest.getAction(simulation, getMember());
+            if (action != null) {
+                if (action.execute(simulation, getMember())) {
+                    getMember().removeBrainData(interest);
                 }
+
+                break;
             }
         }
     }
@@ -94,7 +94,7 @@ public class DestroyInterest extends Interest implements HasTarget {
     public Action getAction(Simulation simulation, Member member) {
 
         // Calculate probability for executing the action
-        int currentReputation = simulation.getGroup(member).getReputation(member).getValue();
+        int currentReputation = simulation.getGroup(member).getReputationValue(member);
         float probability = getPriority() * (getReputationChange(simulation, member, simulation.getGroup(member)) * 20F) / ( (currentReputation == 0 ? 1 : currentReputation) * 100);
 
         if (ProbabilityUtil.genPseudo(probability, simulation.RANDOM)) {
@@ -110,11 +110,11 @@ public class DestroyInterest extends Interest implements HasTarget {
             if (vulnerabilities.size() > 0) {
                 Exploit exploit = new Exploit(vulnerabilities.get(0));
 
-                // Also develop a brand new payload which immediatly destroys the target computer
+                // Also develop a brand new payload which destroys the target computer at the end of the tick
+                // Removing the member also removes it from its group and drops every interest which targets it
                 List<String> scripts = new ArrayList<String>();
-                scripts.add("simulation.removeMember(member)");
-                scripts.add("simulation.getGroup(member).removeMember(member)");
-                scripts.add("simulation.removeComputer(member.getComputer())");
+                scripts.add("simulation.queueRemoveMember(member)");
+                scripts.add("simulation.queueRemoveComputer(member.getComputer())");
 
                 // Use the first avaiable operating system as execution environment
                 Payload payload = new Payload(member.getComputer().getOperatingSystem(), scripts);
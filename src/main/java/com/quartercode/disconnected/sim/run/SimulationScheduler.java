@@ -0,0 +1,415 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang.Validate;
+import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.util.LatencyHistogram;
+
+/**
+ * The simulation scheduler ticks several independent simulations in one vm.
+ * Every hosted simulation has got its own tick actions and tick rate, like an own {@link Ticker}.
+ * All simulations are multiplexed over a shared pool with a bounded amount of worker threads.
+ * The pool always executes the simulation with the earliest tick deadline first, so every simulation gets its fair share of the workers.
+ * 
+ * @see HostedSimulation
+ * @see Ticker
+ */
+public class SimulationScheduler {
+
+    /**
+     * The amount of worker threads the scheduler uses by default.
+     */
+    public static final int                         DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private static final Logger                     LOGGER            = Logger.getLogger(SimulationScheduler.class.getName());
+
+    private final ScheduledThreadPoolExecutor       workerPool;
+    private final Map<Simulation, HostedSimulation> hosted            = new IdentityHashMap<Simulation, HostedSimulation>();
+
+    /**
+     * Creates a new simulation scheduler which uses the default amount of worker threads.
+     */
+    public SimulationScheduler() {
+
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Creates a new simulation scheduler which uses the given amount of worker threads.
+     * 
+     * @param poolSize The amount of worker threads the scheduler uses.
+     */
+    public SimulationScheduler(int poolSize) {
+
+        Validate.isTrue(poolSize > 0, "Pool size must be > 0: ", poolSize);
+        workerPool = new ScheduledThreadPoolExecutor(poolSize, new WorkerThreadFactory());
+    }
+
+    /**
+     * Returns the amount of worker threads the scheduler uses.
+     * 
+     * @return The amount of worker threads the scheduler uses.
+     */
+    public int getPoolSize() {
+
+        return workerPool.getCorePoolSize();
+    }
+
+    /**
+     * Returns all simulations which are currently hosted by the scheduler.
+     * 
+     * @return All hosted simulations.
+     */
+    public synchronized List<HostedSimulation> getHosted() {
+
+        return Collections.unmodifiableList(new ArrayList<HostedSimulation>(hosted.values()));
+    }
+
+    /**
+     * Returns the hosted simulation which ticks the given simulation.
+     * This returns null if the given simulation isn't hosted by the scheduler.
+     * 
+     * @param simulation The simulation to look for.
+     * @return The hosted simulation which ticks the given simulation.
+     */
+    public synchronized HostedSimulation getHosted(Simulation simulation) {
+
+        return hosted.get(simulation);
+    }
+
+    /**
+     * Starts ticking the given simulation with the default tick actions ({@link TickTimer} and {@link TickSimulator}) and the default delay.
+     * 
+     * @param simulation The simulation to tick.
+     * @return The hosted simulation which can be used to control the ticking.
+     * @throws IllegalStateException The simulation is already hosted by the scheduler.
+     */
+    public HostedSimulation host(Simulation simulation) {
+
+        return host(simulation, new TickTimer(), new TickSimulator(simulation));
+    }
+
+    /**
+     * Starts ticking the given simulation with the given tick actions and the default delay.
+     * A {@link TickSimulator} without tick statistics records its phases into the statistics of the hosted simulation.
+     * 
+     * @param simulation The simulation to tick.
+     * @param actions The tick actions which get called on every tick of the simulation.
+     * @return The hosted simulation which can be used to control the ticking.
+     * @throws IllegalStateException The simulation is already hosted by the scheduler.
+     */
+    public synchronized HostedSimulation host(Simulation simulation, TickAction... actions) {
+
+        if (hosted.containsKey(simulation)) {
+            throw new IllegalStateException("Simulation is already hosted");
+        } else if (workerPool.isShutdown()) {
+            throw new IllegalStateException("Scheduler is shut down");
+        }
+
+        HostedSimulation hostedSimulation = new HostedSimulation(simulation, actions);
+        hosted.put(simulation, hostedSimulation);
+        hostedSimulation.schedule(0);
+        return hostedSimulation;
+    }
+
+    /**
+     * Stops ticking the given simulation.
+     * A tick which is currently executed is completed.
+     * 
+     * @param simulation The simulation to stop ticking.
+     */
+    public synchronized void unhost(Simulation simulation) {
+
+        HostedSimulation hostedSimulation = hosted.remove(simulation);
+        if (hostedSimulation != null) {
+            hostedSimulation.cancel();
+        }
+    }
+
+    /**
+     * Stops ticking all simulations and terminates the worker threads.
+     * The scheduler can't be used after it was shut down.
+     */
+    public synchronized void shutdown() {
+
+        for (HostedSimulation hostedSimulation : hosted.values()) {
+            hostedSimulation.cancel();
+        }
+        hosted.clear();
+        workerPool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [poolSize=" + getPoolSize() + ", hosted=" + hosted.size() + "]";
+    }
+
+    /**
+     * A hosted simulation is a simulation which gets ticked by a simulation scheduler.
+     * It works like a {@link Ticker} in the {@link Ticker.TickMode#FIXED_RATE} mode, but doesn't own a thread.
+     * Instead, every tick is submitted to the shared worker pool of the scheduler, so a simulation is never ticked by two threads at the same time.
+     * Every hosted simulation records its latencies and overruns into its own {@link TickStatistics}.
+     */
+    public class HostedSimulation implements Runnable {
+
+        private final Simulation         simulation;
+        private final List<TickAction>   actions;
+        private volatile int             delay        = Ticker.DEFAULT_DELAY;
+        private volatile int             maxCatchUp   = Ticker.DEFAULT_MAX_CATCH_UP;
+
+        private volatile boolean         cancelled;
+        private ScheduledFuture<?>       future;
+
+        private final TickStatistics     statistics   = new TickStatistics();
+        private final TickSchedule       tickSchedule = new TickSchedule("Hosted simulation", statistics);
+        private final LatencyHistogram[] actionHistograms;
+        private final LatencyHistogram   tickHistogram;
+        private volatile long            ticks;
+
+        private HostedSimulation(Simulation simulation, TickAction... actions) {
+
+            this.simulation = simulation;
+            this.actions = Collections.unmodifiableList(Arrays.asList(actions));
+
+            // The actions can't change, so their histograms are resolved once
+            actionHistograms = new LatencyHistogram[actions.length];
+            for (int index = 0; index < actions.length; index++) {
+                actionHistograms[index] = statistics.getHistogram("action." + actions[index].getClass().getSimpleName());
+                if (actions[index] instanceof TickSimulator && ((TickSimulator) actions[index]).getStatistics() == null) {
+                    ((TickSimulator) actions[index]).setStatistics(statistics);
+                }
+            }
+            tickHistogram = statistics.getHistogram("tick");
+        }
+
+        /**
+         * Returns the simulation which gets ticked.
+         * 
+         * @return The simulation which gets ticked.
+         */
+        public Simulation getSimulation() {
+
+            return simulation;
+        }
+
+        /**
+         * Returns the tick actions which get called on every tick of the simulation.
+         * 
+         * @return The tick actions which get called on every tick.
+         */
+        public List<TickAction> getActions() {
+
+            return actions;
+        }
+
+        /**
+         * Returns the tick actions which has the given type as a superclass.
+         * 
+         * @param type The type to use.
+         * @return The tick actions which has the given type as a superclass.
+         */
+        public <T> T getAction(Class<T> type) {
+
+            for (TickAction action : actions) {
+                if (type.isAssignableFrom(action.getClass())) {
+                    return type.cast(action);
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the delay between two ticks of the simulation in milliseconds.
+         * This limits the tick rate of the simulation.
+         * 
+         * @return The delay between two ticks.
+         */
+        public int getDelay() {
+
+            return delay;
+        }
+
+        /**
+         * Sets the delay between two ticks of the simulation in milliseconds.
+         * This limits the tick rate of the simulation.
+         * 
+         * @param delay The new delay between two ticks.
+         */
+        public void setDelay(int delay) {
+
+            Validate.isTrue(delay > 0, "Delay must be > 0: ", delay);
+            this.delay = delay;
+        }
+
+        /**
+         * Returns the maximum amount of ticks which are executed without waiting if the simulation falls behind.
+         * 
+         * @return The maximum amount of catch-up ticks.
+         */
+        public int getMaxCatchUp() {
+
+            return maxCatchUp;
+        }
+
+        /**
+         * Sets the maximum amount of ticks which are executed without waiting if the simulation falls behind.
+         * 
+         * @param maxCatchUp The new maximum amount of catch-up ticks.
+         */
+        public void setMaxCatchUp(int maxCatchUp) {
+
+            Validate.isTrue(maxCatchUp >= 0, "Max catch-up must be >= 0: ", maxCatchUp);
+            this.maxCatchUp = maxCatchUp;
+        }
+
+        /**
+         * Returns the tick statistics which record the latencies of the tick actions and the tick overruns of the simulation.
+         * The statistics aren't registered as mbeans because the statistics of several hosted simulations would use the same names.
+         * 
+         * @return The tick statistics of the hosted simulation.
+         */
+        public TickStatistics getStatistics() {
+
+            return statistics;
+        }
+
+        /**
+         * Returns the amount of ticks which were executed since the simulation is hosted.
+         * 
+         * @return The amount of executed ticks.
+         */
+        public long getTicks() {
+
+            return ticks;
+        }
+
+        /**
+         * Returns how often a tick was executed after the next tick was already due.
+         * 
+         * @return The amount of tick overruns.
+         */
+        public long getOverruns() {
+
+            return tickSchedule.getOverruns();
+        }
+
+        /**
+         * Returns the amount of ticks which were dropped because the catch-up limit was reached.
+         * 
+         * @return The amount of dropped ticks.
+         */
+        public long getDroppedTicks() {
+
+            return tickSchedule.getDroppedTicks();
+        }
+
+        /**
+         * Returns if the simulation is still ticked.
+         * 
+         * @return If the simulation is still ticked.
+         */
+        public boolean isRunning() {
+
+            return !cancelled;
+        }
+
+        @Override
+        public void run() {
+
+            if (cancelled) {
+                return;
+            }
+
+            long tickStart = System.nanoTime();
+            for (int index = 0; index < actionHistograms.length; index++) {
+                TickAction action = actions.get(index);
+                long actionStart = System.nanoTime();
+                try {
+                    action.update();
+                }
+                catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, "An exception occurred while executing tick action update (tick action " + action.getClass().getName() + ")", t);
+                }
+                actionHistograms[index].record(System.nanoTime() - actionStart);
+            }
+            tickHistogram.record(System.nanoTime() - tickStart);
+            ticks++;
+
+            // A catch-up tick is queued immediately; other simulations with earlier deadlines still go first
+            schedule(tickSchedule.advance(System.nanoTime(), delay * 1000000L, maxCatchUp));
+        }
+
+        private synchronized void schedule(long waitTime) {
+
+            if (future == null) {
+                tickSchedule.reset(System.nanoTime());
+            }
+
+            if (!cancelled) {
+                future = workerPool.schedule(this, waitTime, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void cancel() {
+
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public String toString() {
+
+            return getClass().getName() + " [delay=" + delay + ", ticks=" + ticks + ", overruns=" + getOverruns() + ", droppedTicks=" + getDroppedTicks() + ", running=" + isRunning() + "]";
+        }
+
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "simulation-worker-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run;
+
+import java.util.logging.Logger;
+
+/**
+ * The tick schedule calculates when the next tick is due if ticks should be executed with a fixed rate.
+ * If a tick takes longer than the tick period, a limited amount of catch-up ticks is executed without waiting.
+ * After that, the remaining backlog is dropped and the schedule continues from the current time.
+ * The schedule doesn't read the clock itself, so the caller passes the current time in nanoseconds.
+ * 
+ * @see Ticker.TickMode#FIXED_RATE
+ */
+public class TickSchedule {
+
+    private static final Logger  LOGGER = Logger.getLogger(TickSchedule.class.getName());
+
+    private final String         name;
+    private final TickStatistics statistics;
+
+    private long                 nextTick;
+    private int                  catchUp;
+
+    // Only the ticking thread writes the counters, so volatile is enough for reading them from other threads
+    private volatile long        overruns;
+    private volatile long        droppedTicks;
+
+    /**
+     * Creates a new tick schedule which records its overruns and dropped ticks into the given tick statistics.
+     * 
+     * @param name The name of the ticking component which is used for log messages.
+     * @param statistics The tick statistics the overruns and dropped ticks are recorded into. This can be null.
+     */
+    public TickSchedule(String name, TickStatistics statistics) {
+
+        this.name = name;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the time in nanoseconds the next tick is due at.
+     * 
+     * @return The time the next tick is due at.
+     */
+    public long getNextTick() {
+
+        return nextTick;
+    }
+
+    /**
+     * Returns how often a tick was finished after the next tick was already due.
+     * 
+     * @return The amount of tick overruns.
+     */
+    public long getOverruns() {
+
+        return overruns;
+    }
+
+    /**
+     * Returns the amount of ticks which were dropped because the catch-up limit was reached.
+     * 
+     * @return The amount of dropped ticks.
+     */
+    public long getDroppedTicks() {
+
+        return droppedTicks;
+    }
+
+    /**
+     * Starts the schedule over at the given time without any catch-up ticks.
+     * 
+     * @param now The current time in nanoseconds.
+     */
+    public void reset(long now) {
+
+        nextTick = now;
+        catchUp = 0;
+    }
+
+    /**
+     * Moves the schedule to the next tick after a tick was executed.
+     * If the next tick is already due, it should be executed immediately for catching up.
+     * If the catch-up limit is reached, all fully elapsed periods after the due tick are dropped and the schedule continues from now on.
+     * 
+     * @param now The current time in nanoseconds.
+     * @param period The tick period in nanoseconds.
+     * @param maxCatchUp The maximum amount of catch-up ticks which are executed directly after each other.
+     * @return The time in nanoseconds to wait until the next tick should be executed.
+     */
+    public long advance(long now, long period, int maxCatchUp) {
+
+        nextTick += period;
+
+        if (now - nextTick >= 0) {
+            overruns++;
+            if (statistics != null) {
+                statistics.recordOverrun();
+            }
+
+            if (catchUp < maxCatchUp) {
+                // Execute the next tick immediately
+                catchUp++;
+                return 0;
+            }
+
+            // The tick which is due at nextTick is still executed now, only the fully elapsed periods after it are dropped
+            long dropped = (now - nextTick) / period;
+            if (dropped > 0) {
+                droppedTicks += dropped;
+                if (statistics != null) {
+                    statistics.recordDroppedTicks(dropped);
+                }
+                LOGGER.warning(name + " can't keep up, dropping " + dropped + " ticks (" + (now - nextTick) / 1000000L + "ms behind)");
+            }
+            nextTick = now;
+        }
+
+        catchUp = 0;
+        return nextTick - now;
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [name=" + name + ", overruns=" + overruns + ", droppedTicks=" + droppedTicks + "]";
+    }
+
+}
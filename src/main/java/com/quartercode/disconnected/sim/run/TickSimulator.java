@@ -19,19 +19,85 @@
 package com.quartercode.disconnected.sim.run;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang.Validate;
 import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.comp.hardware.NetworkInterface;
 import com.quartercode.disconnected.sim.comp.net.Packet;
-import com.quartercode.disconnected.sim.comp.program.Process;
-import com.quartercode.disconnected.sim.comp.program.Process.ProcessState;
+import com.quartercode.disconnected.sim.comp.os.ProcessManager;
+import com.quartercode.disconnected.util.LatencyHistogram;
 
 /**
  * This class implements the root tick update mechanisms for the entire simulation.
+ * The process phase can optionally be executed in parallel on a pool of worker threads.
+ * Because computers are split across the workers, mutations which affect other computers must be deferred using {@link #defer(Runnable)}.
+ * Computers without pending work are put to sleep and skipped until they are woken up again (see {@link Computer#wake()}).
+ * Only the awake computers which are queued by the simulation are visited, so sleeping computers don't cost anything.
+ * Structural changes of the simulation which were queued during the tick are applied at the end of it (see {@link Simulation#applyMutations()}).
  */
 public class TickSimulator implements TickAction {
 
-    private Simulation simulation;
+    private static final String[]                    PHASES             = { "processes", "packets", "sleep", "mutations" };
+    private static final int                         PHASE_PROCESSES    = 0;
+    private static final int                         PHASE_PACKETS      = 1;
+    private static final int                         PHASE_SLEEP        = 2;
+    private static final int                         PHASE_MUTATIONS    = 3;
+
+    private static final ThreadLocal<List<Runnable>> MUTATION_BUFFER    = new ThreadLocal<List<Runnable>>();
+    private static final ThreadLocal<Simulation>     CURRENT_SIMULATION = new ThreadLocal<Simulation>();
+
+    /**
+     * Returns the simulation which is currently updated by the calling thread.
+     * Because several simulations can be ticked at the same time, this should be used instead of a global simulation inside of a tick.
+     * If the calling thread isn't executing a tick update, this returns null.
+     * 
+     * @return The simulation which is currently updated by the calling thread.
+     */
+    public static Simulation getCurrentSimulation() {
+
+        return CURRENT_SIMULATION.get();
+    }
+
+    /**
+     * Executes the given mutation which may affect other computers than the one which is currently updated.
+     * If the process phase is currently running in parallel, the mutation is buffered and applied after every computer was updated.
+     * Buffered mutations are applied in the order of the computers, so the result doesn't depend on the thread scheduling.
+     * Otherwise, the mutation is executed immediately.
+     * 
+     * @param mutation The mutation to execute or buffer.
+     */
+    public static void defer(Runnable mutation) {
+
+        List<Runnable> buffer = MUTATION_BUFFER.get();
+        if (buffer != null) {
+            buffer.add(mutation);
+        } else {
+            mutation.run();
+        }
+    }
+
+    private Simulation                  simulation;
+    private TickStatistics              statistics;
+    private volatile LatencyHistogram[] phaseHistograms;
+
+    private int                         parallelism = 1;
+    private ExecutorService             workerPool;
+
+    private final List<Computer>        awakeComputers = new ArrayList<Computer>();
+
+    private int                         budget;
+    private Computer                    resumeComputer;
+    private volatile int                lastDeferrals;
+    private volatile long               deferrals;
 
     /**
      * Creates a new empty tick simulator.
@@ -71,6 +137,118 @@ public class TickSimulator implements TickAction {
         this.simulation = simulation;
     }
 
+    /**
+     * Returns the tick statistics the latencies of the single tick phases are recorded in.
+     * If this is null, no latencies are recorded.
+     * 
+     * @return The tick statistics the phase latencies are recorded in.
+     */
+    public TickStatistics getStatistics() {
+
+        return statistics;
+    }
+
+    /**
+     * Sets the tick statistics the latencies of the single tick phases are recorded in.
+     * The phases are recorded as "phase.processes", "phase.packets", "phase.sleep" and "phase.mutations".
+     * If this is null (default), no latencies are recorded.
+     * 
+     * @param statistics The new tick statistics the phase latencies are recorded in.
+     */
+    public void setStatistics(TickStatistics statistics) {
+
+        this.statistics = statistics;
+
+        // The histograms are resolved once, so recording a phase doesn't have to look them up
+        if (statistics == null) {
+            phaseHistograms = null;
+        } else {
+            phaseHistograms = new LatencyHistogram[PHASES.length];
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                phaseHistograms[phase] = statistics.getHistogram("phase." + PHASES[phase]);
+            }
+        }
+    }
+
+    /**
+     * Returns the time budget of the process phase in milliseconds.
+     * If the budget is exhausted, the remaining executor updates are deferred to the next tick.
+     * A budget of 0 means that the process phase isn't limited.
+     * 
+     * @return The time budget of the process phase in milliseconds.
+     */
+    public int getBudget() {
+
+        return budget;
+    }
+
+    /**
+     * Sets the time budget of the process phase in milliseconds.
+     * If the budget is exhausted, the remaining executor updates are deferred to the next tick.
+     * The deferred processes and computers are updated first in the next tick, so no process starves.
+     * The budget starts when the first executor is updated, and at least one executor is updated in every tick, even if the budget is already exhausted.
+     * A budget of 0 (default) means that the process phase isn't limited.
+     * 
+     * @param budget The new time budget of the process phase in milliseconds.
+     */
+    public void setBudget(int budget) {
+
+        Validate.isTrue(budget >= 0, "Budget must be >= 0: ", budget);
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the amount of executor updates which were deferred to the next tick in the last tick because the budget was exhausted.
+     * 
+     * @return The amount of deferred executor updates in the last tick.
+     */
+    public int getLastDeferrals() {
+
+        return lastDeferrals;
+    }
+
+    /**
+     * Returns the amount of executor updates which were deferred because the budget was exhausted since the simulator was created.
+     * 
+     * @return The total amount of deferred executor updates.
+     */
+    public long getDeferrals() {
+
+        return deferrals;
+    }
+
+    /**
+     * Returns the amount of worker threads the process phase is executed on.
+     * A parallelism of 1 means that the process phase is executed sequentially on the tick thread.
+     * 
+     * @return The amount of worker threads the process phase is executed on.
+     */
+    public int getParallelism() {
+
+        return parallelism;
+    }
+
+    /**
+     * Sets the amount of worker threads the process phase is executed on.
+     * A parallelism of 1 means that the process phase is executed sequentially on the tick thread (default).
+     * The action will take place in the next tick.
+     * 
+     * @param parallelism The new amount of worker threads the process phase is executed on.
+     */
+    public synchronized void setParallelism(int parallelism) {
+
+        Validate.isTrue(parallelism > 0, "Parallelism must be > 0: ", parallelism);
+
+        if (parallelism != this.parallelism) {
+            this.parallelism = parallelism;
+
+            if (workerPool != null) {
+                workerPool.shutdown();
+                workerPool = null;
+            }
+        }
+    }
+
     /**
      * Executes the basic (root) tick update which is called in the same intervals.
      * This calls some subroutines which actually simulate a tick.
@@ -79,103 +257,268 @@ public class TickSimulator implements TickAction {
     public void update() {
 
         if (simulation != null) {
-            // Execute process ticks
-            for (Computer computer : simulation.getComputers()) {
-                if (computer.getOperatingSystem().isRunning()) {
-                    for (Process process : new ArrayList<Process>(computer.getOperatingSystem().getProcessManager().getAllProcesses())) {
-                        if (process.getState() == ProcessState.RUNNING || process.getState() == ProcessState.INTERRUPTED) {
-                            process.getExecutor().update();
-                        } else if (process.isCompletelyStopped()) {
-                            process.getParent().unregisterChild(process);
-                        }
-                    }
+            CURRENT_SIMULATION.set(simulation);
+            try {
+                updateSimulation();
+            }
+            finally {
+                CURRENT_SIMULATION.remove();
+            }
+        }
+    }
+
+    private void updateSimulation() {
+
+        long phaseStart = System.nanoTime();
+
+        // Only computers which are awake have got work to do, they are queued by the simulation when they wake up
+        simulation.drainAwakeComputers(awakeComputers);
+
+        // Start with the computer whose processes were deferred in the last tick
+        if (resumeComputer != null) {
+            for (int index = 1; index < awakeComputers.size(); index++) {
+                if (awakeComputers.get(index) == resumeComputer) {
+                    Collections.rotate(awakeComputers, -index);
+                    break;
+                }
+            }
+            resumeComputer = null;
+        }
+
+        // Execute process ticks, the budget only starts when the processes are actually updated
+        long deadline = System.nanoTime() + budget * 1000000L;
+        int deferred = 0;
+        if (parallelism > 1 && awakeComputers.size() > 1) {
+            deferred = updateProcessesParallel(awakeComputers, deadline);
+        } else {
+            for (Computer computer : awakeComputers) {
+                int computerDeferred = updateProcesses(computer, deadline, computer == awakeComputers.get(0));
+                if (computerDeferred > 0 && resumeComputer == null) {
+                    resumeComputer = computer;
                 }
+                deferred += computerDeferred;
+            }
+        }
+        lastDeferrals = deferred;
+        deferrals += deferred;
+        if (statistics != null) {
+            statistics.recordDeferrals(deferred);
+        }
+        phaseStart = recordPhase(PHASE_PROCESSES, phaseStart);
+
+        // Send remaining packets from network interfaces
+        for (Computer computer : awakeComputers) {
+            for (NetworkInterface networkInterface : computer.getHardware(NetworkInterface.class)) {
+                Packet packet = null;
+                while ( (packet = networkInterface.nextDeliveryPacket(true)) != null) {
+                    packet.getReceiver().getIp().getHost().receivePacket(packet);
+                }
+            }
+        }
+        phaseStart = recordPhase(PHASE_PACKETS, phaseStart);
+
+        // Put computers without pending work to sleep until a packet or a process state change wakes them up
+        for (Computer computer : awakeComputers) {
+            // The wakeups are read first, so a wakeup from another thread during the check isn't lost
+            long wakeups = computer.getWakeups();
+            if (!computer.hasPendingWork()) {
+                computer.sleep(wakeups);
+            } else if (computer.isAwake()) {
+                // A computer which is already awake isn't queued by a wakeup, so it must be queued again for the next tick
+                simulation.notifyAwake(computer);
+            }
+        }
+        awakeComputers.clear();
+        phaseStart = recordPhase(PHASE_SLEEP, phaseStart);
+
+        // Apply the structural changes which were queued during the tick (e.g. by payload scripts)
+        simulation.applyMutations();
+        recordPhase(PHASE_MUTATIONS, phaseStart);
+
+        // TEMPDIS
+        // // Generate new members and computers
+        // int newComputers = simulation.RANDOM.nextInt(ProbabilityUtil.gen(0.008F, simulation.RANDOM) ? 50 : 8) - 5;
+        // if (newComputers > 0) {
+        // List<Computer> computers = SimulationGenerator.generateComputers(simulation, newComputers, simulation.getComputers());
+        // for (Computer computer : computers) {
+        // simulation.queueAddComputer(computer);
+        // }
+        // for (Member member : SimulationGenerator.generateMembers(simulation, computers, simulation.getGroups())) {
+        // simulation.queueAddMember(member);
+        // }
+        // }
+        //
+        // // Generate global group interests against members with bad reputation
+        // for (MemberGroup group : simulation.getGroups()) {
+        // targetLoop:
+        // for (Member target : simulation.getMembers()) {
+        // for (Interest interest : group.getInterests()) {
+        // if (interest instanceof HasTarget && ((HasTarget) interest).getTarget().equals(target)) {
+        // continue targetLoop;
+        // }
+        // }
+        //
+        // if (group.getReputation(target).getValue() <= -10) {
+        // if (ProbabilityUtil.genPseudo(-group.getReputation(target).getValue() / 20F, simulation.RANDOM)) {
+        // float priority = -group.getReputation(target).getValue() / 400F;
+        // if (priority > 1) {
+        // priority = 1;
+        // }
+        // group.addInterest(new DestroyInterest(priority, target));
+        // }
+        // }
+        // }
+        // }
+        //
+        // // Execute global group interests
+        // for (MemberGroup group : simulation.getGroups()) {
+        // for (Interest interest : group.getInterests()) {
+        // for (Member member : simulation.getMembers()) {
+        // Action action = interest.getAction(simulation, member);
+        // if (action != null) {
+        // if (action.execute(simulation, member)) {
+        // group.removeInterest(interest);
+        // }
+        //
+        // break;
+        // }
+        // }
+        // }
+        // }
+        //
+        // // Simulate members
+        // for (Member member : simulation.getMembers()) {
+        // if (member.getAiController() != null) {
+        // member.getAiController().update(simulation);
+        // }
+        // }
+    }
+
+    private long recordPhase(int phase, long phaseStart) {
+
+        long now = System.nanoTime();
+        LatencyHistogram[] phaseHistograms = this.phaseHistograms;
+        if (phaseHistograms != null) {
+            phaseHistograms[phase].record(now - phaseStart);
+        }
+        return now;
+    }
+
+    private int updateProcesses(Computer computer, long deadline, boolean progress) {
+
+        int deferred = 0;
+        if (computer.getOperatingSystem().isRunning()) {
+            ProcessManager processManager = computer.getOperatingSystem().getProcessManager();
+            if (budget > 0) {
+                deferred = processManager.update(deadline, progress);
+            } else {
+                processManager.update();
             }
+            processManager.reap();
+        }
+        return deferred;
+    }
+
+    private synchronized int updateProcessesParallel(final List<Computer> computers, final long deadline) {
+
+        if (workerPool == null) {
+            workerPool = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        }
 
-            // Send remaining packets from network interfaces
-            for (Computer computer : simulation.getComputers()) {
-                for (NetworkInterface networkInterface : computer.getHardware(NetworkInterface.class)) {
-                    Packet packet = null;
-                    while ( (packet = networkInterface.nextDeliveryPacket(true)) != null) {
-                        packet.getReceiver().getIp().getHost().receivePacket(packet);
+        // The worker threads don't inherit the current simulation of the tick thread
+        final Simulation simulation = this.simulation;
+
+        // Split the computers into more chunks than workers for balancing the load
+        int chunks = Math.min(computers.size(), parallelism * 4);
+        // Every chunk only writes its own slots, the results are read after all chunks completed
+        final int[] chunkDeferred = new int[chunks];
+        final Computer[] chunkResumeComputer = new Computer[chunks];
+        List<Callable<List<Runnable>>> tasks = new ArrayList<Callable<List<Runnable>>>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int from = computers.size() * chunk / chunks;
+            final int to = computers.size() * (chunk + 1) / chunks;
+            final int index = chunk;
+            tasks.add(new Callable<List<Runnable>>() {
+
+                @Override
+                public List<Runnable> call() {
+
+                    List<Runnable> buffer = new ArrayList<Runnable>();
+                    MUTATION_BUFFER.set(buffer);
+                    CURRENT_SIMULATION.set(simulation);
+                    try {
+                        for (Computer computer : computers.subList(from, to)) {
+                            // Only the first computer (the one whose processes were deferred last) is guaranteed to make progress
+                            int deferred = updateProcesses(computer, deadline, computer == computers.get(0));
+                            if (deferred > 0 && chunkResumeComputer[index] == null) {
+                                chunkResumeComputer[index] = computer;
+                            }
+                            chunkDeferred[index] += deferred;
+                        }
                     }
+                    finally {
+                        MUTATION_BUFFER.remove();
+                        CURRENT_SIMULATION.remove();
+                    }
+                    return buffer;
+                }
+            });
+        }
+
+        List<Future<List<Runnable>>> results;
+        try {
+            results = workerPool.invokeAll(tasks);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+
+        // Apply the buffered mutations in the order of the computers
+        Throwable failure = null;
+        for (Future<List<Runnable>> result : results) {
+            try {
+                for (Runnable mutation : result.get()) {
+                    mutation.run();
+                }
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
                 }
             }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        }
 
-            // TEMPDIS
-            // // Generate new members and computers
-            // int newComputers = simulation.RANDOM.nextInt(ProbabilityUtil.gen(0.008F, simulation.RANDOM) ? 50 : 8) - 5;
-            // if (newComputers > 0) {
-            // List<Computer> computers = SimulationGenerator.generateComputers(simulation, newComputers, simulation.getComputers());
-            // for (Computer computer : computers) {
-            // simulation.addComputer(computer);
-            // }
-            // for (Member member : SimulationGenerator.generateMembers(simulation, computers, simulation.getGroups())) {
-            // simulation.addMember(member);
-            // }
-            // }
-            //
-            // // Clean interests
-            // for (MemberGroup group : simulation.getGroups()) {
-            // for (Interest interest : new ArrayList<Interest>(group.getInterests())) {
-            // if (interest instanceof HasTarget && !simulation.getMembers().contains( ((HasTarget) interest).getTarget())) {
-            // group.removeInterest(interest);
-            // }
-            // }
-            // }
-            // for (Member member : simulation.getMembers()) {
-            // for (Interest interest : new ArrayList<Interest>(member.getBrainData(Interest.class))) {
-            // if (interest instanceof HasTarget && !simulation.getMembers().contains( ((HasTarget) interest).getTarget())) {
-            // member.removeBrainData(interest);
-            // }
-            // }
-            // }
-            //
-            // // Generate global group interests against members with bad reputation
-            // for (MemberGroup group : simulation.getGroups()) {
-            // targetLoop:
-            // for (Member target : simulation.getMembers()) {
-            // for (Interest interest : group.getInterests()) {
-            // if (interest instanceof HasTarget && ((HasTarget) interest).getTarget().equals(target)) {
-            // continue targetLoop;
-            // }
-            // }
-            //
-            // if (group.getReputation(target).getValue() <= -10) {
-            // if (ProbabilityUtil.genPseudo(-group.getReputation(target).getValue() / 20F, simulation.RANDOM)) {
-            // float priority = -group.getReputation(target).getValue() / 400F;
-            // if (priority > 1) {
-            // priority = 1;
-            // }
-            // group.addInterest(new DestroyInterest(priority, target));
-            // }
-            // }
-            // }
-            // }
-            //
-            // // Execute global group interests
-            // for (MemberGroup group : simulation.getGroups()) {
-            // for (Interest interest : new ArrayList<Interest>(group.getInterests())) {
-            // for (Member member : simulation.getMembers()) {
-            // Action action = interest.getAction(simulation, member);
-            // if (action != null) {
-            // if (action.execute(simulation, member)) {
-            // group.removeInterest(interest);
-            // }
-            //
-            // break;
-            // }
-            // }
-            // }
-            // }
-            //
-            // // Simulate members
-            // for (Member member : new ArrayList<Member>(simulation.getMembers())) {
-            // if (member.getAiController() != null) {
-            // member.getAiController().update(simulation);
-            // }
-            // }
+        if (failure != null) {
+            throw new RuntimeException("An exception occurred while executing the parallel process phase", failure);
         }
+
+        int deferred = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (chunkResumeComputer[chunk] != null && resumeComputer == null) {
+                resumeComputer = chunkResumeComputer[chunk];
+            }
+            deferred += chunkDeferred[chunk];
+        }
+        return deferred;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "tick-worker-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
     }
 
 }
@@ -0,0 +1,243 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import com.quartercode.disconnected.util.LatencyHistogram;
+
+/**
+ * The tick statistics store named latency histograms for the tick actions and the phases of a tick, as well as tick overrun counters.
+ * The statistics can be exposed as mbeans on the platform mbean server, so they can be read and reset at runtime (e.g. with jconsole).
+ * Looking up a histogram takes a lock, so code which records every tick should resolve its histograms once and keep them.
+ * 
+ * @see Ticker
+ * @see LatencyHistogram
+ */
+public class TickStatistics implements TickStatisticsMBean {
+
+    /**
+     * The jmx domain all tick statistics mbeans are registered under.
+     */
+    public static final String                  DOMAIN       = "com.quartercode.disconnected";
+
+    private static final Logger                 LOGGER       = Logger.getLogger(TickStatistics.class.getName());
+
+    private final Map<String, LatencyHistogram> histograms   = new LinkedHashMap<String, LatencyHistogram>();
+    private final AtomicLong                    overruns     = new AtomicLong();
+    private final AtomicLong                    droppedTicks = new AtomicLong();
+    private final AtomicLong                    deferrals    = new AtomicLong();
+    private volatile long                       lastDeferrals;
+    private volatile long                       maxDeferrals;
+    private MBeanServer                         server;
+
+    /**
+     * Creates new empty tick statistics.
+     */
+    public TickStatistics() {
+
+    }
+
+    /**
+     * Returns the latency histogram with the given name and creates it if it doesn't exist yet.
+     * If the statistics are registered, a new histogram is registered as well.
+     * 
+     * @param name The name of the latency histogram (e.g. "action.TickSimulator").
+     * @return The latency histogram with the given name.
+     */
+    public synchronized LatencyHistogram getHistogram(String name) {
+
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+
+            if (server != null) {
+                register(histogram, getObjectName(name));
+            }
+        }
+
+        return histogram;
+    }
+
+    @Override
+    public synchronized String[] getHistogramNames() {
+
+        return histograms.keySet().toArray(new String[histograms.size()]);
+    }
+
+    @Override
+    public long getOverruns() {
+
+        return overruns.get();
+    }
+
+    /**
+     * Increments the amount of tick overruns by one.
+     */
+    public void recordOverrun() {
+
+        overruns.incrementAndGet();
+    }
+
+    @Override
+    public long getDroppedTicks() {
+
+        return droppedTicks.get();
+    }
+
+    /**
+     * Adds the given amount of ticks to the amount of dropped ticks.
+     * 
+     * @param dropped The amount of ticks which were dropped.
+     */
+    public void recordDroppedTicks(long dropped) {
+
+        droppedTicks.addAndGet(dropped);
+    }
+
+    @Override
+    public long getDeferrals() {
+
+        return deferrals.get();
+    }
+
+    @Override
+    public long getLastDeferrals() {
+
+        return lastDeferrals;
+    }
+
+    @Override
+    public long getMaxDeferrals() {
+
+        return maxDeferrals;
+    }
+
+    /**
+     * Records the amount of executor updates which were deferred to the next tick because the tick budget was exhausted.
+     * This should only be called by the thread which executes the ticks.
+     * 
+     * @param deferred The amount of deferred executor updates in one tick.
+     */
+    public void recordDeferrals(long deferred) {
+
+        deferrals.addAndGet(deferred);
+        lastDeferrals = deferred;
+        if (deferred > maxDeferrals) {
+            maxDeferrals = deferred;
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+
+        overruns.set(0);
+        droppedTicks.set(0);
+        deferrals.set(0);
+        lastDeferrals = 0;
+        maxDeferrals = 0;
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Registers the statistics and all of their histograms as mbeans on the platform mbean server.
+     * Histograms which are created later on are registered automatically.
+     */
+    public synchronized void register() {
+
+        if (server == null) {
+            server = ManagementFactory.getPlatformMBeanServer();
+
+            register(this, getObjectName(null));
+            for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+                register(histogram.getValue(), getObjectName(histogram.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Unregisters the statistics and all of their histograms from the platform mbean server.
+     */
+    public synchronized void unregister() {
+
+        if (server != null) {
+            unregister(getObjectName(null));
+            for (String name : histograms.keySet()) {
+                unregister(getObjectName(name));
+            }
+
+            server = null;
+        }
+    }
+
+    private void register(Object mbean, ObjectName name) {
+
+        try {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        }
+        catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Can't register tick statistics mbean " + name, e);
+        }
+    }
+
+    private void unregister(ObjectName name) {
+
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Can't unregister tick statistics mbean " + name, e);
+        }
+    }
+
+    private ObjectName getObjectName(String histogram) {
+
+        try {
+            if (histogram == null) {
+                return new ObjectName(DOMAIN + ":type=TickStatistics");
+            } else {
+                return new ObjectName(DOMAIN + ":type=TickStatistics,name=" + ObjectName.quote(histogram));
+            }
+        }
+        catch (JMException e) {
+            throw new IllegalArgumentException("Invalid histogram name: " + histogram, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [overruns=" + overruns + ", droppedTicks=" + droppedTicks + ", histograms=" + histograms + "]";
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run;
+
+/**
+ * The management interface of the {@link TickStatistics}.
+ * 
+ * @see TickStatistics
+ */
+public interface TickStatisticsMBean {
+
+    /**
+     * Returns how often a tick took longer than the tick period.
+     * 
+     * @return The amount of tick overruns.
+     */
+    public long getOverruns();
+
+    /**
+     * Returns the amount of ticks which were dropped because the tick thread couldn't catch up.
+     * 
+     * @return The amount of dropped ticks.
+     */
+    public long getDroppedTicks();
+
+    /**
+     * Returns the amount of executor updates which were deferred to the next tick because the tick budget was exhausted.
+     * 
+     * @return The total amount of deferred executor updates.
+     */
+    public long getDeferrals();
+
+    /**
+     * Returns the amount of executor updates which were deferred in the last tick.
+     * 
+     * @return The amount of deferred executor updates in the last tick.
+     */
+    public long getLastDeferrals();
+
+    /**
+     * Returns the highest amount of executor updates which were deferred in one tick.
+     * 
+     * @return The maximum amount of deferred executor updates per tick.
+     */
+    public long getMaxDeferrals();
+
+    /**
+     * Returns the names of all latency histograms the statistics contain.
+     * 
+     * @return The names of all latency histograms.
+     */
+    public String[] getHistogramNames();
+
+    /**
+     * Resets the overrun and deferral counters and all latency histograms.
+     */
+    public void reset();
+
+}
@@ -23,98 +23,241 @@ import java.util.List;
 
 /**
  * This timer can schedule timer tasks which have to elapse a given delay (in ticks) and then can continue running in given periods.
+ * The tasks are stored in a hierarchical timing wheel, so a tick only touches the tasks which are due in that tick.
+ * The scheduled task object is also the handle for cancelling it again.
  * 
  * @see TimerTask
  */
 public class TickTimer implements TickAction {
 
-    private final List<TimerTask> tasks = new ArrayList<TimerTask>();
+    private static final int    SLOT_BITS = 6;
+    private static final int    SLOTS     = 1 << SLOT_BITS;
+    private static final int    SLOT_MASK = SLOTS - 1;
+    private static final int    LEVELS    = 4;
+
+    private final Bucket[][]    wheels    = new Bucket[LEVELS][SLOTS];
+    private final Bucket        overflow  = new Bucket();
+    private final Bucket        firing    = new Bucket();
+
+    private long                tick;
+    private int                 size;
 
     /**
      * Creates a new empty tick timer.
      */
     public TickTimer() {
 
+        for (Bucket[] wheel : wheels) {
+            for (int slot = 0; slot < wheel.length; slot++) {
+                wheel[slot] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of ticks the timer has elapsed since it was created.
+     * 
+     * @return The amount of elapsed ticks.
+     */
+    public long getTick() {
+
+        return tick;
+    }
+
+    /**
+     * Returns all timer tasks which are currently scheduled.
+     * This walks the whole timer and should not be used on a hot path.
+     * 
+     * @return All timer tasks which are currently scheduled.
+     */
+    public List<TimerTask> getTasks() {
+
+        List<TimerTask> tasks = new ArrayList<TimerTask>(size);
+        for (Bucket[] wheel : wheels) {
+            for (Bucket bucket : wheel) {
+                bucket.collect(tasks);
+            }
+        }
+        overflow.collect(tasks);
+        firing.collect(tasks);
+        return tasks;
     }
 
     /**
      * Schedules a given timer task. Every important parameter for scheduling (e.g. the delay) is set in the task object.
+     * The first run happens after the delay elapsed (at least one tick), every following run after the period elapsed.
      * 
      * @param task The timer task to schedule.
+     * @throws IllegalStateException The given timer task is already scheduled.
      */
     public void schedule(TimerTask task) {
 
-        tasks.add(task);
+        if (task.timer != null) {
+            throw new IllegalStateException("Timer task is already scheduled: " + task);
+        }
+
+        task.timer = this;
+        task.cancelled = false;
+        task.scheduledTick = tick;
+        task.deadline = tick + Math.max(task.getDelay(), 1);
+        insert(task);
+        size++;
     }
 
     /**
      * Cancels a given timer task so it wont elapse more ticks.
+     * This takes constant time because the task knows where it is stored.
      * 
      * @param task The timer task to cancel.
      */
     public void cancel(TimerTask task) {
 
-        tasks.remove(task);
+        if (task.timer == this) {
+            // The bucket is null if the task is cancelled while it's running
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+            }
+            release(task);
+            task.cancelled = true;
+        }
     }
 
     /**
-     * Elapses one tick on every timer task and calls the tasks if the timing condition is true.
+     * Elapses one tick and calls the timer tasks which are due in that tick.
+     * Periodic tasks are scheduled again after they were called.
      */
     @Override
     public void update() {
 
-        for (TimerTask task : new ArrayList<TimerTask>(tasks)) {
-            if (task.getElapsed() < 0) {
-                cancel(task);
-            } else {
-                task.elapse();
+        tick++;
+
+        // Move the tasks of the higher levels down if a lower level completed a rotation
+        int index = (int) (tick & SLOT_MASK);
+        if (index == 0) {
+            cascade(1);
+        }
+
+        // Detach the due tasks, so tasks which are scheduled while running can't be called in the same tick
+        Bucket due = wheels[0][index];
+        while (due.head != null) {
+            TimerTask task = due.head;
+            due.remove(task);
+            firing.add(task);
+        }
+
+        while (firing.head != null) {
+            TimerTask task = firing.head;
+            firing.remove(task);
 
-                if (task.getPeriod() <= 0 && task.getElapsed() == task.getDelay()) {
-                    task.run();
-                    cancel(task);
-                } else if (task.getPeriod() > 0 && (task.getElapsed() - task.getDelay()) % task.getPeriod() == 0) {
-                    task.run();
+            task.run();
+
+            // A task which cancelled and scheduled itself again while running is already stored in a bucket
+            if (task.timer == this && !task.cancelled && task.bucket == null) {
+                if (task.getPeriod() > 0) {
+                    task.deadline += task.getPeriod();
+                    insert(task);
+                } else {
+                    release(task);
                 }
             }
         }
     }
 
-    @Override
-    public int hashCode() {
+    private void insert(TimerTask task) {
+
+        long delta = task.deadline - tick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << SLOT_BITS * (level + 1)) {
+                wheels[level][(int) (task.deadline >>> SLOT_BITS * level & SLOT_MASK)].add(task);
+                return;
+            }
+        }
 
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (tasks == null ? 0 : tasks.hashCode());
-        return result;
+        overflow.add(task);
     }
 
-    @Override
-    public boolean equals(Object obj) {
+    private void cascade(int level) {
 
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        TickTimer other = (TickTimer) obj;
-        if (tasks == null) {
-            if (other.tasks != null) {
-                return false;
+        if (level == LEVELS) {
+            // Every slot of the top level completed a rotation, the overflowing tasks might be in range now
+            redistribute(overflow);
+        } else {
+            int index = (int) (tick >>> SLOT_BITS * level & SLOT_MASK);
+            if (index == 0) {
+                cascade(level + 1);
             }
-        } else if (!tasks.equals(other.tasks)) {
-            return false;
+            redistribute(wheels[level][index]);
+        }
+    }
+
+    private void redistribute(Bucket bucket) {
+
+        TimerTask task = bucket.head;
+        bucket.head = null;
+        while (task != null) {
+            TimerTask next = task.next;
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+            insert(task);
+            task = next;
         }
-        return true;
+    }
+
+    private void release(TimerTask task) {
+
+        task.elapsed = (int) (tick - task.scheduledTick);
+        task.timer = null;
+        size--;
     }
 
     @Override
     public String toString() {
 
-        return getClass().getName() + " [tasks=" + tasks + "]";
+        return getClass().getName() + " [tick=" + tick + ", tasks=" + size + "]";
+    }
+
+    /**
+     * A bucket is a doubly linked list of timer tasks which allows to remove a known task in constant time.
+     */
+    private static class Bucket {
+
+        private TimerTask head;
+
+        private void add(TimerTask task) {
+
+            task.bucket = this;
+            task.prev = null;
+            task.next = head;
+            if (head != null) {
+                head.prev = task;
+            }
+            head = task;
+        }
+
+        private void remove(TimerTask task) {
+
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+        }
+
+        private void collect(List<TimerTask> tasks) {
+
+            for (TimerTask task = head; task != null; task = task.next) {
+                tasks.add(task);
+            }
+        }
+
     }
 
     /**
@@ -126,6 +269,14 @@ public class TickTimer implements TickAction {
         private final int period;
 
         private int       elapsed;
+        private boolean   cancelled;
+
+        private TickTimer timer;
+        private long      scheduledTick;
+        private long      deadline;
+        private Bucket    bucket;
+        private TimerTask prev;
+        private TimerTask next;
 
         /**
          * Creates a new abstract timer task and sets the delay after the task should be called.
@@ -171,13 +322,20 @@ public class TickTimer implements TickAction {
         }
 
         /**
-         * Returns the amount of ticks that have elapsed.
+         * Returns the amount of ticks that have elapsed since the task was scheduled.
+         * If the task was cancelled, this returns -1.
          * 
          * @return The amount of ticks that have elapsed.
          */
         public int getElapsed() {
 
-            return elapsed;
+            if (cancelled) {
+                return -1;
+            } else if (timer != null) {
+                return (int) (timer.tick - scheduledTick);
+            } else {
+                return elapsed;
+            }
         }
 
         /**
@@ -185,12 +343,10 @@ public class TickTimer implements TickAction {
          */
         public void cancel() {
 
-            elapsed = -1;
-        }
-
-        private void elapse() {
-
-            elapsed++;
+            if (timer != null) {
+                timer.cancel(this);
+            }
+            cancelled = true;
         }
 
         @Override
@@ -199,7 +355,7 @@ public class TickTimer implements TickAction {
             final int prime = 31;
             int result = 1;
             result = prime * result + delay;
-            result = prime * result + elapsed;
+            result = prime * result + getElapsed();
             result = prime * result + period;
             return result;
         }
@@ -220,7 +376,7 @@ public class TickTimer implements TickAction {
             if (delay != other.delay) {
                 return false;
             }
-            if (elapsed != other.elapsed) {
+            if (getElapsed() != other.getElapsed()) {
                 return false;
             }
             if (period != other.period) {
@@ -232,7 +388,7 @@ public class TickTimer implements TickAction {
         @Override
         public String toString() {
 
-            return getClass().getName() + " [delay=" + delay + ", period=" + period + ", elapsed=" + elapsed + "]";
+            return getClass().getName() + " [delay=" + delay + ", period=" + period + ", elapsed=" + getElapsed() + "]";
         }
 
     }
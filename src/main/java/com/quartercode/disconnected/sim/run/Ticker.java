@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang.Validate;
+import com.quartercode.disconnected.util.LatencyHistogram;
 
 /**
  * This class implements the controls for the tick system which then calls several actions.
@@ -44,11 +45,40 @@ public class Ticker {
      */
     public static final int        DEFAULT_TICKS_PER_SECOND = 1000 / DEFAULT_DELAY;
 
+    /**
+     * The maximum amount of ticks the ticker will execute directly after each other for catching up by default.
+     */
+    public static final int        DEFAULT_MAX_CATCH_UP     = 5;
+
     private static final Logger    LOGGER                   = Logger.getLogger(Ticker.class.getName());
 
+    /**
+     * The tick mode defines how the tick thread schedules the next tick after the actions of the current one were executed.
+     */
+    public static enum TickMode {
+
+        /**
+         * The thread waits the full delay after every tick.
+         * The actual tick period is the delay plus the time the actions needed.
+         * This is the default mode.
+         */
+        FIXED_DELAY,
+        /**
+         * The thread targets a fixed period which is equal to the delay.
+         * The time the actions needed is subtracted from the waiting time.
+         * If the thread falls behind, it executes a limited amount of catch-up ticks without waiting.
+         */
+        FIXED_RATE;
+
+    }
+
     private TickThread             thread;
     private final List<TickAction> actions                  = new ArrayList<TickAction>();
     private int                    delay                    = DEFAULT_DELAY;
+    private TickMode               mode                     = TickMode.FIXED_DELAY;
+    private int                    maxCatchUp               = DEFAULT_MAX_CATCH_UP;
+    private final TickStatistics   statistics               = new TickStatistics();
+    private volatile int           actionsVersion;
 
     /**
      * Creates a new ticker without any tick actions.
@@ -110,6 +140,7 @@ public class Ticker {
         }
 
         actions.add(action);
+        actionsVersion++;
     }
 
     /**
@@ -120,6 +151,7 @@ public class Ticker {
     public void removeAction(TickAction action) {
 
         actions.remove(action);
+        actionsVersion++;
     }
 
     /**
@@ -143,6 +175,61 @@ public class Ticker {
         this.delay = delay;
     }
 
+    /**
+     * Returns the tick mode which defines how the tick thread schedules the next tick.
+     * 
+     * @return The tick mode which defines how the tick thread schedules the next tick.
+     */
+    public TickMode getMode() {
+
+        return mode;
+    }
+
+    /**
+     * Sets the tick mode which defines how the tick thread schedules the next tick.
+     * 
+     * @param mode The new tick mode which defines how the tick thread schedules the next tick.
+     */
+    public void setMode(TickMode mode) {
+
+        Validate.notNull(mode, "Tick mode can't be null");
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the maximum amount of ticks the thread executes directly after each other if it falls behind.
+     * This is only used in the {@link TickMode#FIXED_RATE} mode.
+     * 
+     * @return The maximum amount of catch-up ticks.
+     */
+    public int getMaxCatchUp() {
+
+        return maxCatchUp;
+    }
+
+    /**
+     * Sets the maximum amount of ticks the thread executes directly after each other if it falls behind.
+     * This is only used in the {@link TickMode#FIXED_RATE} mode.
+     * 
+     * @param maxCatchUp The new maximum amount of catch-up ticks.
+     */
+    public void setMaxCatchUp(int maxCatchUp) {
+
+        Validate.isTrue(maxCatchUp >= 0, "Max catch-up must be >= 0: ", maxCatchUp);
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    /**
+     * Returns the tick statistics which record the latencies of the tick actions and the tick overruns.
+     * Call {@link TickStatistics#register()} for exposing them as mbeans.
+     * 
+     * @return The tick statistics of the ticker.
+     */
+    public TickStatistics getStatistics() {
+
+        return statistics;
+    }
+
     /**
      * Returns if the tick thread is currently running.
      * 
@@ -187,7 +274,16 @@ public class Ticker {
      */
     public static class TickThread extends Thread {
 
-        private final Ticker ticker;
+        private final Ticker       ticker;
+        private final TickSchedule schedule;
+
+        // Only the tick thread writes the counter, so volatile is enough for reading it from other threads
+        private volatile long      ticks;
+
+        private int                actionsVersion;
+        private TickAction[]       actions;
+        private LatencyHistogram[] actionHistograms;
+        private LatencyHistogram   tickHistogram;
 
         /**
          * Creates a new tick thread and sets the ticker to use the informations from.
@@ -199,6 +295,7 @@ public class Ticker {
             super("tick");
 
             this.ticker = ticker;
+            schedule = new TickSchedule("Tick thread", ticker.getStatistics());
         }
 
         /**
@@ -211,22 +308,57 @@ public class Ticker {
             return ticker;
         }
 
+        /**
+         * Returns the amount of ticks the thread executed since it was started.
+         * 
+         * @return The amount of executed ticks.
+         */
+        public long getTicks() {
+
+            return ticks;
+        }
+
+        /**
+         * Returns how often a tick took longer than the tick period.
+         * This is only counted in the {@link TickMode#FIXED_RATE} mode.
+         * 
+         * @return The amount of tick overruns.
+         */
+        public long getOverruns() {
+
+            return schedule.getOverruns();
+        }
+
+        /**
+         * Returns the amount of ticks which were dropped because the catch-up limit was reached.
+         * This is only counted in the {@link TickMode#FIXED_RATE} mode.
+         * 
+         * @return The amount of dropped ticks.
+         */
+        public long getDroppedTicks() {
+
+            return schedule.getDroppedTicks();
+        }
+
         @Override
         public void run() {
 
+            schedule.reset(System.nanoTime());
+
             while (!isInterrupted()) {
                 synchronized (this) {
-                    for (TickAction action : new ArrayList<TickAction>(ticker.getActions())) {
-                        try {
-                            action.update();
-                        }
-                        catch (Throwable t) {
-                            LOGGER.log(Level.SEVERE, "An exception occurred while executing tick action update (tick action " + action.getClass().getName() + ")", t);
-                        }
+                    tick();
+
+                    long waitTime;
+                    if (ticker.getMode() == TickMode.FIXED_RATE) {
+                        waitTime = schedule.advance(System.nanoTime(), ticker.getDelay() * 1000000L, ticker.getMaxCatchUp()) / 1000000L;
+                    } else {
+                        waitTime = ticker.getDelay();
+                        schedule.reset(System.nanoTime());
                     }
 
                     try {
-                        Thread.sleep(ticker.getDelay());
+                        Thread.sleep(waitTime);
                     }
                     catch (InterruptedException e) {
                         LOGGER.log(Level.SEVERE, "Tick thread has been interrupted", e);
@@ -235,6 +367,35 @@ public class Ticker {
             }
         }
 
+        private void tick() {
+
+            // The actions and their histograms are only resolved again if the actions changed
+            if (actionsVersion != ticker.actionsVersion || actions == null) {
+                actionsVersion = ticker.actionsVersion;
+                actions = ticker.getActions().toArray(new TickAction[0]);
+                actionHistograms = new LatencyHistogram[actions.length];
+                for (int index = 0; index < actions.length; index++) {
+                    actionHistograms[index] = ticker.getStatistics().getHistogram("action." + actions[index].getClass().getSimpleName());
+                }
+                tickHistogram = ticker.getStatistics().getHistogram("tick");
+            }
+
+            long tickStart = System.nanoTime();
+            for (int index = 0; index < actions.length; index++) {
+                long actionStart = System.nanoTime();
+                try {
+                    actions[index].update();
+                }
+                catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, "An exception occurred while executing tick action update (tick action " + actions[index].getClass().getName() + ")", t);
+                }
+                actionHistograms[index].record(System.nanoTime() - actionStart);
+            }
+
+            tickHistogram.record(System.nanoTime() - tickStart);
+            ticks++;
+        }
+
     }
 
 }
@@ -0,0 +1,143 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import com.quartercode.disconnected.sim.run.TickStatistics;
+
+/**
+ * The script cache statistics count how often the {@link ScriptExecutor} found a compiled script in its cache.
+ * The statistics can be exposed as an mbean on the platform mbean server, next to the {@link TickStatistics}.
+ * 
+ * @see ScriptExecutor#getCacheStatistics()
+ */
+public class ScriptCacheStatistics implements ScriptCacheStatisticsMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(ScriptCacheStatistics.class.getName());
+
+    private final AtomicLong    hits   = new AtomicLong();
+    private final AtomicLong    misses = new AtomicLong();
+    private MBeanServer         server;
+
+    /**
+     * Creates new empty script cache statistics.
+     */
+    public ScriptCacheStatistics() {
+
+    }
+
+    @Override
+    public long getHits() {
+
+        return hits.get();
+    }
+
+    /**
+     * Increments the amount of script cache hits by one.
+     */
+    public void recordHit() {
+
+        hits.incrementAndGet();
+    }
+
+    @Override
+    public long getMisses() {
+
+        return misses.get();
+    }
+
+    /**
+     * Increments the amount of script cache misses by one.
+     */
+    public void recordMiss() {
+
+        misses.incrementAndGet();
+    }
+
+    @Override
+    public double getHitRate() {
+
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public void reset() {
+
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Registers the statistics as an mbean on the platform mbean server.
+     */
+    public synchronized void register() {
+
+        if (server == null) {
+            server = ManagementFactory.getPlatformMBeanServer();
+
+            try {
+                if (!server.isRegistered(getObjectName())) {
+                    server.registerMBean(this, getObjectName());
+                }
+            }
+            catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Can't register script cache statistics mbean", e);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the statistics from the platform mbean server.
+     */
+    public synchronized void unregister() {
+
+        if (server != null) {
+            try {
+                if (server.isRegistered(getObjectName())) {
+                    server.unregisterMBean(getObjectName());
+                }
+            }
+            catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Can't unregister script cache statistics mbean", e);
+            }
+
+            server = null;
+        }
+    }
+
+    private ObjectName getObjectName() throws JMException {
+
+        return new ObjectName(TickStatistics.DOMAIN + ":type=ScriptCache");
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [hits=" + hits + ", misses=" + misses + "]";
+    }
+
+}
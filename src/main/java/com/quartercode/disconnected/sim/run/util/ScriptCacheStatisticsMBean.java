@@ -0,0 +1,55 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.sim.run.util;
+
+/**
+ * The management interface of the {@link ScriptCacheStatistics}.
+ * 
+ * @see ScriptCacheStatistics
+ */
+public interface ScriptCacheStatisticsMBean {
+
+    /**
+     * Returns how often a script was executed with an already compiled version from the script cache.
+     * 
+     * @return The amount of script cache hits.
+     */
+    public long getHits();
+
+    /**
+     * Returns how often a script had to be compiled because it wasn't in the script cache.
+     * 
+     * @return The amount of script cache misses.
+     */
+    public long getMisses();
+
+    /**
+     * Returns the ratio of script executions which used an already compiled script from the script cache.
+     * If no script was executed yet, this returns 0.
+     * 
+     * @return The script cache hit rate (between 0 and 1).
+     */
+    public double getHitRate();
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void reset();
+
+}
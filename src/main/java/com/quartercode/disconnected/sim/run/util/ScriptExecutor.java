@@ -19,21 +19,105 @@
 package com.quartercode.disconnected.sim.run.util;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.member.Member;
+import com.quartercode.disconnected.sim.run.TickStatistics;
+import com.quartercode.disconnected.util.LatencyHistogram;
 
 /**
- * This utility class executes scripts which change certain parameters of a computer or deliver data
+ * This utility class executes scripts which change certain parameters of a computer or deliver data.
+ * Every thread reuses its own script engine and compiles every script source only once, so repeated scripts (e.g. of vulnerabilities and payloads) don't pay the engine construction and parse costs again.
+ * The compile and evaluation times can be recorded into tick statistics as "script.compile" and "script.eval".
+ * The cache hits and misses are counted in separate {@link ScriptCacheStatistics}.
  */
 public class ScriptExecutor {
 
-    private static final Logger              LOGGER                = Logger.getLogger(ScriptExecutor.class.getName());
-    private static final ScriptEngineManager SCRIPT_ENGINE_MANAGER = new ScriptEngineManager();
+    /**
+     * The maximum amount of compiled scripts every thread caches.
+     * If the cache is full, the least recently used script is dropped.
+     */
+    public static final int                     CACHE_SIZE            = 256;
+
+    private static final Logger                 LOGGER                = Logger.getLogger(ScriptExecutor.class.getName());
+    private static final ScriptEngineManager    SCRIPT_ENGINE_MANAGER = new ScriptEngineManager();
+    private static final ThreadLocal<Engine>    ENGINES               = new ThreadLocal<Engine>();
+    private static final ScriptCacheStatistics  CACHE_STATISTICS      = new ScriptCacheStatistics();
+
+    private static volatile TickStatistics      statistics;
+    private static volatile LatencyHistogram    compileHistogram;
+    private static volatile LatencyHistogram    evalHistogram;
+    private static volatile ScriptEngineFactory engineFactory;
+
+    /**
+     * Returns the tick statistics the compile and evaluation times of scripts are recorded in.
+     * 
+     * @return The tick statistics the script latencies are recorded in.
+     */
+    public static TickStatistics getStatistics() {
+
+        return statistics;
+    }
+
+    /**
+     * Sets the tick statistics the compile and evaluation times of scripts are recorded in.
+     * The latencies are recorded as "script.compile" and "script.eval".
+     * If this is null (default), no latencies are recorded.
+     * 
+     * @param statistics The new tick statistics the script latencies are recorded in.
+     */
+    public static void setStatistics(TickStatistics statistics) {
+
+        // The histograms are only looked up once, so recording doesn't take the statistics lock on every execution
+        compileHistogram = statistics == null ? null : statistics.getHistogram("script.compile");
+        evalHistogram = statistics == null ? null : statistics.getHistogram("script.eval");
+        ScriptExecutor.statistics = statistics;
+    }
+
+    /**
+     * Returns the factory which creates the script engines the threads use.
+     * If this is null (default), the JavaScript engine of the platform is used.
+     * 
+     * @return The factory which creates the script engines.
+     */
+    public static ScriptEngineFactory getEngineFactory() {
+
+        return engineFactory;
+    }
+
+    /**
+     * Sets the factory which creates the script engines the threads use.
+     * Every thread replaces its engine (and drops its compiled scripts) with one of the new factory before it executes the next script.
+     * If this is null (default), the JavaScript engine of the platform is used.
+     * 
+     * @param engineFactory The new factory which creates the script engines.
+     */
+    public static void setEngineFactory(ScriptEngineFactory engineFactory) {
+
+        ScriptExecutor.engineFactory = engineFactory;
+    }
+
+    /**
+     * Returns the statistics which count how often a script was found in the cache of compiled scripts.
+     * Call {@link ScriptCacheStatistics#register()} for exposing them as an mbean.
+     * 
+     * @return The script cache statistics.
+     */
+    public static ScriptCacheStatistics getCacheStatistics() {
+
+        return CACHE_STATISTICS;
+    }
 
     /**
      * Executes the given script on the given member in the given simulation.
@@ -46,16 +130,29 @@ public class ScriptExecutor {
      */
     public static void execute(String script, Simulation simulation, Member member, Member causer) {
 
-        ScriptEngine engine = SCRIPT_ENGINE_MANAGER.getEngineByName("JavaScript");
+        Engine engine = getEngine();
+        if (engine == null) {
+            LOGGER.severe("Can't execute the following script on member \"" + member.getName() + "\" because there's no JavaScript engine available:\n" + script);
+            return;
+        }
 
         try {
-            engine.put("simulation", simulation);
-            engine.put("member", member);
-            engine.put("computer", member.getComputer());
-            engine.put("causer", causer);
-            engine.put("causerComputer", causer.getComputer());
+            // Every execution gets new bindings, so the variables of one script can't leak into the next one
+            Bindings bindings = engine.engine.createBindings();
+            bindings.put("simulation", simulation);
+            bindings.put("member", member);
+            bindings.put("computer", member.getComputer());
+            bindings.put("causer", causer);
+            bindings.put("causerComputer", causer.getComputer());
 
-            engine.eval(script);
+            CompiledScript compiled = engine.getCompiled(script);
+            long start = System.nanoTime();
+            if (compiled != null) {
+                compiled.eval(bindings);
+            } else {
+                engine.engine.eval(script, bindings);
+            }
+            record(evalHistogram, start);
         }
         catch (ScriptException e) {
             LOGGER.log(Level.SEVERE, "Can't execute the following script on member \"" + member.getName() + "\", caused by member \"" + causer.getName() + "\":\n" + script, e);
@@ -78,8 +175,78 @@ public class ScriptExecutor {
         }
     }
 
+    private static Engine getEngine() {
+
+        // Script engines aren't required to be thread-safe, so every thread (e.g. every tick worker) uses its own one
+        ScriptEngineFactory factory = engineFactory;
+        Engine engine = ENGINES.get();
+        if (engine == null || engine.factory != factory) {
+            ScriptEngine scriptEngine = factory == null ? SCRIPT_ENGINE_MANAGER.getEngineByName("JavaScript") : factory.getScriptEngine();
+            if (scriptEngine == null) {
+                return null;
+            }
+            engine = new Engine(factory, scriptEngine);
+            ENGINES.set(engine);
+        }
+        return engine;
+    }
+
+    private static void record(LatencyHistogram histogram, long start) {
+
+        if (histogram != null) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
     private ScriptExecutor() {
 
     }
 
+    /**
+     * An engine wraps a script engine which is used by one thread and caches the scripts it compiled.
+     */
+    private static class Engine {
+
+        private final ScriptEngineFactory         factory;
+        private final ScriptEngine                engine;
+        private final Map<String, CompiledScript> compiled;
+
+        private Engine(ScriptEngineFactory factory, ScriptEngine engine) {
+
+            this.factory = factory;
+            this.engine = engine;
+            compiled = new LinkedHashMap<String, CompiledScript>(16, 0.75F, true) {
+
+                private static final long serialVersionUID = -4387620574432101262L;
+
+                @Override
+                protected boolean removeEldestEntry(Entry<String, CompiledScript> eldest) {
+
+                    return size() > CACHE_SIZE;
+                }
+            };
+        }
+
+        private CompiledScript getCompiled(String script) throws ScriptException {
+
+            // Engines which can't compile scripts evaluate the source every time
+            if (! (engine instanceof Compilable)) {
+                return null;
+            }
+
+            CompiledScript compiledScript = compiled.get(script);
+            if (compiledScript != null) {
+                CACHE_STATISTICS.recordHit();
+            } else {
+                CACHE_STATISTICS.recordMiss();
+                long start = System.nanoTime();
+                compiledScript = ((Compilable) engine).compile(script);
+                record(compileHistogram, start);
+                compiled.put(script, compiledScript);
+            }
+            return compiledScript;
+        }
+
+    }
+
 }
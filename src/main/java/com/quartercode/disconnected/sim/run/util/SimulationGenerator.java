@@ -90,9 +90,9 @@ public class SimulationGenerator {
         for (MemberGroup group : simulation.getGroups()) {
             for (Member member : simulation.getMembers()) {
                 if (group.getMembers().contains(member)) {
-                    group.getReputation(member).addValue(simulation.RANDOM.nextInt(10));
+                    group.addReputationValue(member, simulation.RANDOM.nextInt(10));
                 } else {
-                    group.getReputation(member).subtractValue(simulation.RANDOM.nextInt(12));
+                    group.addReputationValue(member, -simulation.RANDOM.nextInt(12));
                 }
             }
         }
@@ -158,7 +158,7 @@ public class SimulationGenerator {
 
             HardDrive hardDrive = new HardDrive(computer, "TheHardDrive 1TB", new Version(1, 2, 0), null, ByteUnit.BYTE.convert(1, ByteUnit.TERABYTE));
             hardware.add(hardDrive);
-            fillFileSystem(hardDrive.getFileSystem());
+            hardDrive.getFileSystem().setBase(getSystemImage(simulation));
 
             NetworkInterface networkInterface = new NetworkInterface(computer, "NI FiberScore Ultimate", new Version(1, 2, 0), null);
             generateIP(networkInterface, simulation);
@@ -197,7 +197,19 @@ public class SimulationGenerator {
         return computers;
     }
 
-    // Temporary method for generating the kernel and some basic programs
+    // Temporary method for getting the image with the kernel and some basic programs every computer uses
+    private static FileSystem getSystemImage(Simulation simulation) {
+
+        FileSystem image = simulation.getImage("system");
+        if (image == null) {
+            image = new FileSystem("system", ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+            fillFileSystem(image);
+            image.setReadOnly(true);
+            simulation.addImage(image);
+        }
+        return image;
+    }
+
     private static void fillFileSystem(FileSystem fileSystem) {
 
         // Generate kernel file (temp)
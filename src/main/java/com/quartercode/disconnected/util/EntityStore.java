@@ -0,0 +1,338 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.util;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import org.apache.commons.lang.Validate;
+
+/**
+ * The entity store is a list of entities which are compared by identity and can be added and removed in constant time.
+ * Every stored entity gets a stable integer handle which doesn't change until the entity is removed.
+ * The slots of removed handles are reused, but every reuse changes the generation which is part of the handle, so an old handle doesn't find the new entity.
+ * Removed entities leave a tombstone which is dropped when the store is compacted, which happens if there are more tombstones than entities.
+ * 
+ * Iterators work on a snapshot of the store, so the tick thread and the graphics thread can iterate while the store is changed.
+ * Other than a copy-on-write list, the store only copies its elements if an entity is removed while an unfinished iterator still uses them.
+ * An entity can only be stored once, adding it again doesn't change the store.
+ * 
+ * @param <T> The type of the entities the store holds.
+ */
+public class EntityStore<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int           MIN_CAPACITY    = 8;
+    private static final int           SLOT_BITS       = 22;
+    private static final int           SLOT_MASK       = (1 << SLOT_BITS) - 1;
+    private static final int           GENERATION_MASK = (1 << 31 - SLOT_BITS) - 1;
+
+    private final Map<Object, Integer> handleMap       = new IdentityHashMap<Object, Integer>();
+    private Object[]                   elements        = new Object[MIN_CAPACITY];
+    private int[]                      handles         = new int[MIN_CAPACITY];
+    private int                        end;
+    private int                        size;
+
+    private int[]                      indexes         = new int[MIN_CAPACITY];
+    private int[]                      generations     = new int[MIN_CAPACITY];
+    private int[]                      freeSlots       = new int[MIN_CAPACITY];
+    private int                        slots;
+    private int                        freeCount;
+
+    private int                        readers;
+
+    /**
+     * Creates a new empty entity store.
+     */
+    public EntityStore() {
+
+    }
+
+    /**
+     * Stores the given entity and returns its handle.
+     * If the entity is already stored, its existing handle is returned.
+     * 
+     * @param entity The entity to store.
+     * @return The handle of the stored entity.
+     */
+    public synchronized int put(T entity) {
+
+        Validate.notNull(entity, "Entity store can't hold null");
+
+        Integer existing = handleMap.get(entity);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (end == elements.length) {
+            resize(Math.max(MIN_CAPACITY, size * 2));
+        }
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            Validate.isTrue(slots <= SLOT_MASK, "Entity store can't hold more than " + (SLOT_MASK + 1) + " entities");
+            if (slots == indexes.length) {
+                indexes = grow(indexes);
+                generations = grow(generations);
+                freeSlots = grow(freeSlots);
+            }
+            slot = slots++;
+        }
+
+        // Appending never changes the part of the elements an existing snapshot can see
+        int handle = generations[slot] << SLOT_BITS | slot;
+        elements[end] = entity;
+        handles[end] = handle;
+        indexes[slot] = end;
+        handleMap.put(entity, handle);
+        end++;
+        size++;
+        return handle;
+    }
+
+    /**
+     * Removes the entity with the given handle from the store.
+     * 
+     * @param handle The handle of the entity to remove.
+     * @return True if there was an entity with the given handle.
+     */
+    public synchronized boolean removeHandle(int handle) {
+
+        int slot = getSlot(handle);
+        if (slot < 0) {
+            return false;
+        }
+
+        // Only copy the elements if an unfinished iterator might still read them
+        if (readers > 0) {
+            elements = elements.clone();
+            readers = 0;
+        }
+
+        int index = indexes[slot];
+        handleMap.remove(elements[index]);
+        elements[index] = null;
+        freeSlot(slot);
+        size--;
+
+        if (end - size > size) {
+            resize(Math.max(MIN_CAPACITY, size * 2));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the handle of the given entity.
+     * 
+     * @param entity The entity whose handle should be returned.
+     * @return The handle of the given entity, or -1 if the entity isn't stored.
+     */
+    public synchronized int getHandle(Object entity) {
+
+        Integer handle = handleMap.get(entity);
+        return handle == null ? -1 : handle;
+    }
+
+    /**
+     * Returns the entity which has the given handle.
+     * 
+     * @param handle The handle of the entity to return.
+     * @return The entity which has the given handle, or null if there is no such entity.
+     */
+    @SuppressWarnings ("unchecked")
+    public synchronized T getByHandle(int handle) {
+
+        int slot = getSlot(handle);
+        return slot < 0 ? null : (T) elements[indexes[slot]];
+    }
+
+    private int getSlot(int handle) {
+
+        int slot = handle & SLOT_MASK;
+        if (handle < 0 || slot >= slots || indexes[slot] < 0 || generations[slot] != handle >>> SLOT_BITS) {
+            return -1;
+        }
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+
+        indexes[slot] = -1;
+        generations[slot] = generations[slot] + 1 & GENERATION_MASK;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static int[] grow(int[] array) {
+
+        int[] newArray = new int[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private void resize(int capacity) {
+
+        // Compacting always uses new arrays, so existing snapshots aren't changed
+        Object[] newElements = new Object[capacity];
+        int[] newHandles = new int[capacity];
+        int newEnd = 0;
+        for (int index = 0; index < end; index++) {
+            if (elements[index] != null) {
+                newElements[newEnd] = elements[index];
+                newHandles[newEnd] = handles[index];
+                indexes[handles[index] & SLOT_MASK] = newEnd;
+                newEnd++;
+            }
+        }
+
+        elements = newElements;
+        handles = newHandles;
+        end = newEnd;
+        readers = 0;
+    }
+
+    private synchronized void release(Object[] snapshot) {
+
+        // Iterators over older elements don't count, the current elements were already copied for them
+        if (snapshot == elements && readers > 0) {
+            readers--;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+
+        return size;
+    }
+
+    @SuppressWarnings ("unchecked")
+    @Override
+    public synchronized T get(int index) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        if (end != size) {
+            resize(elements.length);
+        }
+        return (T) elements[index];
+    }
+
+    @Override
+    public synchronized boolean add(T entity) {
+
+        int oldSize = size();
+        put(entity);
+        return size() != oldSize;
+    }
+
+    @Override
+    public synchronized T remove(int index) {
+
+        T entity = get(index);
+        removeHandle(handles[index]);
+        return entity;
+    }
+
+    @Override
+    public synchronized boolean remove(Object entity) {
+
+        Integer handle = handleMap.get(entity);
+        return handle != null && removeHandle(handle);
+    }
+
+    @Override
+    public synchronized boolean contains(Object entity) {
+
+        return handleMap.containsKey(entity);
+    }
+
+    @Override
+    public synchronized int indexOf(Object entity) {
+
+        Integer handle = handleMap.get(entity);
+        if (handle == null) {
+            return -1;
+        }
+
+        if (end != size) {
+            resize(elements.length);
+        }
+        return indexes[handle & SLOT_MASK];
+    }
+
+    @Override
+    public int lastIndexOf(Object entity) {
+
+        return indexOf(entity);
+    }
+
+    @Override
+    public synchronized void clear() {
+
+        handleMap.clear();
+        elements = new Object[MIN_CAPACITY];
+        handles = new int[MIN_CAPACITY];
+        end = 0;
+        size = 0;
+        readers = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (indexes[slot] >= 0) {
+                freeSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the store.
+     * Changes which are made after the iterator was created aren't visible to it, and it doesn't support removing entities.
+     * Until the iterator is exhausted, removing an entity copies the elements once.
+     * 
+     * @return An iterator over a snapshot of the store.
+     */
+    @Override
+    public synchronized Iterator<T> iterator() {
+
+        readers++;
+        final Object[] snapshot = elements;
+        final int snapshotEnd = end;
+        return new LookaheadIterator<T>() {
+
+            private int index;
+
+            @SuppressWarnings ("unchecked")
+            @Override
+            protected T computeNext() {
+
+                while (index < snapshotEnd) {
+                    Object element = snapshot[index++];
+                    if (element != null) {
+                        return (T) element;
+                    }
+                }
+                release(snapshot);
+                return null;
+            }
+        };
+    }
+
+}
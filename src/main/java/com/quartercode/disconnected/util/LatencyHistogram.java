@@ -0,0 +1,172 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.lang.Validate;
+
+/**
+ * A latency histogram records positive values (e.g. nanosecond durations) into log-linear buckets.
+ * Every power of two is split into 32 linear sub-buckets, so a percentile is accurate to about 3% with a fixed memory footprint.
+ * Recording is cheap and doesn't allocate, the statistics can be read and reset from other threads at the same time.
+ * 
+ * @see LatencyHistogramMBean
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int      SUB_BUCKET_BITS = 5;
+    private static final int      SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+    private static final int      BUCKETS         = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts          = new AtomicLongArray(BUCKETS);
+    private final AtomicLong      count           = new AtomicLong();
+    private final AtomicLong      sum             = new AtomicLong();
+    private final AtomicLong      max             = new AtomicLong();
+
+    /**
+     * Creates a new empty latency histogram.
+     */
+    public LatencyHistogram() {
+
+    }
+
+    /**
+     * Records a new value into the histogram.
+     * Negative values are recorded as 0.
+     * 
+     * @param value The value to record.
+     */
+    public void record(long value) {
+
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(getIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // Retry until the maximum is updated or another thread recorded a larger value
+        }
+    }
+
+    @Override
+    public long getCount() {
+
+        return count.get();
+    }
+
+    @Override
+    public long getMean() {
+
+        long count = this.count.get();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    @Override
+    public long getP50() {
+
+        return getPercentile(50);
+    }
+
+    @Override
+    public long getP99() {
+
+        return getPercentile(99);
+    }
+
+    @Override
+    public long getMax() {
+
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     * The result is the upper bound of the bucket the percentile falls into, but never larger than the recorded maximum.
+     * 
+     * @param percentile The percentile to calculate (0 to 100).
+     * @return The value at the given percentile, or 0 if there are no values.
+     */
+    public long getPercentile(double percentile) {
+
+        Validate.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be in range 0 to 100: ", percentile);
+
+        long total = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            total += counts.get(index);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= target) {
+                return Math.min(getUpperBound(index), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public void reset() {
+
+        for (int index = 0; index < BUCKETS; index++) {
+            counts.set(index, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private int getIndex(long value) {
+
+        if (value < SUB_BUCKETS << 1) {
+            return (int) value;
+        } else {
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+    }
+
+    private long getUpperBound(int index) {
+
+        if (index < SUB_BUCKETS << 1) {
+            return index;
+        } else {
+            int shift = index / SUB_BUCKETS - 1;
+            long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+            return (mantissa + 1 << shift) - 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getName() + " [count=" + getCount() + ", mean=" + getMean() + ", p50=" + getP50() + ", p99=" + getP99() + ", max=" + getMax() + "]";
+    }
+
+}
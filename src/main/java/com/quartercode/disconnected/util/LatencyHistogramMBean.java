@@ -0,0 +1,69 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.util;
+
+/**
+ * The management interface of a {@link LatencyHistogram}.
+ * All latency values are in nanoseconds.
+ * 
+ * @see LatencyHistogram
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * Returns the amount of recorded values.
+     * 
+     * @return The amount of recorded values.
+     */
+    public long getCount();
+
+    /**
+     * Returns the arithmetic mean of all recorded values.
+     * 
+     * @return The mean of all recorded values in nanoseconds.
+     */
+    public long getMean();
+
+    /**
+     * Returns the median of all recorded values.
+     * 
+     * @return The 50th percentile in nanoseconds.
+     */
+    public long getP50();
+
+    /**
+     * Returns the 99th percentile of all recorded values.
+     * 
+     * @return The 99th percentile in nanoseconds.
+     */
+    public long getP99();
+
+    /**
+     * Returns the largest recorded value.
+     * 
+     * @return The largest recorded value in nanoseconds.
+     */
+    public long getMax();
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset();
+
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lookahead iterator computes its elements lazily, one element ahead of the caller.
+ * Implementations only need to compute the next element and return null if there are no more elements.
+ * That's why lookahead iterators can't contain null elements.
+ * 
+ * @param <T> The type of the elements the iterator returns.
+ */
+public abstract class LookaheadIterator<T> implements Iterator<T> {
+
+    private T       next;
+    private boolean computed;
+
+    /**
+     * Creates a new lookahead iterator.
+     */
+    protected LookaheadIterator() {
+
+    }
+
+    /**
+     * Computes the next element of the iterator.
+     * If there are no more elements, this should return null.
+     * 
+     * @return The next element, or null if there are no more elements.
+     */
+    protected abstract T computeNext();
+
+    @Override
+    public boolean hasNext() {
+
+        if (!computed) {
+            next = computeNext();
+            computed = true;
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        computed = false;
+        return next;
+    }
+
+    /**
+     * Lookahead iterators don't support removing elements.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void remove() {
+
+        throw new UnsupportedOperationException("Lookahead iterators don't support removing elements");
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.xml.bind.annotation.XmlTransient;
+
+/**
+ * The structure diff compares two object graphs field by field and collects the paths of all differences.
+ * Simulation objects only compare by identity, so this is the way to check if two simulations have the same structure (e.g. after serializing and deserializing one).
+ * It walks the whole graph, so it should only be used for tests and debugging and never on a hot path.
+ * 
+ * Static, transient and synthetic fields are skipped, as well as fields which are annotated with {@link XmlTransient} (they are caches which are not part of the state).
+ * Objects of the java library (like strings or numbers) are compared with their equals method, lists and arrays element by element, other collections and maps in iteration order.
+ * Every object may only be compared with one other object, so cycles are walked only once and shared references must be shared in both graphs.
+ */
+public class StructureDiff {
+
+    /**
+     * Compares the two given object graphs field by field and returns the paths of all differences.
+     * If the returned list is empty, the two graphs have the same structure.
+     * 
+     * @param expected The first object graph which is used as reference.
+     * @param actual The second object graph which is compared with the first one.
+     * @return The paths of all differences, along with the expected and the actual values.
+     */
+    public static List<String> diff(Object expected, Object actual) {
+
+        StructureDiff diff = new StructureDiff();
+        diff.compare(expected == null ? "" : expected.getClass().getSimpleName(), expected, actual);
+        return diff.differences;
+    }
+
+    /**
+     * Returns if the two given object graphs have the same structure.
+     * 
+     * @param expected The first object graph which is used as reference.
+     * @param actual The second object graph which is compared with the first one.
+     * @return If the two given object graphs have the same structure.
+     * @see #diff(Object, Object)
+     */
+    public static boolean deepEquals(Object expected, Object actual) {
+
+        return diff(expected, actual).isEmpty();
+    }
+
+    private final Map<Object, Object> visited     = new IdentityHashMap<Object, Object>();
+    private final List<String>        differences = new ArrayList<String>();
+
+    private StructureDiff() {
+
+    }
+
+    private void compare(String path, Object expected, Object actual) {
+
+        if (expected == actual) {
+            return;
+        } else if (expected == null || actual == null || expected.getClass() != actual.getClass()) {
+            differences.add(path + ": expected " + expected + " but was " + actual);
+            return;
+        }
+
+        Class<?> type = expected.getClass();
+        if (isValue(type)) {
+            if (!expected.equals(actual)) {
+                differences.add(path + ": expected " + expected + " but was " + actual);
+            }
+            return;
+        }
+
+        // Every object is only compared once, which also stops cycles
+        if (visited.containsKey(expected)) {
+            if (visited.get(expected) != actual) {
+                differences.add(path + ": expected a reference to the object compared before, but was another one");
+            }
+            return;
+        }
+        visited.put(expected, actual);
+
+        if (type.isArray()) {
+            int length = Array.getLength(expected);
+            if (length != Array.getLength(actual)) {
+                differences.add(path + ": expected length " + length + " but was " + Array.getLength(actual));
+            } else {
+                for (int index = 0; index < length; index++) {
+                    compare(path + "[" + index + "]", Array.get(expected, index), Array.get(actual, index));
+                }
+            }
+        } else if (expected instanceof Collection) {
+            compareIterables(path, (Collection<?>) expected, (Collection<?>) actual);
+        } else if (expected instanceof Map) {
+            compareMaps(path, (Map<?, ?>) expected, (Map<?, ?>) actual);
+        } else {
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (isState(field)) {
+                        field.setAccessible(true);
+                        try {
+                            compare(path + "." + field.getName(), field.get(expected), field.get(actual));
+                        }
+                        catch (IllegalAccessException e) {
+                            throw new IllegalStateException("Can't read field " + field, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void compareIterables(String path, Collection<?> expected, Collection<?> actual) {
+
+        if (expected.size() != actual.size()) {
+            differences.add(path + ": expected size " + expected.size() + " but was " + actual.size());
+            return;
+        }
+
+        Iterator<?> actualIterator = actual.iterator();
+        int index = 0;
+        for (Object element : expected) {
+            compare(path + "[" + index + "]", element, actualIterator.next());
+            index++;
+        }
+    }
+
+    private void compareMaps(String path, Map<?, ?> expected, Map<?, ?> actual) {
+
+        if (expected.size() != actual.size()) {
+            differences.add(path + ": expected size " + expected.size() + " but was " + actual.size());
+            return;
+        }
+
+        // Value keys are looked up, other keys can only be paired in iteration order
+        Iterator<? extends Entry<?, ?>> actualIterator = actual.entrySet().iterator();
+        for (Entry<?, ?> entry : expected.entrySet()) {
+            Entry<?, ?> actualEntry = actualIterator.next();
+            if (entry.getKey() != null && isValue(entry.getKey().getClass())) {
+                if (!actual.containsKey(entry.getKey())) {
+                    differences.add(path + ": expected key " + entry.getKey() + " but it's missing");
+                } else {
+                    compare(path + "[" + entry.getKey() + "]", entry.getValue(), actual.get(entry.getKey()));
+                }
+            } else {
+                compare(path + ".key", entry.getKey(), actualEntry.getKey());
+                compare(path + "[" + entry.getKey() + "]", entry.getValue(), actualEntry.getValue());
+            }
+        }
+    }
+
+    private boolean isValue(Class<?> type) {
+
+        if (type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return false;
+        } else {
+            // Enum constants with a body are subclasses of the enum
+            return type.isEnum() || type.getSuperclass() != null && type.getSuperclass().isEnum() || type.getName().startsWith("java.") || type.getName().startsWith("javax.");
+        }
+    }
+
+    private boolean isState(Field field) {
+
+        int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic() && !field.isAnnotationPresent(XmlTransient.class);
+    }
+
+}
@@ -21,6 +21,11 @@ package com.quartercode.disconnected.test.profile;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.bind.JAXBException;
 import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.commons.io.output.WriterOutputStream;
@@ -28,12 +33,23 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import com.quartercode.disconnected.BatchRunner;
 import com.quartercode.disconnected.Disconnected;
 import com.quartercode.disconnected.Main;
 import com.quartercode.disconnected.Registry;
 import com.quartercode.disconnected.profile.ProfileSerializer;
 import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.comp.Computer;
+import com.quartercode.disconnected.sim.comp.file.FileSystem;
+import com.quartercode.disconnected.sim.comp.hardware.HardDrive;
+import com.quartercode.disconnected.sim.member.Member;
+import com.quartercode.disconnected.sim.run.TickTimer;
 import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
+import com.quartercode.disconnected.util.StructureDiff;
 
 public class ProfileSerializerTest {
 
@@ -61,7 +77,81 @@ public class ProfileSerializerTest {
         outputStream.close();
 
         Simulation copy = ProfileSerializer.deserialize(new ReaderInputStream(new StringReader(serialized.toString())));
-        Assert.assertEquals("Simulation equals serialized-deserialized copy", simulation, copy);
+        Assert.assertEquals("Simulation equals serialized-deserialized copy", Collections.emptyList(), StructureDiff.diff(simulation, copy));
+
+        Member member = simulation.getMembers().get(0);
+        Member copyMember = copy.getMember(member.getName());
+        Assert.assertEquals("Reputation of copy", simulation.getGroups().get(0).getReputationValue(member), copy.getGroups().get(0).getReputationValue(copyMember));
+    }
+
+    @Test
+    public void testSerializeBatchRun() throws IOException, JAXBException {
+
+        for (Computer computer : simulation.getComputers()) {
+            computer.getOperatingSystem().setRunning(true);
+        }
+        BatchRunner.run(simulation, new TickTimer(), 50);
+        BatchRunner.shutdown(simulation);
+
+        StringWriter serialized = new StringWriter();
+        WriterOutputStream outputStream = new WriterOutputStream(serialized);
+        ProfileSerializer.serialize(outputStream, simulation);
+        outputStream.close();
+
+        Simulation copy = ProfileSerializer.deserialize(new ReaderInputStream(new StringReader(serialized.toString())));
+        Assert.assertEquals("Simulation equals serialized-deserialized copy after batch run", Collections.emptyList(), StructureDiff.diff(simulation, copy));
+        assertUniqueFileIds(serialized.toString());
+        for (Computer computer : copy.getComputers()) {
+            Assert.assertFalse("Operating system of copy is shut down", computer.getOperatingSystem().isRunning());
+            computer.getOperatingSystem().setRunning(true);
+            Assert.assertTrue("Operating system of copy can be started again", computer.getOperatingSystem().isRunning());
+        }
+    }
+
+    private void assertUniqueFileIds(String serialized) throws IOException {
+
+        NodeList elements;
+        try {
+            elements = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(serialized))).getElementsByTagName("file");
+        }
+        catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // The file systems are unmounted after the shutdown, so their ids mustn't depend on the mountpoints
+        Set<String> ids = new HashSet<String>();
+        for (int index = 0; index < elements.getLength(); index++) {
+            String id = ( (Element) elements.item(index)).getAttribute("id");
+            if (!id.isEmpty()) {
+                Assert.assertFalse("File id " + id + " on unmounted file system", id.startsWith("null"));
+                Assert.assertTrue("Duplicate file id " + id, ids.add(id));
+            }
+        }
+        Assert.assertFalse("Serialized file ids", ids.isEmpty());
+    }
+
+    @Test
+    public void testSerializeImage() throws IOException, JAXBException {
+
+        // Reading the kernel file of the image doesn't copy it into the file system of the first computer
+        FileSystem fileSystem = simulation.getComputers().get(0).getHardware(HardDrive.class).get(0).getFileSystem();
+        Object kernel = fileSystem.getFile("/system/boot/kernel").getContent();
+
+        StringWriter serialized = new StringWriter();
+        WriterOutputStream outputStream = new WriterOutputStream(serialized);
+        ProfileSerializer.serialize(outputStream, simulation);
+        outputStream.close();
+
+        Simulation copy = ProfileSerializer.deserialize(new ReaderInputStream(new StringReader(serialized.toString())));
+        FileSystem copyFileSystem = copy.getComputers().get(0).getHardware(HardDrive.class).get(0).getFileSystem();
+        Assert.assertEquals("Images", 1, copy.getImages().size());
+        Assert.assertSame("Base image", copy.getImages().get(0), copyFileSystem.getBase());
+        Assert.assertTrue("Kernel content", StructureDiff.deepEquals(kernel, copyFileSystem.getFile("/system/boot/kernel").getContent()));
+        Assert.assertSame("Kernel content is shared with image", copy.getImages().get(0).getFile("/system/boot/kernel").getContent(), copyFileSystem.getFile("/system/boot/kernel").getContent());
+        Assert.assertEquals("Filled bytes", fileSystem.getFilled(), copyFileSystem.getFilled());
     }
 
 }
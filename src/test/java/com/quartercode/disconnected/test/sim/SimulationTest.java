@@ -22,9 +22,12 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.member.Member;
+import com.quartercode.disconnected.sim.member.MemberGroup;
 import com.quartercode.disconnected.sim.member.ai.PlayerController;
 import com.quartercode.disconnected.sim.member.ai.UserController;
+import com.quartercode.disconnected.sim.member.interest.DestroyInterest;
 import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
 
 public class SimulationTest {
@@ -58,4 +61,98 @@ public class SimulationTest {
         Assert.assertEquals("Local player equals", localPlayer, simulation.getLocalPlayer());
     }
 
+    @Test
+    public void testIndexes() {
+
+        Member member = simulation.getMembers().get(0);
+        Assert.assertSame("Member by name", member, simulation.getMember(member.getName()));
+        Assert.assertSame("Member by computer", member, simulation.getMember(member.getComputer()));
+
+        MemberGroup group = simulation.getGroup(member);
+        Assert.assertTrue("Group contains member", group.getMembers().contains(member));
+        group.removeMember(member);
+        Assert.assertNull("Group of removed group member", simulation.getGroup(member));
+
+        Computer computer = new Computer("new");
+        simulation.addComputer(computer);
+        Member newMember = new Member("newMember");
+        newMember.setComputer(computer);
+        newMember.setAiController(new UserController(newMember));
+        simulation.addMember(newMember);
+        simulation.getGroups().get(0).addMember(newMember);
+        Assert.assertSame("New member by name", newMember, simulation.getMember("newMember"));
+        Assert.assertSame("New member by computer", newMember, simulation.getMember(computer));
+        Assert.assertTrue("New member by controller", simulation.getMembersByController(UserController.class).contains(newMember));
+        Assert.assertSame("Group of new member", simulation.getGroups().get(0), simulation.getGroup(newMember));
+
+        Computer otherComputer = new Computer("other");
+        newMember.setComputer(otherComputer);
+        Assert.assertNull("Member by old computer", simulation.getMember(computer));
+        Assert.assertSame("Member by new computer", newMember, simulation.getMember(otherComputer));
+        newMember.setAiController(new PlayerController(newMember, false));
+        Assert.assertFalse("Member by old controller", simulation.getMembersByController(UserController.class).contains(newMember));
+        Assert.assertTrue("Member by new controller", simulation.getMembersByController(PlayerController.class).contains(newMember));
+
+        simulation.removeMember(newMember);
+        Assert.assertNull("Removed member by name", simulation.getMember("newMember"));
+
+        MemberGroup removedGroup = simulation.getGroup(simulation.getMembers().get(1));
+        simulation.removeGroup(removedGroup);
+        for (Member groupMember : removedGroup.getMembers()) {
+            Assert.assertNull("Group of member of removed group", simulation.getGroup(groupMember));
+        }
+    }
+
+    @Test
+    public void testQueuedRemoval() {
+
+        Member attacker = simulation.getMembers().get(0);
+        Member target = simulation.getMembers().get(1);
+        MemberGroup group = simulation.getGroup(target);
+        MemberGroup attackerGroup = simulation.getGroup(attacker);
+        DestroyInterest memberInterest = new DestroyInterest(0.5F, target);
+        attacker.addBrainData(memberInterest);
+        DestroyInterest groupInterest = new DestroyInterest(0.5F, target);
+        attackerGroup.addInterest(groupInterest);
+
+        simulation.queueRemoveMember(target);
+        simulation.queueRemoveMember(target);
+        simulation.queueRemoveComputer(target.getComputer());
+        Assert.assertTrue("Target is removed before mutations are applied", simulation.getMembers().contains(target));
+
+        simulation.applyMutations();
+        Assert.assertFalse("Target is removed", simulation.getMembers().contains(target));
+        Assert.assertFalse("Target computer is removed", simulation.getComputers().contains(target.getComputer()));
+        Assert.assertFalse("Target is removed from its group", group.getMembers().contains(target));
+        Assert.assertNull("Group of removed target", simulation.getGroup(target));
+        Assert.assertFalse("Member interest against target is dropped", attacker.getBrainData().contains(memberInterest));
+        Assert.assertFalse("Group interest against target is dropped", attackerGroup.getInterests().contains(groupInterest));
+    }
+
+    @Test
+    public void testRemoveTargetOfRemovedInterest() {
+
+        Member attacker = simulation.getMembers().get(0);
+        Member removedAttacker = simulation.getMembers().get(1);
+        Member target = simulation.getMembers().get(2);
+        // Build the indexes before the interests change
+        simulation.getMember(target.getName());
+
+        DestroyInterest removedInterest = new DestroyInterest(0.5F, target);
+        attacker.addBrainData(removedInterest);
+        DestroyInterest otherInterest = new DestroyInterest(0.5F, simulation.getMembers().get(3));
+        attacker.addBrainData(otherInterest);
+        attacker.removeBrainData(removedInterest);
+
+        // The interests of members which were removed from the simulation aren't touched anymore
+        DestroyInterest interestOfRemoved = new DestroyInterest(0.5F, target);
+        removedAttacker.addBrainData(interestOfRemoved);
+        simulation.removeMember(removedAttacker);
+
+        simulation.removeMember(target);
+        Assert.assertFalse("Target is removed", simulation.getMembers().contains(target));
+        Assert.assertTrue("Interest against other target is kept", attacker.getBrainData().contains(otherInterest));
+        Assert.assertTrue("Interest of removed member is kept", removedAttacker.getBrainData().contains(interestOfRemoved));
+    }
+
 }
@@ -30,20 +30,24 @@ import com.quartercode.disconnected.sim.comp.file.FileRights.FileAccessor;
 import com.quartercode.disconnected.sim.comp.file.FileRights.FileRight;
 import com.quartercode.disconnected.sim.comp.file.FileSystem;
 import com.quartercode.disconnected.sim.comp.hardware.HardDrive;
+import com.quartercode.disconnected.sim.comp.os.Group;
+import com.quartercode.disconnected.sim.comp.os.Group.RightOverride;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
+import com.quartercode.disconnected.sim.comp.os.User;
 import com.quartercode.disconnected.util.size.ByteUnit;
 
 public class FileRightsTest {
 
-    private FileSystem fileSystem;
-    private File       testFile;
+    private OperatingSystem operatingSystem;
+    private FileSystem      fileSystem;
+    private File            testFile;
 
     @Before
     public void setUp() {
 
         Computer computer = new Computer("0");
 
-        OperatingSystem operatingSystem = new OperatingSystem(computer, "OperatingSystem", new Version(1, 0, 0), null);
+        operatingSystem = new OperatingSystem(computer, "OperatingSystem", new Version(1, 0, 0), null);
         computer.setOperatingSystem(operatingSystem);
 
         HardDrive hardDrive = new HardDrive(computer, "HardDrive", new Version(1, 0, 0), null, ByteUnit.BYTE.convert(1, ByteUnit.TERABYTE));
@@ -68,16 +72,86 @@ public class FileRightsTest {
     @Test
     public void testSetRight() {
 
-        FileRights rights = testFile.getRights();
+        testFile.setRight(FileAccessor.OWNER, FileRight.EXECUTE, true);
+        Assert.assertEquals("Owner execute right can be set", true, testFile.getRights().getRight(FileAccessor.OWNER, FileRight.EXECUTE));
+
+        testFile.setRight(FileAccessor.GROUP, FileRight.WRITE, true);
+        Assert.assertEquals("Group write right is set correctly", true, testFile.getRights().getRight(FileAccessor.GROUP, FileRight.WRITE));
+
+        testFile.setRight(FileAccessor.OTHERS, FileRight.READ, false);
+        Assert.assertEquals("Others write right is set correctly", false, testFile.getRights().getRight(FileAccessor.OTHERS, FileRight.READ));
+    }
+
+    @Test
+    public void testExecuteSlot() {
+
+        FileRights rights = new FileRights("rwdsr--xr---");
+        Assert.assertEquals("Owner execute-extended right is parsed", true, rights.getRight(FileAccessor.OWNER, FileRight.EXECUTE_EXTENDED));
+        Assert.assertEquals("Owner execute right isn't set by execute-extended", false, rights.getRight(FileAccessor.OWNER, FileRight.EXECUTE));
 
         rights.setRight(FileAccessor.OWNER, FileRight.EXECUTE, true);
-        Assert.assertEquals("Owner execute right can be set", true, rights.getRight(FileAccessor.OWNER, FileRight.EXECUTE));
+        Assert.assertEquals("Execute replaces execute-extended", "rwdxr--xr---", rights.toString());
+        rights.setRight(FileAccessor.GROUP, FileRight.EXECUTE_EXTENDED, false);
+        Assert.assertEquals("Unsetting execute-extended clears the execute slot", "rwdxr---r---", rights.toString());
+    }
 
-        rights.setRight(FileAccessor.GROUP, FileRight.WRITE, true);
-        Assert.assertEquals("Group write right is set correctly", true, rights.getRight(FileAccessor.GROUP, FileRight.WRITE));
+    @Test
+    public void testFileExecuteSlot() {
+
+        testFile.setRights(new FileRights("rwdsr---r---"));
+        testFile.setRight(FileAccessor.OWNER, FileRight.EXECUTE, false);
+        Assert.assertEquals("Unsetting execute on a file clears the execute slot", "rwd-r---r---", testFile.getRights().toString());
+
+        testFile.setRights(FileRights.valueOf("rwd-r---r---"));
+        testFile.setRight(FileAccessor.OWNER, FileRight.EXECUTE_EXTENDED, false);
+        Assert.assertTrue("Unsetting an empty execute slot keeps the preset", testFile.getRights().isPreset());
+    }
 
-        rights.setRight(FileAccessor.OTHERS, FileRight.READ, false);
-        Assert.assertEquals("Others write right is set correctly", false, rights.getRight(FileAccessor.OTHERS, FileRight.READ));
+    @Test
+    public void testPreset() {
+
+        Assert.assertSame("Parsing a preset string returns the preset", FileRights.DEFAULT, FileRights.valueOf("rwd-r---r---"));
+        Assert.assertSame("New files use the default preset", FileRights.DEFAULT, testFile.getRights());
+        testFile.setRight(FileAccessor.OWNER, FileRight.READ, true);
+        Assert.assertSame("Reading and setting an unchanged right keeps the preset", FileRights.DEFAULT, testFile.getRights());
+
+        try {
+            FileRights.DEFAULT.setRight(FileAccessor.OTHERS, FileRight.WRITE, true);
+            Assert.fail("Preset rights can be changed");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+
+        File otherFile = fileSystem.addFile("/test1/other.txt", FileType.FILE);
+        testFile.setRight(FileAccessor.OTHERS, FileRight.WRITE, true);
+        Assert.assertFalse("Changing a right copies the preset", testFile.getRights().isPreset());
+        Assert.assertEquals("Changing the rights of one file doesn't change others", false, otherFile.getRights().getRight(FileAccessor.OTHERS, FileRight.WRITE));
+    }
+
+    @Test
+    public void testHasRight() {
+
+        Group rootGroup = new Group(operatingSystem, "root", RightOverride.ROOT);
+        Group staffGroup = new Group(operatingSystem, "staff");
+        User owner = new User(operatingSystem, "owner");
+        owner.addToGroup(staffGroup, true);
+        User member = new User(operatingSystem, "member");
+        member.addToGroup(staffGroup, true);
+        User other = new User(operatingSystem, "other");
+        User root = new User(operatingSystem, "root");
+        root.addToGroup(rootGroup, true);
+
+        testFile.setOwner(owner);
+        testFile.setGroup(staffGroup);
+        testFile.setRights(new FileRights("rwd-rw--r---"));
+
+        Assert.assertEquals("Owner can delete", true, testFile.hasRight(owner, FileRight.DELETE));
+        Assert.assertEquals("Group member can write", true, testFile.hasRight(member, FileRight.WRITE));
+        Assert.assertEquals("Others can't write", false, testFile.hasRight(other, FileRight.WRITE));
+        Assert.assertEquals("Root can execute", true, testFile.hasRight(root, FileRight.EXECUTE));
+
+        other.addToGroup(rootGroup, true);
+        Assert.assertEquals("New root member can write", true, testFile.hasRight(other, FileRight.WRITE));
     }
 
 }
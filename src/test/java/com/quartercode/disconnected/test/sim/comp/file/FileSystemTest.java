@@ -18,6 +18,8 @@
 
 package com.quartercode.disconnected.test.sim.comp.file;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -25,6 +27,7 @@ import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.comp.Version;
 import com.quartercode.disconnected.sim.comp.file.File;
 import com.quartercode.disconnected.sim.comp.file.File.FileType;
+import com.quartercode.disconnected.sim.comp.file.FileQuery;
 import com.quartercode.disconnected.sim.comp.file.FileSystem;
 import com.quartercode.disconnected.sim.comp.hardware.HardDrive;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
@@ -58,12 +61,205 @@ public class FileSystemTest {
         Assert.assertEquals("Returned file equals original", testFile, fileSystem.getFile("/test1/test2/test.txt"));
     }
 
+    @Test
+    public void testGetPath() {
+
+        Assert.assertEquals("Local path", "/test1/test2/test.txt", testFile.getLocalPath());
+        Assert.assertEquals("Parent", fileSystem.getFile("/test1/test2"), testFile.getParent());
+        Assert.assertEquals("Root path", "/", fileSystem.getRootFile().getLocalPath());
+        Assert.assertNull("Root parent", fileSystem.getRootFile().getParent());
+
+        testFile.rename("renamed.txt");
+        Assert.assertEquals("Renamed file by new name", testFile, fileSystem.getFile("/test1/test2/renamed.txt"));
+        Assert.assertNull("Renamed file by old name", fileSystem.getFile("/test1/test2/test.txt"));
+
+        testFile.remove();
+        Assert.assertNull("Removed file path", testFile.getLocalPath());
+        Assert.assertNull("Removed file parent", testFile.getParent());
+    }
+
+    @Test
+    public void testInode() {
+
+        long inode = testFile.getInode();
+        Assert.assertTrue("Root file has other inode", fileSystem.getRootFile().getInode() != inode);
+        Assert.assertTrue("New file has other inode", fileSystem.addFile("/test1/other.txt", FileType.FILE).getInode() != inode);
+
+        testFile.rename("renamed.txt");
+        testFile.move("/test3/test.txt");
+        Assert.assertEquals("Inode after renaming and moving", inode, testFile.getInode());
+    }
+
+    @Test
+    public void testOverlay() {
+
+        FileSystem image = new FileSystem("test", ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        image.addFile("/base/base.txt", FileType.FILE).setContent("Base");
+        image.addFile("/base/other.txt", FileType.FILE).setContent("Other");
+        image.setReadOnly(true);
+
+        FileSystem overlay = new FileSystem(fileSystem.getHost(), ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        overlay.setBase(image);
+        Assert.assertEquals("Filled bytes of overlay", image.getFilled(), overlay.getFilled());
+
+        File baseFile = overlay.getFile("/base/base.txt");
+        Assert.assertNotSame("Overlay file is a copy", image.getFile("/base/base.txt"), baseFile);
+        Assert.assertSame("Overlay file shares content", image.getFile("/base/base.txt").getContent(), baseFile.getContent());
+        Assert.assertEquals("Overlay directory lists base files", 2, overlay.getFile("/base").getChildFiles().size());
+        Assert.assertTrue("Read overlay file is a view", baseFile.isView());
+        Assert.assertTrue("Read overlay directory is a view", overlay.getFile("/base").isView());
+        Assert.assertSame("Overlay file view is cached", baseFile, overlay.getFile("/base/base.txt"));
+
+        baseFile.setContent("Changed");
+        Assert.assertFalse("Changed overlay file is stored", baseFile.isView());
+        Assert.assertFalse("Parent of changed overlay file is stored", overlay.getFile("/base").isView());
+        Assert.assertTrue("Unchanged overlay file is a view", overlay.getFile("/base/other.txt").isView());
+        Assert.assertEquals("Changed overlay content", "Changed", baseFile.getContent());
+        Assert.assertEquals("Unchanged base content", "Base", image.getFile("/base/base.txt").getContent());
+        Assert.assertEquals("Filled bytes after changing", image.getFilled() + 3 * 256, overlay.getFilled());
+
+        overlay.getFile("/base/other.txt").remove();
+        Assert.assertNull("Removed base file", overlay.getFile("/base/other.txt"));
+        Assert.assertNotNull("Base file in image", image.getFile("/base/other.txt"));
+        Assert.assertEquals("Filled bytes after removing", image.getFilled() + 3 * 256 - 5 * 256, overlay.getFilled());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testReadOnly() {
+
+        fileSystem.setReadOnly(true);
+        testFile.setContent("Changed");
+    }
+
+    @Test
+    public void testFind() {
+
+        fileSystem.addFile("/test1/other.txt", FileType.FILE).setContent("Other");
+        fileSystem.addFile("/test1/other.dat", FileType.FILE).setContent(1);
+
+        Assert.assertEquals("Files by glob", 2, toList(fileSystem.find(new FileQuery("*.txt", null, null))).size());
+        Assert.assertEquals("Files by single character glob", 2, toList(fileSystem.find(new FileQuery("other.???", null, null))).size());
+        Assert.assertEquals("Files by exact name", testFile, toList(fileSystem.find(new FileQuery("test.txt", null, null))).get(0));
+        Assert.assertEquals("Files by content type", 2, toList(fileSystem.find(new FileQuery(null, null, String.class))).size());
+        Assert.assertEquals("Directories", 2, toList(fileSystem.find(new FileQuery(null, FileType.DIRECTORY, null))).size());
+    }
+
+    @Test
+    public void testFindIndexed() {
+
+        fileSystem.setIndexed(true);
+        Assert.assertEquals("Indexed files by exact name", testFile, toList(fileSystem.find(new FileQuery("test.txt", null, null))).get(0));
+
+        File otherFile = fileSystem.addFile("/test1/other.txt", FileType.FILE);
+        otherFile.setContent(1);
+        Assert.assertEquals("Indexed files by content type after adding", otherFile, toList(fileSystem.find(new FileQuery(null, null, Integer.class))).get(0));
+
+        otherFile.rename("renamed.txt");
+        Assert.assertTrue("Indexed files by old name after renaming", toList(fileSystem.find(new FileQuery("other.txt", null, null))).isEmpty());
+        Assert.assertEquals("Indexed files by new name after renaming", otherFile, toList(fileSystem.find(new FileQuery("renamed.txt", null, null))).get(0));
+
+        otherFile.setContent("Other");
+        Assert.assertTrue("Indexed files by old content type", toList(fileSystem.find(new FileQuery(null, null, Integer.class))).isEmpty());
+        Assert.assertEquals("Indexed files by new content type", 2, toList(fileSystem.find(new FileQuery(null, null, String.class))).size());
+
+        fileSystem.getFile("/test1/test2").move("/test3/test2");
+        Assert.assertEquals("Indexed files after moving", "/test3/test2/test.txt", toList(fileSystem.find(new FileQuery("test.txt", null, null))).get(0).getLocalPath());
+
+        fileSystem.getFile("/test3").remove();
+        Assert.assertTrue("Indexed files after removing", toList(fileSystem.find(new FileQuery("test.txt", null, null))).isEmpty());
+    }
+
+    @Test
+    public void testFindOverlay() {
+
+        FileSystem image = new FileSystem("test", ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        image.addFile("/base/base.txt", FileType.FILE).setContent("Base");
+        image.addFile("/base/other.txt", FileType.FILE).setContent("Other");
+        image.addFile("/base/sub/sub.txt", FileType.FILE).setContent("Sub");
+        image.setReadOnly(true);
+        image.setIndexed(true);
+
+        FileSystem overlay = new FileSystem(fileSystem.getHost(), ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        overlay.setBase(image);
+        overlay.setIndexed(true);
+        File copied = overlay.getFile("/base/base.txt");
+        overlay.getFile("/base/other.txt").remove();
+        overlay.addFile("/own.txt", FileType.FILE).setContent("Own");
+
+        List<File> files = toList(overlay.find(new FileQuery("*.txt", null, null)));
+        Assert.assertEquals("Found files", 3, files.size());
+        Assert.assertTrue("Found copied file", files.contains(copied));
+        for (File file : files) {
+            Assert.assertSame("Found file is stored on overlay", overlay, file.getHost());
+        }
+        Assert.assertSame("Copied file found by path", overlay.getFile("/base/sub/sub.txt"), toList(overlay.find(new FileQuery("sub.txt", null, null))).get(0));
+        Assert.assertTrue("Found base file isn't copied", overlay.getFile("/base/sub/sub.txt").isView());
+        Assert.assertTrue("Found base file isn't copied", copied.isView());
+        Assert.assertTrue("Removed file", toList(overlay.find(new FileQuery("other.txt", null, null))).isEmpty());
+    }
+
+    @Test
+    public void testFindOverlayMovedCopy() {
+
+        FileSystem image = new FileSystem("test", ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        image.addFile("/base/sub/sub.txt", FileType.FILE).setContent("Sub");
+        image.addFile("/base/gone/gone.txt", FileType.FILE).setContent("Gone");
+        image.setReadOnly(true);
+
+        FileSystem overlay = new FileSystem(fileSystem.getHost(), ByteUnit.BYTE.convert(1, ByteUnit.GIGABYTE));
+        overlay.setBase(image);
+        Assert.assertEquals("Base file found before changes", 1, toList(overlay.find(new FileQuery("gone.txt", null, null))).size());
+
+        // Adding a file copies the directory, removing it must drop the copy
+        overlay.addFile("/base/gone/new.txt", FileType.FILE);
+        overlay.getFile("/base/gone").remove();
+        Assert.assertTrue("Base file of removed copy", toList(overlay.find(new FileQuery("gone.txt", null, null))).isEmpty());
+        Assert.assertTrue("Stored file of removed copy", toList(overlay.find(new FileQuery("new.txt", null, null))).isEmpty());
+
+        // The unchanged children of a moved copy are found under its new location
+        overlay.getFile("/base/sub").move("/moved/sub");
+        List<File> files = toList(overlay.find(new FileQuery("sub.txt", null, null)));
+        Assert.assertEquals("Base file of moved copy found once", 1, files.size());
+        Assert.assertEquals("Base file of moved copy found under new location", "/moved/sub/sub.txt", files.get(0).getLocalPath());
+        Assert.assertNull("Base file of moved copy not found under old location", overlay.getFile("/base/sub/sub.txt"));
+    }
+
+    private List<File> toList(Iterable<File> files) {
+
+        List<File> list = new ArrayList<File>();
+        for (File file : files) {
+            list.add(file);
+        }
+        return list;
+    }
+
     @Test
     public void testCalcSpace() {
 
-        Assert.assertEquals("Filled bytes", 12288, fileSystem.getFilled());
-        Assert.assertEquals("Free bytes", fileSystem.getSize() - 12288, fileSystem.getFree());
+        Assert.assertEquals("Filled bytes", 3072, fileSystem.getFilled());
+        Assert.assertEquals("Free bytes", fileSystem.getSize() - 3072, fileSystem.getFree());
         Assert.assertEquals("Filled + free = size", fileSystem.getSize(), fileSystem.getFilled() + fileSystem.getFree());
     }
 
+    @Test
+    public void testUpdateSpace() {
+
+        File otherFile = fileSystem.addFile("/test1/other.txt", FileType.FILE);
+        otherFile.setContent("Other");
+        Assert.assertEquals("Filled bytes after adding", 3072 + 1280, fileSystem.getFilled());
+        Assert.assertEquals("Directory size after adding", 3072 + 1280, fileSystem.getFile("/test1").getSize());
+
+        testFile.setContent("Test");
+        Assert.assertEquals("Filled bytes after changing content", 1024 + 1280, fileSystem.getFilled());
+        Assert.assertEquals("Directory size after changing content", 1024, fileSystem.getFile("/test1/test2").getSize());
+
+        testFile.move("/test3/test.txt");
+        Assert.assertEquals("Filled bytes after moving", 1024 + 1280, fileSystem.getFilled());
+        Assert.assertEquals("Old directory size after moving", 0, fileSystem.getFile("/test1/test2").getSize());
+        Assert.assertEquals("New directory size after moving", 1024, fileSystem.getFile("/test3").getSize());
+
+        otherFile.remove();
+        Assert.assertEquals("Filled bytes after removing", 1024, fileSystem.getFilled());
+    }
+
 }
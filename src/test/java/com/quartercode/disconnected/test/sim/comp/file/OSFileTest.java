@@ -18,6 +18,8 @@
 
 package com.quartercode.disconnected.test.sim.comp.file;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -26,8 +28,10 @@ import com.quartercode.disconnected.sim.comp.Computer;
 import com.quartercode.disconnected.sim.comp.Version;
 import com.quartercode.disconnected.sim.comp.file.File;
 import com.quartercode.disconnected.sim.comp.file.File.FileType;
+import com.quartercode.disconnected.sim.comp.file.FileQuery;
 import com.quartercode.disconnected.sim.comp.file.FileSystem;
 import com.quartercode.disconnected.sim.comp.hardware.HardDrive;
+import com.quartercode.disconnected.sim.comp.os.FileSystemManager;
 import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
 import com.quartercode.disconnected.util.size.ByteUnit;
 
@@ -62,6 +66,40 @@ public class OSFileTest {
         Assert.assertEquals("Returned file equals original", testFile, operatingSystem.getFileSystemManager().getFile(mountpoint + ":/test1/test2/test.txt"));
     }
 
+    @Test
+    public void testCachedPath() {
+
+        char mountpoint = operatingSystem.getFileSystemManager().getMountpoint(fileSystem);
+        String path = mountpoint + ":/test1/test2/test.txt";
+        Assert.assertSame("First lookup", testFile, operatingSystem.getFileSystemManager().getFile(path));
+        Assert.assertSame("Cached lookup", testFile, operatingSystem.getFileSystemManager().getFile(path));
+
+        fileSystem.getFile("/test1/test2").rename("test3");
+        Assert.assertNull("Lookup after renaming parent", operatingSystem.getFileSystemManager().getFile(path));
+        Assert.assertSame("Lookup of new path", testFile, operatingSystem.getFileSystemManager().getFile(mountpoint + ":/test1/test3/test.txt"));
+
+        testFile.move("/test4/test.txt");
+        Assert.assertNull("Lookup after moving", operatingSystem.getFileSystemManager().getFile(mountpoint + ":/test1/test3/test.txt"));
+        Assert.assertSame("Lookup of moved file", testFile, operatingSystem.getFileSystemManager().getFile(mountpoint + ":/test4/test.txt"));
+
+        testFile.remove();
+        Assert.assertNull("Lookup after removing", operatingSystem.getFileSystemManager().getFile(mountpoint + ":/test4/test.txt"));
+    }
+
+    @Test
+    public void testFind() {
+
+        HardDrive hardDrive2 = new HardDrive(computer, "HardDrive", new Version(1, 0, 0), null, ByteUnit.BYTE.convert(1, ByteUnit.TERABYTE));
+        computer.addHardware(hardDrive2);
+        operatingSystem.getFileSystemManager().mount(hardDrive2.getFileSystem(), 'D');
+        File otherFile = hardDrive2.getFileSystem().addFile("/test.txt", FileType.FILE);
+
+        Iterator<File> files = operatingSystem.getFileSystemManager().find(new FileQuery("test.txt", FileType.FILE, null)).iterator();
+        Assert.assertSame("File on first file system", testFile, files.next());
+        Assert.assertSame("File on second file system", otherFile, files.next());
+        Assert.assertFalse("No more files", files.hasNext());
+    }
+
     @Test
     @Ignore
     public void testCreateFile() {
@@ -79,6 +117,25 @@ public class OSFileTest {
         Assert.assertEquals("Global path is correct", mountpoint + ":/test1/test2/test.txt", testFile.getGlobalPath(operatingSystem));
     }
 
+    @Test
+    public void testMountTable() {
+
+        FileSystemManager fileSystemManager = operatingSystem.getFileSystemManager();
+        HardDrive hardDrive2 = new HardDrive(computer, "HardDrive", new Version(1, 0, 0), null, ByteUnit.BYTE.convert(1, ByteUnit.TERABYTE));
+        computer.addHardware(hardDrive2);
+        FileSystem fileSystem2 = hardDrive2.getFileSystem();
+
+        fileSystemManager.mount(fileSystem2, 'A');
+        Assert.assertEquals("Mounted file systems are sorted by mountpoint", Arrays.asList(fileSystem2, fileSystem), fileSystemManager.getMounted());
+        Assert.assertSame("Mounted file system is found by mountpoint", fileSystem2, fileSystemManager.getMounted('A'));
+        Assert.assertEquals("Mountpoint is found by file system", 'A', fileSystemManager.getMountpoint(fileSystem2));
+
+        fileSystemManager.unmount(fileSystem2);
+        Assert.assertEquals("Unmounted file system isn't mounted anymore", Arrays.asList(fileSystem), fileSystemManager.getMounted());
+        Assert.assertNull("Unmounted mountpoint is free", fileSystemManager.getMounted('A'));
+        Assert.assertEquals("Unmounted file system has no mountpoint", '-', fileSystemManager.getMountpoint(fileSystem2));
+    }
+
     @Test
     @Ignore
     public void testMove() {
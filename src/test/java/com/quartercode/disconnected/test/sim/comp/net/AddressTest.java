@@ -0,0 +1,49 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.quartercode.disconnected.test.sim.comp.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.comp.net.Address;
+import com.quartercode.disconnected.sim.comp.net.IP;
+
+public class AddressTest {
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testNegativePort() {
+
+        new Address(new IP(null, "127.0.0.1"), -1);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testTooLargePort() {
+
+        new Address(new IP(null, "127.0.0.1"), 65536);
+    }
+
+    @Test
+    public void testToLong() {
+
+        IP ip = new IP(null, "127.0.0.1");
+        Assert.assertEquals("Packed lowest port", new Address(ip, 0).toLong() + 65535, new Address(ip, 65535).toLong());
+        Assert.assertTrue("Packed addresses of other ips differ", new Address(ip, 65535).toLong() != new Address(new IP(null, "127.0.0.2"), 0).toLong());
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.comp.os;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.comp.hardware.NetworkInterface;
+import com.quartercode.disconnected.sim.comp.net.Address;
+import com.quartercode.disconnected.sim.comp.net.IP;
+import com.quartercode.disconnected.sim.comp.net.PacketListener;
+import com.quartercode.disconnected.sim.comp.os.ProcessManager;
+import com.quartercode.disconnected.sim.comp.program.Process;
+import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
+
+public class ProcessManagerTest {
+
+    private ProcessManager processManager;
+    private Process        root;
+    private IP             ip;
+
+    @Before
+    public void setUp() {
+
+        Simulation simulation = SimulationGenerator.generateSimulation(1, 1);
+        simulation.getComputers().get(0).getOperatingSystem().setRunning(true);
+
+        processManager = simulation.getComputers().get(0).getOperatingSystem().getProcessManager();
+        root = processManager.getRootProcess();
+        ip = simulation.getComputers().get(0).getHardware(NetworkInterface.class).get(0).getIp();
+    }
+
+    @Test
+    public void testRequestPid() {
+
+        Process child1 = root.createChild(root.getFile(), null);
+        Process child2 = root.createChild(root.getFile(), null);
+        Process child3 = root.createChild(root.getFile(), null);
+
+        Assert.assertEquals("Pid of first child", 1, child1.getPid());
+        Assert.assertEquals("Pid of second child", 2, child2.getPid());
+        Assert.assertEquals("Pid of third child", 3, child3.getPid());
+        Assert.assertEquals("Next pid", 4, processManager.requestPid());
+
+        root.unregisterChild(child2);
+        Assert.assertEquals("Released pid", 2, processManager.requestPid());
+        Assert.assertEquals("Pid of reused child", 2, root.createChild(root.getFile(), null).getPid());
+        Assert.assertEquals("Next pid after reuse", 4, processManager.requestPid());
+    }
+
+    @Test
+    public void testGetProcessByPid() {
+
+        Process child = root.createChild(root.getFile(), null);
+        Process grandchild = child.createChild(root.getFile(), null);
+
+        Assert.assertSame("Root process", root, processManager.getProcess(0));
+        Assert.assertSame("Grandchild process", grandchild, processManager.getProcess(grandchild.getPid()));
+        Assert.assertNull("Unknown pid", processManager.getProcess(100));
+
+        root.unregisterChild(child);
+        Assert.assertNull("Unregistered child", processManager.getProcess(child.getPid()));
+        Assert.assertNull("Unregistered grandchild", processManager.getProcess(grandchild.getPid()));
+    }
+
+    @Test
+    public void testBindings() {
+
+        Process child = root.createChild(root.getFile(), null);
+        PacketListener listener = new PacketListener("test", new Address(ip, 80));
+        child.getExecutor().addPacketListener(listener);
+
+        Assert.assertSame("Bound process", child, processManager.getProcess(new Address(ip, 80)));
+        Assert.assertNull("Unbound port", processManager.getProcess(new Address(ip, 81)));
+
+        child.stop(false);
+        Assert.assertNull("Stopped process unbound", processManager.getProcess(new Address(ip, 80)));
+
+        root.getExecutor().addPacketListener(listener);
+        Assert.assertSame("Rebound process", root, processManager.getProcess(new Address(ip, 80)));
+        root.getExecutor().removePacketListener(listener);
+        Assert.assertNull("Removed listener unbound", processManager.getProcess(new Address(ip, 80)));
+    }
+
+    @Test
+    public void testRunQueueSlots() {
+
+        Process[] processes = { root, root.createChild(root.getFile(), null), root.createChild(root.getFile(), null), root.createChild(root.getFile(), null) };
+
+        // Deferring rotates the run queue, every process must know its new slot afterwards
+        processManager.update(System.nanoTime() - 1, true);
+        boolean[] slots = new boolean[processes.length];
+        for (Process process : processes) {
+            slots[process.getRunQueueSlot()] = true;
+        }
+        Assert.assertTrue("Every slot used once", Arrays.equals(new boolean[] { true, true, true, true }, slots));
+
+        root.unregisterChild(processes[2]);
+        Assert.assertEquals("Slot of unregistered process", -1, processes[2].getRunQueueSlot());
+
+        // The update compacts the nulled slot of the unregistered process
+        processManager.update();
+        slots = new boolean[processes.length - 1];
+        for (Process process : Arrays.asList(processes[0], processes[1], processes[3])) {
+            slots[process.getRunQueueSlot()] = true;
+        }
+        Assert.assertTrue("Every slot used once after compaction", Arrays.equals(new boolean[] { true, true, true }, slots));
+    }
+
+    @Test
+    public void testReapQueuedOnce() {
+
+        Process child = root.createChild(root.getFile(), null);
+        Process grandchild = child.createChild(root.getFile(), null);
+
+        child.stop(false);
+        processManager.notifyStateChange(child);
+        processManager.notifyStateChange(child);
+        Assert.assertTrue("Stopped child queued for reaping", child.isReapQueued());
+
+        processManager.reap();
+        Assert.assertFalse("Child with running grandchild leaves the queue", child.isReapQueued());
+        Assert.assertTrue("Child with running grandchild isn't reaped", root.getChildren().contains(child));
+        Assert.assertFalse("Blocked child isn't pending work", processManager.hasPendingWork());
+
+        // Reaping the last grandchild queues the child again
+        grandchild.stop(false);
+        processManager.reap();
+        Assert.assertFalse("Reaped child isn't queued anymore", child.isReapQueued());
+        Assert.assertFalse("Child reaped", root.getChildren().contains(child));
+        Assert.assertFalse("Nothing left to reap", processManager.hasPendingWork());
+    }
+
+    @Test
+    public void testReapNestedStoppedParents() {
+
+        Process child = root.createChild(root.getFile(), null);
+        Process grandchild = child.createChild(root.getFile(), null);
+        Process greatGrandchild = grandchild.createChild(root.getFile(), null);
+
+        child.stop(false);
+        grandchild.stop(false);
+        processManager.reap();
+        Assert.assertTrue("Stopped parents with running child aren't reaped", root.getChildren().contains(child));
+
+        greatGrandchild.stop(false);
+        processManager.reap();
+        Assert.assertFalse("Whole stopped chain reaped in one pass", root.getChildren().contains(child));
+        Assert.assertNull("Grandchild unregistered", processManager.getProcess(grandchild.getPid()));
+    }
+
+    @Test
+    public void testKilledInfoString() {
+
+        processManager.kill();
+        Assert.assertTrue("No processes after kill", processManager.getAllProcesses().isEmpty());
+        Assert.assertEquals("Info string after kill", "0 processes", processManager.toInfoString());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testBindingConflict() {
+
+        Process child = root.createChild(root.getFile(), null);
+        root.getExecutor().addPacketListener(new PacketListener("first", new Address(ip, 80)));
+        child.getExecutor().addPacketListener(new PacketListener("second", new Address(ip, 80)));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testUsedPid() {
+
+        root.createChild(root.getFile(), null, 0);
+    }
+
+}
@@ -21,6 +21,7 @@ package com.quartercode.disconnected.test.sim.member;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import com.quartercode.disconnected.sim.Simulation;
 import com.quartercode.disconnected.sim.member.Member;
 import com.quartercode.disconnected.sim.member.MemberGroup;
 
@@ -71,6 +72,22 @@ public class MemberGroupTest {
         Assert.assertEquals(10, group.getReputation(group.getMembers().get(0)).getValue());
     }
 
+    @Test
+    public void testSharedReputationMatrix() {
+
+        Simulation simulation = new Simulation();
+        Member member = group.getMembers().get(0);
+        simulation.addMember(member);
+        simulation.addGroup(group);
+
+        Assert.assertSame("Group uses the matrix of the simulation", simulation.getGroups().get(0).getReputationMatrix(), group.getReputationMatrix());
+        Assert.assertEquals("Reputation is kept when the group is added to a simulation", 10, group.getReputationValue(member));
+
+        group.getReputation(member).subtractValue(15);
+        Assert.assertEquals("Reputation objects change the matrix", -5, group.getReputationValue(member));
+        Assert.assertEquals("Unknown member has no reputation", 0, group.getReputationValue(new Member("member3")));
+    }
+
     @Test
     public void testGetInterests() {
 
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.run;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.run.SimulationScheduler;
+import com.quartercode.disconnected.sim.run.SimulationScheduler.HostedSimulation;
+import com.quartercode.disconnected.sim.run.TickAction;
+import com.quartercode.disconnected.sim.run.TickSimulator;
+
+public class SimulationSchedulerTest {
+
+    // The delay is long enough that no second tick is executed while a test runs
+    private static final int    LONG_DELAY = 60000;
+
+    private SimulationScheduler scheduler;
+
+    @Before
+    public void setUp() {
+
+        scheduler = new SimulationScheduler(2);
+    }
+
+    @After
+    public void tearDown() {
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTickAll() throws InterruptedException {
+
+        List<CountingAction> actions = new ArrayList<CountingAction>();
+        List<HostedSimulation> hosted = new ArrayList<HostedSimulation>();
+        for (int simulation = 0; simulation < 5; simulation++) {
+            // The latency of a tick is recorded after its update, so the 11th update guarantees 10 recorded latencies
+            CountingAction action = new CountingAction(11);
+            actions.add(action);
+            hosted.add(scheduler.host(new Simulation(), action));
+            hosted.get(simulation).setDelay(1);
+        }
+
+        for (int simulation = 0; simulation < hosted.size(); simulation++) {
+            Assert.assertTrue("Simulation " + simulation + " ticked", actions.get(simulation).await());
+            Assert.assertTrue("Action latency recorded", hosted.get(simulation).getStatistics().getHistogram("action.CountingAction").getCount() >= 10);
+        }
+    }
+
+    @Test
+    public void testTickRateLimited() throws InterruptedException {
+
+        CountingAction action = new CountingAction(1);
+        HostedSimulation hostedSimulation = scheduler.host(new Simulation(), action);
+        hostedSimulation.setDelay(LONG_DELAY);
+        Assert.assertTrue("First tick executed", action.await());
+
+        scheduler.unhost(hostedSimulation.getSimulation());
+        Assert.assertEquals("Ticks within the delay", 1, action.updates.get());
+        Assert.assertEquals("No overruns", 0, hostedSimulation.getOverruns());
+    }
+
+    @Test
+    public void testUnhost() throws InterruptedException {
+
+        CountingAction action = new CountingAction(1);
+        HostedSimulation hostedSimulation = scheduler.host(new Simulation(), action);
+        hostedSimulation.setDelay(LONG_DELAY);
+        Assert.assertTrue("First tick executed", action.await());
+
+        scheduler.unhost(hostedSimulation.getSimulation());
+        Assert.assertFalse("Simulation not running", hostedSimulation.isRunning());
+        Assert.assertNull("Hosted simulation removed", scheduler.getHosted(hostedSimulation.getSimulation()));
+
+        // A tick which was already submitted to the pool doesn't update the actions anymore
+        hostedSimulation.run();
+        Assert.assertEquals("Updates after unhosting", 1, action.updates.get());
+    }
+
+    @Test
+    public void testTickSimulatorStatistics() {
+
+        HostedSimulation hostedSimulation = scheduler.host(new Simulation());
+        Assert.assertSame("Tick simulator records into hosted statistics", hostedSimulation.getStatistics(), hostedSimulation.getAction(TickSimulator.class).getStatistics());
+    }
+
+    private static class CountingAction implements TickAction {
+
+        private final AtomicInteger  updates = new AtomicInteger();
+        private final CountDownLatch latch;
+
+        private CountingAction(int expectedUpdates) {
+
+            latch = new CountDownLatch(expectedUpdates);
+        }
+
+        @Override
+        public void update() {
+
+            updates.incrementAndGet();
+            latch.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.run;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.run.TickSchedule;
+import com.quartercode.disconnected.sim.run.TickStatistics;
+
+public class TickScheduleTest {
+
+    private static final long PERIOD = 50;
+
+    private TickStatistics    statistics;
+    private TickSchedule      schedule;
+
+    @Before
+    public void setUp() {
+
+        statistics = new TickStatistics();
+        schedule = new TickSchedule("test", statistics);
+        schedule.reset(0);
+    }
+
+    @Test
+    public void testOnTime() {
+
+        Assert.assertEquals("Wait time of first tick", 40, schedule.advance(10, PERIOD, 0));
+        Assert.assertEquals("Wait time of second tick", 20, schedule.advance(80, PERIOD, 0));
+        Assert.assertEquals("Next tick", 100, schedule.getNextTick());
+        Assert.assertEquals("Overruns", 0, schedule.getOverruns());
+        Assert.assertEquals("Dropped ticks", 0, schedule.getDroppedTicks());
+    }
+
+    @Test
+    public void testLateLessThanOnePeriod() {
+
+        // The next tick is due at 50 and the period to the tick after it didn't fully elapse
+        Assert.assertEquals("Wait time of late tick", 0, schedule.advance(90, PERIOD, 0));
+        Assert.assertEquals("Next tick continues from now", 90, schedule.getNextTick());
+        Assert.assertEquals("Overruns", 1, schedule.getOverruns());
+        Assert.assertEquals("Nothing dropped", 0, schedule.getDroppedTicks());
+        Assert.assertEquals("Recorded overruns", 1, statistics.getOverruns());
+        Assert.assertEquals("Recorded dropped ticks", 0, statistics.getDroppedTicks());
+    }
+
+    @Test
+    public void testMultiplePeriodDrop() {
+
+        // The tick due at 50 is executed now, the ticks due at 100, 150 and 200 are dropped
+        Assert.assertEquals("Wait time of late tick", 0, schedule.advance(210, PERIOD, 0));
+        Assert.assertEquals("Dropped ticks", 3, schedule.getDroppedTicks());
+        Assert.assertEquals("Recorded dropped ticks", 3, statistics.getDroppedTicks());
+
+        Assert.assertEquals("Wait time after drop", 40, schedule.advance(220, PERIOD, 0));
+        Assert.assertEquals("Overruns", 1, schedule.getOverruns());
+    }
+
+    @Test
+    public void testCatchUp() {
+
+        Assert.assertEquals("First catch-up tick", 0, schedule.advance(210, PERIOD, 2));
+        Assert.assertEquals("Second catch-up tick", 0, schedule.advance(215, PERIOD, 2));
+        Assert.assertEquals("Nothing dropped while catching up", 0, schedule.getDroppedTicks());
+
+        // The catch-up limit is reached, the tick due at 150 is executed and the one due at 200 is dropped
+        Assert.assertEquals("Wait time after limit", 0, schedule.advance(220, PERIOD, 2));
+        Assert.assertEquals("Overruns", 3, schedule.getOverruns());
+        Assert.assertEquals("Dropped ticks", 1, schedule.getDroppedTicks());
+        Assert.assertEquals("Next tick continues from now", 220, schedule.getNextTick());
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.run;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.Simulation;
+import com.quartercode.disconnected.sim.comp.Computer;
+import com.quartercode.disconnected.sim.comp.Version;
+import com.quartercode.disconnected.sim.comp.file.File;
+import com.quartercode.disconnected.sim.comp.file.File.FileType;
+import com.quartercode.disconnected.sim.comp.net.Packet;
+import com.quartercode.disconnected.sim.comp.os.OperatingSystem;
+import com.quartercode.disconnected.sim.comp.os.ProcessManager;
+import com.quartercode.disconnected.sim.comp.program.Process;
+import com.quartercode.disconnected.sim.comp.program.Program;
+import com.quartercode.disconnected.sim.comp.program.ProgramExecutor;
+import com.quartercode.disconnected.sim.run.TickSimulator;
+import com.quartercode.disconnected.sim.run.util.SimulationGenerator;
+
+public class TickSimulatorTest {
+
+    private Simulation    simulation;
+    private TickSimulator tickSimulator;
+
+    @Before
+    public void setUp() {
+
+        simulation = SimulationGenerator.generateSimulation(10, 2);
+        for (Computer computer : simulation.getComputers()) {
+            computer.getOperatingSystem().setRunning(true);
+        }
+
+        tickSimulator = new TickSimulator(simulation);
+    }
+
+    @Test
+    public void testDeferOutsideTick() {
+
+        final List<String> executed = new ArrayList<String>();
+        TickSimulator.defer(new Runnable() {
+
+            @Override
+            public void run() {
+
+                executed.add("mutation");
+            }
+        });
+
+        Assert.assertEquals("Mutation executed immediately", 1, executed.size());
+    }
+
+    @Test
+    public void testUpdateParallel() {
+
+        tickSimulator.setParallelism(4);
+        for (int tick = 0; tick < 10; tick++) {
+            tickSimulator.update();
+        }
+
+        for (Computer computer : simulation.getComputers()) {
+            Assert.assertTrue("Operating system still running", computer.getOperatingSystem().isRunning());
+        }
+    }
+
+    @Test
+    public void testUpdateParallelEqualsSequential() {
+
+        RelayProgram sequential = runRelay(1, 10);
+        RelayProgram parallel = runRelay(4, 10);
+
+        Assert.assertEquals("Relayed updates", 10 * simulation.getComputers().size(), parallel.log.size());
+        Assert.assertEquals("Parallel state equals sequential state", sequential.log, parallel.log);
+        Assert.assertEquals("Updates without current simulation", 0, sequential.missingSimulation.get() + parallel.missingSimulation.get());
+
+        // Mutations are executed immediately on the tick thread, but buffered on the worker threads and applied on the tick thread afterwards
+        Assert.assertEquals("Immediate sequential mutations", sequential.log.size(), sequential.immediate.get());
+        Assert.assertEquals("Immediate parallel mutations", 0, parallel.immediate.get());
+        for (Thread thread : parallel.threads) {
+            Assert.assertSame("Parallel mutation thread", Thread.currentThread(), thread);
+        }
+    }
+
+    private RelayProgram runRelay(int parallelism, int ticks) {
+
+        Simulation simulation = SimulationGenerator.generateSimulation(10, 2);
+        RelayProgram program = new RelayProgram();
+        for (Computer computer : simulation.getComputers()) {
+            computer.getOperatingSystem().setRunning(true);
+            Process root = computer.getOperatingSystem().getProcessManager().getRootProcess();
+            File file = root.getFile().getHost().addFile("/bin/relay.exe", FileType.FILE);
+            file.setContent(program);
+            root.createChild(file, null);
+        }
+
+        TickSimulator tickSimulator = new TickSimulator(simulation);
+        tickSimulator.setParallelism(parallelism);
+        try {
+            for (int tick = 0; tick < ticks; tick++) {
+                tickSimulator.update();
+            }
+        }
+        finally {
+            tickSimulator.setParallelism(1);
+        }
+        return program;
+    }
+
+    @Test
+    public void testReapStoppedProcess() {
+
+        OperatingSystem os = simulation.getComputers().get(0).getOperatingSystem();
+        Process root = os.getProcessManager().getRootProcess();
+        Process child = root.createChild(root.getFile(), null);
+        tickSimulator.update();
+        Assert.assertTrue("Child process registered", root.getChildren().contains(child));
+
+        child.stop(false);
+        tickSimulator.update();
+        Assert.assertFalse("Stopped child process reaped", root.getChildren().contains(child));
+        Assert.assertEquals("Remaining processes", 1, os.getProcessManager().getAllProcesses().size());
+    }
+
+    @Test
+    public void testBudgetDeferral() {
+
+        ProcessManager processManager = simulation.getComputers().get(0).getOperatingSystem().getProcessManager();
+        Process root = processManager.getRootProcess();
+        for (int child = 0; child < 3; child++) {
+            root.createChild(root.getFile(), null);
+        }
+
+        Assert.assertEquals("Deferred processes after deadline with progress", 3, processManager.update(System.nanoTime() - 1, true));
+        Assert.assertEquals("Deferred processes after deadline without progress", 4, processManager.update(System.nanoTime() - 1));
+        Assert.assertEquals("Deferred processes before deadline", 0, processManager.update(System.nanoTime() + 1000000000L));
+    }
+
+    @Test
+    public void testBudgetProgress() {
+
+        ProcessManager processManager = simulation.getComputers().get(0).getOperatingSystem().getProcessManager();
+        Process root = processManager.getRootProcess();
+        File file = root.getFile().getHost().addFile("/bin/counter.exe", FileType.FILE);
+        file.setContent(new CountingProgram());
+        List<Process> children = new ArrayList<Process>();
+        for (int child = 0; child < 3; child++) {
+            children.add(root.createChild(file, null));
+        }
+
+        // Every update makes progress although the deadline already passed, so every process is updated once after 4 updates
+        for (int tick = 0; tick < 4; tick++) {
+            Assert.assertEquals("Deferred processes in tick " + tick, 3, processManager.update(System.nanoTime() - 1, true));
+        }
+        for (Process child : children) {
+            Assert.assertEquals("Updates of child process " + child.getPid(), 1, ((CountingExecutor) child.getExecutor()).updates);
+        }
+    }
+
+    @Test
+    public void testSleepIdleComputers() {
+
+        tickSimulator.update();
+        for (Computer computer : simulation.getComputers()) {
+            Assert.assertFalse("Idle computer sleeps", computer.isAwake());
+        }
+
+        Computer computer = simulation.getComputers().get(0);
+        Process root = computer.getOperatingSystem().getProcessManager().getRootProcess();
+        root.createChild(root.getFile(), null).stop(false);
+        Assert.assertTrue("New process wakes computer", computer.isAwake());
+
+        tickSimulator.update();
+        Assert.assertEquals("Stopped process reaped while awake", 0, root.getChildren().size());
+        tickSimulator.update();
+        Assert.assertFalse("Computer sleeps again", computer.isAwake());
+    }
+
+    @Test
+    public void testAwakeQueue() {
+
+        tickSimulator.update();
+        List<Computer> awakeComputers = new ArrayList<Computer>();
+        simulation.drainAwakeComputers(awakeComputers);
+        Assert.assertTrue("Sleeping computers aren't queued", awakeComputers.isEmpty());
+
+        Computer computer = simulation.getComputers().get(0);
+        computer.wake();
+        computer.wake();
+        simulation.drainAwakeComputers(awakeComputers);
+        Assert.assertEquals("Woken computer queued once", 1, awakeComputers.size());
+        Assert.assertSame("Woken computer queued", computer, awakeComputers.get(0));
+    }
+
+    @Test
+    public void testWakeWhileSleeping() {
+
+        tickSimulator.update();
+        Computer computer = simulation.getComputers().get(0);
+        computer.wake();
+        List<Computer> awakeComputers = new ArrayList<Computer>();
+        simulation.drainAwakeComputers(awakeComputers);
+
+        // Another thread wakes the computer after the simulator checked for pending work, but before it puts the computer to sleep
+        long wakeups = computer.getWakeups();
+        computer.wake();
+        Assert.assertFalse("Computer doesn't sleep", computer.sleep(wakeups));
+        Assert.assertTrue("Computer stays awake", computer.isAwake());
+
+        awakeComputers.clear();
+        simulation.drainAwakeComputers(awakeComputers);
+        Assert.assertEquals("Computer queued again", 1, awakeComputers.size());
+    }
+
+    @Test
+    public void testWakeForReceivedPackets() {
+
+        Computer computer = simulation.getComputers().get(0);
+        Process root = computer.getOperatingSystem().getProcessManager().getRootProcess();
+        File file = root.getFile().getHost().addFile("/bin/counter.exe", FileType.FILE);
+        file.setContent(new CountingProgram(true));
+        Process child = root.createChild(file, null);
+        tickSimulator.update();
+        Assert.assertFalse("Computer with idle processes sleeps", computer.isAwake());
+
+        // The executor claims to be idle, but the received packet must not be stranded
+        child.getExecutor().receivePacket(new Packet(null, null, "data"));
+        tickSimulator.update();
+        Assert.assertTrue("Computer with received packets stays awake", computer.isAwake());
+    }
+
+    private static class CountingProgram extends Program {
+
+        private final boolean idle;
+
+        private CountingProgram() {
+
+            this(false);
+        }
+
+        private CountingProgram(boolean idle) {
+
+            super("counter", new Version(1, 0, 0), null);
+            this.idle = idle;
+        }
+
+        @Override
+        public long getSize() {
+
+            return 0;
+        }
+
+        @Override
+        protected ProgramExecutor createExecutorInstance(Process host, Map<String, Object> arguments) {
+
+            return new CountingExecutor(host, idle);
+        }
+
+    }
+
+    /**
+     * Every executor of the relay program reports its updates to the first computer of the simulation, which affects another computer than the updated one.
+     */
+    private static class RelayProgram extends Program {
+
+        private final List<String>  log               = new ArrayList<String>();
+        private final List<Thread>  threads           = new ArrayList<Thread>();
+        private final AtomicInteger immediate         = new AtomicInteger();
+        private final AtomicInteger missingSimulation = new AtomicInteger();
+
+        private RelayProgram() {
+
+            super("relay", new Version(1, 0, 0), null);
+        }
+
+        @Override
+        public long getSize() {
+
+            return 0;
+        }
+
+        @Override
+        protected ProgramExecutor createExecutorInstance(Process host, Map<String, Object> arguments) {
+
+            return new RelayExecutor(host, this);
+        }
+
+    }
+
+    private static class RelayExecutor extends ProgramExecutor {
+
+        private final RelayProgram program;
+        private int                updates;
+
+        private RelayExecutor(Process host, RelayProgram program) {
+
+            super(host);
+            this.program = program;
+        }
+
+        @Override
+        public void update() {
+
+            Simulation simulation = TickSimulator.getCurrentSimulation();
+            if (simulation == null) {
+                program.missingSimulation.incrementAndGet();
+                return;
+            }
+
+            final Computer target = simulation.getComputers().get(0);
+            final String entry = simulation.getComputers().indexOf(getHost().getHost().getHost()) + "@" + updates++;
+            final boolean[] executed = new boolean[1];
+            TickSimulator.defer(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    program.log.add(target.getId() + " <- " + entry);
+                    program.threads.add(Thread.currentThread());
+                    executed[0] = true;
+                }
+            });
+            if (executed[0]) {
+                program.immediate.incrementAndGet();
+            }
+        }
+
+    }
+
+    private static class CountingExecutor extends ProgramExecutor {
+
+        private final boolean idle;
+        private int           updates;
+
+        private CountingExecutor(Process host, boolean idle) {
+
+            super(host);
+            this.idle = idle;
+        }
+
+        @Override
+        public void update() {
+
+            updates++;
+        }
+
+        @Override
+        public boolean isIdle() {
+
+            return idle;
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.run;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.run.TickStatistics;
+
+public class TickStatisticsTest {
+
+    @Test
+    public void testDeferrals() {
+
+        TickStatistics statistics = new TickStatistics();
+        statistics.recordDeferrals(3);
+        statistics.recordDeferrals(7);
+        statistics.recordDeferrals(2);
+
+        Assert.assertEquals("Total deferrals", 12, statistics.getDeferrals());
+        Assert.assertEquals("Last deferrals", 2, statistics.getLastDeferrals());
+        Assert.assertEquals("Max deferrals", 7, statistics.getMaxDeferrals());
+        Assert.assertFalse("Deferrals aren't a latency histogram", Arrays.asList(statistics.getHistogramNames()).contains("deferrals"));
+
+        statistics.reset();
+        Assert.assertEquals("Total deferrals after reset", 0, statistics.getDeferrals());
+        Assert.assertEquals("Max deferrals after reset", 0, statistics.getMaxDeferrals());
+    }
+
+}
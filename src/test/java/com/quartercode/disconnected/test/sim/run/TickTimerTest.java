@@ -0,0 +1,183 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.sim.run;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.run.TickTimer;
+import com.quartercode.disconnected.sim.run.TickTimer.TimerTask;
+
+public class TickTimerTest {
+
+    private TickTimer timer;
+
+    @Before
+    public void setUp() {
+
+        timer = new TickTimer();
+    }
+
+    @Test
+    public void testDelay() {
+
+        RecordingTask task = new RecordingTask(5, 0);
+        timer.schedule(task);
+        elapse(10);
+
+        Assert.assertEquals("Run ticks", list(5L), task.runs);
+        Assert.assertEquals("Timer is empty", 0, timer.getTasks().size());
+    }
+
+    @Test
+    public void testPeriod() {
+
+        RecordingTask task = new RecordingTask(3, 4);
+        timer.schedule(task);
+        elapse(15);
+
+        Assert.assertEquals("Run ticks", list(3L, 7L, 11L, 15L), task.runs);
+        Assert.assertEquals("Elapsed ticks", 15, task.getElapsed());
+    }
+
+    @Test
+    public void testLongDelay() {
+
+        RecordingTask task = new RecordingTask(300000, 0);
+        timer.schedule(task);
+        elapse(299999);
+        Assert.assertEquals("Not run before delay", 0, task.runs.size());
+
+        elapse(1);
+        Assert.assertEquals("Run ticks", list(300000L), task.runs);
+    }
+
+    @Test
+    public void testCancel() {
+
+        RecordingTask task = new RecordingTask(5, 5);
+        timer.schedule(task);
+        elapse(7);
+        timer.cancel(task);
+        elapse(20);
+
+        Assert.assertEquals("Run ticks", list(5L), task.runs);
+        Assert.assertEquals("Cancelled elapsed", -1, task.getElapsed());
+        Assert.assertEquals("Timer is empty", 0, timer.getTasks().size());
+    }
+
+    @Test
+    public void testCancelInRun() {
+
+        RecordingTask task = new RecordingTask(2, 2) {
+
+            @Override
+            public void run() {
+
+                super.run();
+                cancel();
+            }
+        };
+        timer.schedule(task);
+        elapse(10);
+
+        Assert.assertEquals("Run ticks", list(2L), task.runs);
+    }
+
+    @Test
+    public void testRescheduleInRun() {
+
+        RecordingTask periodic = new RecordingTask(2, 3) {
+
+            private boolean rescheduled;
+
+            @Override
+            public void run() {
+
+                super.run();
+                if (!rescheduled) {
+                    rescheduled = true;
+                    cancel();
+                    timer.schedule(this);
+                }
+            }
+        };
+        RecordingTask oneShot = new RecordingTask(2, 0) {
+
+            private boolean rescheduled;
+
+            @Override
+            public void run() {
+
+                super.run();
+                if (!rescheduled) {
+                    rescheduled = true;
+                    cancel();
+                    timer.schedule(this);
+                }
+            }
+        };
+        timer.schedule(periodic);
+        timer.schedule(oneShot);
+
+        elapse(4);
+        Assert.assertEquals("Rescheduled tasks stored once", 1, timer.getTasks().size());
+        elapse(6);
+
+        Assert.assertEquals("Run ticks of periodic task", list(2L, 4L, 7L, 10L), periodic.runs);
+        Assert.assertEquals("Run ticks of one-shot task", list(2L, 4L), oneShot.runs);
+        Assert.assertEquals("Only the periodic task is left", 1, timer.getTasks().size());
+    }
+
+    private void elapse(int ticks) {
+
+        for (int tick = 0; tick < ticks; tick++) {
+            timer.update();
+        }
+    }
+
+    private List<Long> list(Long... values) {
+
+        List<Long> list = new ArrayList<Long>();
+        for (Long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private class RecordingTask extends TimerTask {
+
+        private final List<Long> runs = new ArrayList<Long>();
+
+        private RecordingTask(int delay, int period) {
+
+            super(delay, period);
+        }
+
+        @Override
+        public void run() {
+
+            runs.add(timer.getTick());
+        }
+
+    }
+
+}
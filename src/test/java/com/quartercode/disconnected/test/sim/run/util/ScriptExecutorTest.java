@@ -0,0 +1,303 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.quartercode.disconnected.test.sim.run.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.sim.member.Member;
+import com.quartercode.disconnected.sim.run.TickStatistics;
+import com.quartercode.disconnected.sim.run.util.ScriptCacheStatistics;
+import com.quartercode.disconnected.sim.run.util.ScriptExecutor;
+
+public class ScriptExecutorTest {
+
+    private TestEngineFactory factory;
+    private Member            member;
+
+    @Before
+    public void setUp() {
+
+        factory = new TestEngineFactory();
+        ScriptExecutor.setEngineFactory(factory);
+        member = new Member("member");
+    }
+
+    @After
+    public void tearDown() {
+
+        ScriptExecutor.setEngineFactory(null);
+        ScriptExecutor.setStatistics(null);
+    }
+
+    @Test
+    public void testCacheHitsAndMisses() {
+
+        ScriptCacheStatistics cacheStatistics = ScriptExecutor.getCacheStatistics();
+        cacheStatistics.reset();
+
+        execute("read member");
+        execute("read member");
+        execute("read causer");
+
+        Assert.assertEquals("Compiled scripts", 2, factory.compiled);
+        Assert.assertEquals("Evaluated scripts", 3, factory.evaluated);
+        Assert.assertEquals("Cache hits", 1, cacheStatistics.getHits());
+        Assert.assertEquals("Cache misses", 2, cacheStatistics.getMisses());
+        Assert.assertEquals("Cache hit rate", 1 / 3D, cacheStatistics.getHitRate(), 0.0001);
+
+        cacheStatistics.reset();
+        Assert.assertEquals("Cache hits after reset", 0, cacheStatistics.getHits());
+        Assert.assertEquals("Cache hit rate after reset", 0, cacheStatistics.getHitRate(), 0);
+    }
+
+    @Test
+    public void testCacheEviction() {
+
+        // Fill the cache, so the first script is the least recently used one
+        for (int script = 0; script < ScriptExecutor.CACHE_SIZE; script++) {
+            execute("read script" + script);
+        }
+        Assert.assertEquals("Compiled scripts after filling the cache", ScriptExecutor.CACHE_SIZE, factory.compiled);
+
+        // Using the first script again makes the second one the least recently used one
+        execute("read script0");
+        execute("read script" + ScriptExecutor.CACHE_SIZE);
+        Assert.assertEquals("Compiled scripts after exceeding the cache", ScriptExecutor.CACHE_SIZE + 1, factory.compiled);
+
+        execute("read script0");
+        Assert.assertEquals("Recently used script is still cached", ScriptExecutor.CACHE_SIZE + 1, factory.compiled);
+        execute("read script1");
+        Assert.assertEquals("Least recently used script was evicted", ScriptExecutor.CACHE_SIZE + 2, factory.compiled);
+    }
+
+    @Test
+    public void testBindingIsolation() {
+
+        execute("set leaked; read leaked; read member");
+        execute("read leaked; read member");
+
+        Assert.assertEquals("Read bindings", Arrays.asList(true, true, false, true), factory.reads);
+    }
+
+    @Test
+    public void testStatistics() {
+
+        TickStatistics statistics = new TickStatistics();
+        ScriptExecutor.setStatistics(statistics);
+        execute("read member");
+        execute("read member");
+
+        Assert.assertEquals("Recorded compilations", 1, statistics.getHistogram("script.compile").getCount());
+        Assert.assertEquals("Recorded evaluations", 2, statistics.getHistogram("script.eval").getCount());
+    }
+
+    private void execute(String script) {
+
+        ScriptExecutor.execute(script, null, member, member);
+    }
+
+    /**
+     * The test engine understands scripts of "set <name>" and "read <name>" statements which are seperated by semicolons.
+     * Read statements record if a binding with the given name exists.
+     */
+    private static class TestEngineFactory implements ScriptEngineFactory {
+
+        private final List<Boolean> reads = new ArrayList<Boolean>();
+        private int                 compiled;
+        private int                 evaluated;
+
+        @Override
+        public String getEngineName() {
+
+            return "test";
+        }
+
+        @Override
+        public String getEngineVersion() {
+
+            return "1.0";
+        }
+
+        @Override
+        public List<String> getExtensions() {
+
+            return Arrays.asList("test");
+        }
+
+        @Override
+        public List<String> getMimeTypes() {
+
+            return Arrays.asList("text/test");
+        }
+
+        @Override
+        public List<String> getNames() {
+
+            return Arrays.asList("test");
+        }
+
+        @Override
+        public String getLanguageName() {
+
+            return "test";
+        }
+
+        @Override
+        public String getLanguageVersion() {
+
+            return "1.0";
+        }
+
+        @Override
+        public Object getParameter(String key) {
+
+            return null;
+        }
+
+        @Override
+        public String getMethodCallSyntax(String object, String method, String... arguments) {
+
+            return null;
+        }
+
+        @Override
+        public String getOutputStatement(String toDisplay) {
+
+            return null;
+        }
+
+        @Override
+        public String getProgram(String... statements) {
+
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getScriptEngine() {
+
+            return new TestEngine(this);
+        }
+
+    }
+
+    private static class TestEngine extends AbstractScriptEngine implements Compilable {
+
+        private final TestEngineFactory factory;
+
+        private TestEngine(TestEngineFactory factory) {
+
+            this.factory = factory;
+        }
+
+        @Override
+        public Object eval(String script, ScriptContext context) {
+
+            factory.evaluated++;
+            Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            for (String statement : script.split(";")) {
+                String[] parts = statement.trim().split(" ");
+                if (parts[0].equals("set")) {
+                    bindings.put(parts[1], true);
+                } else if (parts[0].equals("read")) {
+                    factory.reads.add(bindings.containsKey(parts[1]));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+
+            return eval(read(reader), context);
+        }
+
+        @Override
+        public Bindings createBindings() {
+
+            return new SimpleBindings();
+        }
+
+        @Override
+        public ScriptEngineFactory getFactory() {
+
+            return factory;
+        }
+
+        @Override
+        public CompiledScript compile(final String script) {
+
+            factory.compiled++;
+            return new CompiledScript() {
+
+                @Override
+                public Object eval(ScriptContext context) {
+
+                    return TestEngine.this.eval(script, context);
+                }
+
+                @Override
+                public ScriptEngine getEngine() {
+
+                    return TestEngine.this;
+                }
+            };
+        }
+
+        @Override
+        public CompiledScript compile(Reader reader) throws ScriptException {
+
+            return compile(read(reader));
+        }
+
+        private String read(Reader reader) throws ScriptException {
+
+            try {
+                StringBuilder script = new StringBuilder();
+                char[] buffer = new char[1024];
+                int read;
+                while ( (read = reader.read(buffer)) >= 0) {
+                    script.append(buffer, 0, read);
+                }
+                return script.toString();
+            }
+            catch (IOException e) {
+                throw new ScriptException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.util.EntityStore;
+
+public class EntityStoreTest {
+
+    private EntityStore<String> store;
+
+    @Before
+    public void setUp() {
+
+        store = new EntityStore<String>();
+        for (int index = 0; index < 10; index++) {
+            store.add("entity" + index);
+        }
+    }
+
+    @Test
+    public void testHandles() {
+
+        String entity = store.get(5);
+        int handle = store.getHandle(entity);
+        for (int index = 0; index < 5; index++) {
+            store.remove(0);
+        }
+
+        Assert.assertEquals("Size after removing", 5, store.size());
+        Assert.assertEquals("Handle after removing others", handle, store.getHandle(entity));
+        Assert.assertSame("Entity by handle", entity, store.getByHandle(handle));
+        Assert.assertSame("Entity by index after compaction", entity, store.get(0));
+        Assert.assertEquals("Index of entity", 0, store.indexOf(entity));
+
+        store.removeHandle(handle);
+        Assert.assertNull("Removed entity by handle", store.getByHandle(handle));
+        Assert.assertFalse("Removed entity isn't contained", store.contains(entity));
+    }
+
+    @Test
+    public void testHandleReuse() {
+
+        String entity = store.get(3);
+        int handle = store.getHandle(entity);
+        store.remove(entity);
+        String newEntity = "entity10";
+        int newHandle = store.put(newEntity);
+
+        Assert.assertFalse("Reused slot gets a new handle", handle == newHandle);
+        Assert.assertNull("Old handle doesn't find the new entity", store.getByHandle(handle));
+        Assert.assertFalse("Removing by old handle doesn't remove the new entity", store.removeHandle(handle));
+        Assert.assertSame("New entity by handle", newEntity, store.getByHandle(newHandle));
+    }
+
+    @Test
+    public void testIdentity() {
+
+        String entity = new String("entity0");
+        store.add(entity);
+        Assert.assertEquals("Equal entities are different entities", 11, store.size());
+        store.add(entity);
+        Assert.assertEquals("Same entity is only stored once", 11, store.size());
+        store.remove(entity);
+        Assert.assertTrue("Removing an entity doesn't remove equal ones", store.contains(store.get(0)));
+    }
+
+    @Test
+    public void testSnapshot() {
+
+        Iterator<String> iterator = store.iterator();
+        store.remove(store.get(1));
+        store.add("entity10");
+
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Assert.assertEquals("Snapshot iterator doesn't see changes", 10, count);
+        Assert.assertEquals("Current entities", Arrays.asList("entity0", "entity2", "entity3"), store.subList(0, 3));
+        Assert.assertEquals("New entity", "entity10", store.get(store.size() - 1));
+
+        // An exhausted iterator doesn't keep the store from removing in place
+        for (String entity : store) {
+            Assert.assertNotNull("Iterated entity", entity);
+        }
+        store.remove(store.get(0));
+        Assert.assertEquals("Entities after removing", Arrays.asList("entity2", "entity3"), store.subList(0, 2));
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.quartercode.disconnected.util.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testEmpty() {
+
+        Assert.assertEquals("Count", 0, histogram.getCount());
+        Assert.assertEquals("Mean", 0, histogram.getMean());
+        Assert.assertEquals("P50", 0, histogram.getP50());
+        Assert.assertEquals("Max", 0, histogram.getMax());
+    }
+
+    @Test
+    public void testSmallValues() {
+
+        for (int value = 1; value <= 50; value++) {
+            histogram.record(value);
+        }
+
+        Assert.assertEquals("Count", 50, histogram.getCount());
+        Assert.assertEquals("Mean", 25, histogram.getMean());
+        Assert.assertEquals("P50", 25, histogram.getP50());
+        Assert.assertEquals("P99", 50, histogram.getP99());
+        Assert.assertEquals("Max", 50, histogram.getMax());
+    }
+
+    @Test
+    public void testPrecision() {
+
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertWithin("P50", 50000000, histogram.getP50(), 0.04);
+        assertWithin("P99", 99000000, histogram.getP99(), 0.04);
+        Assert.assertEquals("Max", 100000000, histogram.getMax());
+    }
+
+    @Test
+    public void testReset() {
+
+        histogram.record(12345);
+        histogram.reset();
+
+        Assert.assertEquals("Count", 0, histogram.getCount());
+        Assert.assertEquals("P99", 0, histogram.getP99());
+        Assert.assertEquals("Max", 0, histogram.getMax());
+    }
+
+    private void assertWithin(String message, long expected, long actual, double error) {
+
+        Assert.assertTrue(message + " (expected " + expected + ", was " + actual + ")", Math.abs(actual - expected) <= expected * error);
+    }
+
+}
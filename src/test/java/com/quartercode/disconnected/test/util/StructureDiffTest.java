@@ -0,0 +1,75 @@
+/*
+ * This file is part of Disconnected.
+ * Copyright (c) 2013 QuarterCode <http://www.quartercode.com/>
+ *
+ * Disconnected is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Disconnected is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Disconnected. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.quartercode.disconnected.test.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import com.quartercode.disconnected.util.StructureDiff;
+
+public class StructureDiffTest {
+
+    @Test
+    public void testEqualStructure() {
+
+        Assert.assertTrue("Equal graphs with cycles", StructureDiff.deepEquals(createTree("value"), createTree("value")));
+        Assert.assertFalse("Objects without equals method compare by identity", createTree("value").equals(createTree("value")));
+    }
+
+    @Test
+    public void testDiff() {
+
+        List<String> differences = StructureDiff.diff(createTree("value"), createTree("other"));
+        Assert.assertEquals("Number of differences", 1, differences.size());
+        Assert.assertEquals("Difference path", "Node.children[1].value: expected value but was other", differences.get(0));
+    }
+
+    @Test
+    public void testSkipCache() {
+
+        Node expected = createTree("value");
+        expected.cache = "cached";
+        Assert.assertTrue("Transient fields are skipped", StructureDiff.deepEquals(expected, createTree("value")));
+    }
+
+    private Node createTree(String value) {
+
+        Node root = new Node(null, "root");
+        root.children.add(new Node(root, "child"));
+        root.children.add(new Node(root, value));
+        return root;
+    }
+
+    private static class Node {
+
+        private final Node       parent;
+        private final String     value;
+        private final List<Node> children = new ArrayList<Node>();
+        private transient String cache;
+
+        private Node(Node parent, String value) {
+
+            this.parent = parent;
+            this.value = value;
+        }
+
+    }
+
+}